@@ -0,0 +1,29 @@
+package com.vladcarcu.sociallogin.benchmarks;
+
+import com.vladcarcu.sociallogin.SocialLoginAuthenticationToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single adapter validation, without the granter around it. For Google this is the in-process ID token
+ * verification against the cached key set; for Facebook and LinkedIn it includes the round trips to the stub.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AdapterValidationBenchmark {
+
+    @Benchmark
+    public SocialLoginAuthenticationToken validate(SocialLoginState state) {
+        return state.adapter.validateLogin(state.token);
+    }
+}
@@ -0,0 +1,42 @@
+package com.vladcarcu.sociallogin.benchmarks;
+
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.oauth2.config.annotation.configurers.ClientDetailsServiceConfigurer;
+import org.springframework.security.oauth2.config.annotation.web.configuration.AuthorizationServerConfigurerAdapter;
+import org.springframework.security.oauth2.config.annotation.web.configuration.EnableAuthorizationServer;
+
+/**
+ * A minimal authorization server using the starter, with a single client allowed to use the social grant.
+ * It runs without a web server: the benchmarks call the token granter directly, so web security is enabled explicitly.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@EnableAuthorizationServer
+@EnableWebSecurity
+public class BenchmarkApplication extends AuthorizationServerConfigurerAdapter {
+
+    public static final String CLIENT_ID = "benchmark";
+
+    public static ConfigurableApplicationContext start(StubProviders stubProviders) {
+        // the JAXB runtime used by Spring Security OAuth2 can't generate its optimized accessors on recent JDKs
+        System.setProperty("com.sun.xml.bind.v2.bytecode.ClassTailor.noOptimize", "true");
+        return new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(stubProviders.getProperties())
+                .run();
+    }
+
+    @Override
+    public void configure(ClientDetailsServiceConfigurer clients) throws Exception {
+        clients.inMemory()
+                .withClient(CLIENT_ID)
+                .secret("{noop}benchmark-secret")
+                .authorizedGrantTypes("social")
+                .scopes("read");
+    }
+}
@@ -0,0 +1,22 @@
+package com.vladcarcu.sociallogin.benchmarks;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the benchmarks with JMH's usual command line, adding the GC profiler unless another profiler is asked for,
+ * so that allocation rates are always reported next to throughput and latency.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        var arguments = new ArrayList<>(List.of(args));
+        if (!arguments.contains("-prof")) {
+            arguments.add("-prof");
+            arguments.add("gc");
+        }
+        Main.main(arguments.toArray(new String[0]));
+    }
+}
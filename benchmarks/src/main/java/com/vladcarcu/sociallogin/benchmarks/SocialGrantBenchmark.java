@@ -0,0 +1,28 @@
+package com.vladcarcu.sociallogin.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole social grant, as run by the token endpoint: adapter lookup, guards, validation and token issuance.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SocialGrantBenchmark {
+
+    @Benchmark
+    public OAuth2AccessToken grant(SocialLoginState state) {
+        return state.tokenGranter.grant("social", state.tokenRequest);
+    }
+}
@@ -0,0 +1,51 @@
+package com.vladcarcu.sociallogin.benchmarks;
+
+import com.vladcarcu.sociallogin.SocialLoginAdapter;
+import com.vladcarcu.sociallogin.SocialLoginAdapterRegistry;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.oauth2.config.annotation.web.configuration.AuthorizationServerEndpointsConfiguration;
+import org.springframework.security.oauth2.provider.TokenGranter;
+import org.springframework.security.oauth2.provider.TokenRequest;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An authorization server wired to the stub providers, shared by all the benchmark threads.
+ */
+@State(Scope.Benchmark)
+public class SocialLoginState {
+
+    @Param({"google", "facebook", "linkedin"})
+    String type;
+
+    StubProviders stubProviders;
+    ConfigurableApplicationContext context;
+    TokenGranter tokenGranter;
+    SocialLoginAdapter adapter;
+    String token;
+    TokenRequest tokenRequest;
+
+    @Setup
+    public void setUp() {
+        stubProviders = new StubProviders();
+        context = BenchmarkApplication.start(stubProviders);
+        tokenGranter = context.getBean(AuthorizationServerEndpointsConfiguration.class).getEndpointsConfigurer().getTokenGranter();
+        adapter = context.getBean(SocialLoginAdapterRegistry.class).getAdapter(type);
+        // the stub accepts any Facebook token and LinkedIn code, but Google ID tokens are verified locally
+        token = "google".equals(type) ? stubProviders.googleIdToken() : "benchmark-" + type + "-token";
+        tokenRequest = new TokenRequest(Map.of("grant_type", "social", "type", type, "token", token),
+                BenchmarkApplication.CLIENT_ID, Set.of("read"), "social");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        stubProviders.close();
+    }
+}
@@ -0,0 +1,168 @@
+package com.vladcarcu.sociallogin.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An in-JVM stand-in for the Google key set endpoint, the Facebook Graph API and the LinkedIn APIs,
+ * answering every request with a canned success body shaped like the real one.
+ * It also signs Google-style ID tokens with a local key that it publishes in its key set.
+ */
+public class StubProviders implements Closeable {
+
+    public static final String CLIENT_ID = "benchmark-client.apps.googleusercontent.com";
+    public static final String USER_ID = "109876543210987654321";
+
+    private static final String KEY_ID = "benchmark-key";
+    private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+
+    static {
+        // otherwise Nagle's algorithm delays every response by the client's delayed ACK, around 40ms
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final KeyPair keyPair;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public StubProviders() {
+        try {
+            var generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            keyPair = generator.generateKeyPair();
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        server.setExecutor(executor);
+        server.createContext("/google/certs", exchange -> respond(exchange, jwks(), "public, max-age=21600"));
+        server.createContext("/facebook/oauth/access_token", exchange -> respond(exchange, "{\"access_token\":\"1234567890|app-token\",\"token_type\":\"bearer\"}", null));
+        server.createContext("/facebook/debug_token", exchange -> respond(exchange, new StringBuilder()
+                .append("{\"data\":{\"app_id\":\"1234567890\",\"type\":\"USER\",\"application\":\"Benchmark\",")
+                .append("\"data_access_expires_at\":").append(Instant.now().plusSeconds(7776000).getEpochSecond())
+                .append(",\"expires_at\":").append(Instant.now().plusSeconds(5184000).getEpochSecond())
+                .append(",\"is_valid\":true,\"issued_at\":").append(Instant.now().getEpochSecond())
+                .append(",\"scopes\":[\"email\",\"public_profile\"],\"granular_scopes\":[{\"scope\":\"email\"},{\"scope\":\"public_profile\"}],")
+                .append("\"user_id\":\"").append(USER_ID).append("\"}}")
+                .toString(), null));
+        server.createContext("/linkedin/oauth/v2/accessToken", exchange -> respond(exchange,
+                "{\"access_token\":\"AQUvlL_DYEzvT2wz1QJiEPeLioeA\",\"expires_in\":5184000}", null));
+        server.createContext("/linkedin/v2/me", exchange -> respond(exchange, new StringBuilder()
+                .append("{\"localizedLastName\":\"Doe\",\"lastName\":{\"localized\":{\"en_US\":\"Doe\"},\"preferredLocale\":{\"country\":\"US\",\"language\":\"en\"}},")
+                .append("\"firstName\":{\"localized\":{\"en_US\":\"Jane\"},\"preferredLocale\":{\"country\":\"US\",\"language\":\"en\"}},")
+                .append("\"id\":\"").append(USER_ID).append("\",\"localizedFirstName\":\"Jane\"}")
+                .toString(), null));
+        server.start();
+    }
+
+    public String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * The properties that point the built-in adapters at this stub.
+     */
+    public Map<String, Object> getProperties() {
+        return Map.of(
+                "social.login.google.client-ids", CLIENT_ID,
+                "social.login.google.jwks-uri", getBaseUrl() + "/google/certs",
+                "social.login.facebook.app-id", "1234567890",
+                "social.login.facebook.app-secret", "benchmark-secret",
+                "social.login.facebook.graph-url", getBaseUrl() + "/facebook",
+                "social.login.linkedin.client-id", "benchmark-client",
+                "social.login.linkedin.client-secret", "benchmark-secret",
+                "social.login.linkedin.redirect-uri", "https://example.com/callback",
+                "social.login.linkedin.auth-url", getBaseUrl() + "/linkedin",
+                "social.login.linkedin.api-url", getBaseUrl() + "/linkedin");
+    }
+
+    /**
+     * Signs a Google ID token for {@link #USER_ID}, valid for an hour.
+     */
+    public String googleIdToken() {
+        var now = Instant.now().getEpochSecond();
+        var header = "{\"alg\":\"RS256\",\"kid\":\"" + KEY_ID + "\",\"typ\":\"JWT\"}";
+        var payload = new StringBuilder()
+                .append("{\"iss\":\"https://accounts.google.com\",\"azp\":\"").append(CLIENT_ID)
+                .append("\",\"aud\":\"").append(CLIENT_ID)
+                .append("\",\"sub\":\"").append(USER_ID)
+                .append("\",\"email\":\"jane.doe@example.com\",\"email_verified\":true,\"name\":\"Jane Doe\"")
+                .append(",\"iat\":").append(now)
+                .append(",\"exp\":").append(now + 3600)
+                .append("}")
+                .toString();
+        var signingInput = encode(header.getBytes(StandardCharsets.UTF_8)) + "." + encode(payload.getBytes(StandardCharsets.UTF_8));
+        try {
+            var signature = Signature.getInstance("SHA256withRSA");
+            signature.initSign(keyPair.getPrivate());
+            signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+            return signingInput + "." + encode(signature.sign());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private String jwks() {
+        var publicKey = (RSAPublicKey) keyPair.getPublic();
+        return new StringBuilder()
+                .append("{\"keys\":[{\"kty\":\"RSA\",\"alg\":\"RS256\",\"use\":\"sig\",\"kid\":\"").append(KEY_ID)
+                .append("\",\"n\":\"").append(encode(toUnsigned(publicKey.getModulus().toByteArray())))
+                .append("\",\"e\":\"").append(encode(publicKey.getPublicExponent().toByteArray()))
+                .append("\"}]}")
+                .toString();
+    }
+
+    private static void respond(HttpExchange exchange, String body, String cacheControl) throws IOException {
+        try (exchange) {
+            // drain the request, so that the connection can be kept alive
+            exchange.getRequestBody().readAllBytes();
+            var bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            if (cacheControl != null) {
+                exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+            }
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+
+    private static byte[] toUnsigned(byte[] bytes) {
+        // BigInteger adds a leading zero byte when the highest bit is set
+        if (bytes.length > 1 && bytes[0] == 0) {
+            var unsigned = new byte[bytes.length - 1];
+            System.arraycopy(bytes, 1, unsigned, 0, unsigned.length);
+            return unsigned;
+        }
+        return bytes;
+    }
+
+    private static String encode(byte[] bytes) {
+        return BASE64.encodeToString(bytes);
+    }
+}
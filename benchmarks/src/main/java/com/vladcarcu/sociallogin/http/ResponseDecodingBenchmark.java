@@ -0,0 +1,105 @@
+package com.vladcarcu.sociallogin.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Decoding of the Facebook and LinkedIn responses alone, as received on the wire.
+ * Lives in the http package to build responses without going through a client.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseDecodingBenchmark {
+
+    // the same fields the adapters read
+    private static final JsonFields DEBUG_TOKEN_FIELDS = JsonFields.of("data.is_valid", "data.type", "data.user_id", "data.expires_at",
+            "data.error.code", "data.error.error_subcode", "data.error.message", "error.code", "error.message");
+    private static final JsonFields ACCESS_TOKEN_FIELDS = JsonFields.of("access_token", "expires_in", "error", "error_description");
+    private static final JsonFields PROFILE_FIELDS = JsonFields.of("id", "message", "serviceErrorCode", "status");
+
+    private static final String DEBUG_TOKEN_BODY = "{\"data\":{\"app_id\":\"1234567890\",\"type\":\"USER\",\"application\":\"Benchmark\","
+            + "\"data_access_expires_at\":1900000000,\"expires_at\":1800000000,\"is_valid\":true,\"issued_at\":1700000000,"
+            + "\"scopes\":[\"email\",\"public_profile\"],\"granular_scopes\":[{\"scope\":\"email\"},{\"scope\":\"public_profile\"}],"
+            + "\"user_id\":\"109876543210987654321\"}}";
+    private static final String ACCESS_TOKEN_BODY = "{\"access_token\":\"AQUvlL_DYEzvT2wz1QJiEPeLioeA\",\"expires_in\":5184000}";
+    private static final String PROFILE_BODY = "{\"localizedLastName\":\"Doe\",\"lastName\":{\"localized\":{\"en_US\":\"Doe\"},"
+            + "\"preferredLocale\":{\"country\":\"US\",\"language\":\"en\"}},\"firstName\":{\"localized\":{\"en_US\":\"Jane\"},"
+            + "\"preferredLocale\":{\"country\":\"US\",\"language\":\"en\"}},\"id\":\"109876543210987654321\",\"localizedFirstName\":\"Jane\"}";
+
+    @Param({"false", "true"})
+    boolean gzip;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ProviderResponse debugTokenResponse;
+    private ProviderResponse accessTokenResponse;
+    private ProviderResponse profileResponse;
+
+    @Setup
+    public void setUp() throws IOException {
+        debugTokenResponse = response(DEBUG_TOKEN_BODY);
+        accessTokenResponse = response(ACCESS_TOKEN_BODY);
+        profileResponse = response(PROFILE_BODY);
+    }
+
+    @Benchmark
+    public JsonFields.Values facebookDebugToken() {
+        return DEBUG_TOKEN_FIELDS.read(debugTokenResponse);
+    }
+
+    /**
+     * Baseline: the same body read into a tree, as a general purpose decoder would.
+     */
+    @Benchmark
+    public JsonNode facebookDebugTokenTree() throws IOException {
+        return objectMapper.readTree(debugTokenResponse.bodyStream());
+    }
+
+    @Benchmark
+    public JsonFields.Values linkedInAccessToken() {
+        return ACCESS_TOKEN_FIELDS.read(accessTokenResponse);
+    }
+
+    @Benchmark
+    public JsonFields.Values linkedInProfile() {
+        return PROFILE_FIELDS.read(profileResponse);
+    }
+
+    private ProviderResponse response(String body) throws IOException {
+        var bytes = body.getBytes(StandardCharsets.UTF_8);
+        var headers = Map.of("Content-Type", List.of("application/json"));
+        if (gzip) {
+            var compressed = new ByteArrayOutputStream();
+            try (var stream = new GZIPOutputStream(compressed)) {
+                stream.write(bytes);
+            }
+            bytes = compressed.toByteArray();
+            headers = Map.of("Content-Type", List.of("application/json"), "Content-Encoding", List.of("gzip"));
+        }
+        return new ProviderResponse(200, HttpHeaders.of(headers, (name, value) -> true), bytes);
+    }
+}
@@ -0,0 +1,62 @@
+package com.vladcarcu.sociallogin.loadtest;
+
+import java.time.Duration;
+
+/**
+ * How one fake provider behaves, bound from <code>fake.&lt;provider&gt;.*</code>.
+ */
+public class FakeProviderSettings {
+
+    private Duration latency = Duration.ofMillis(50);
+
+    // the latency varies uniformly by up to this much, either way
+    private Duration jitter = Duration.ZERO;
+
+    // percentage of requests answered with a server error
+    private double errorRate;
+
+    // percentage of requests held for the hang duration, long enough for the client to give up
+    private double timeoutRate;
+
+    private Duration hang = Duration.ofSeconds(60);
+
+    public Duration getLatency() {
+        return latency;
+    }
+
+    public void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    public Duration getJitter() {
+        return jitter;
+    }
+
+    public void setJitter(Duration jitter) {
+        this.jitter = jitter;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public double getTimeoutRate() {
+        return timeoutRate;
+    }
+
+    public void setTimeoutRate(double timeoutRate) {
+        this.timeoutRate = timeoutRate;
+    }
+
+    public Duration getHang() {
+        return hang;
+    }
+
+    public void setHang(Duration hang) {
+        this.hang = hang;
+    }
+}
@@ -0,0 +1,263 @@
+package com.vladcarcu.sociallogin.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Fake Google, Facebook and LinkedIn endpoints, answering with bodies shaped like the real ones after a configurable
+ * latency, and failing or hanging for a configurable share of the requests.
+ * Responses are delayed on a scheduler, so that slow providers do not need a thread per pending request.
+ */
+@Component
+public class FakeProviders {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FakeProviders.class);
+
+    private static final String KEY_ID = "load-test-key";
+    private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+
+    static {
+        // otherwise Nagle's algorithm delays every response by the client's delayed ACK, around 40ms
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final String googleClientId;
+    private final Map<String, FakeProviderSettings> settings;
+    private final KeyPair keyPair;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public FakeProviders(Environment environment) {
+        var binder = Binder.get(environment);
+        googleClientId = environment.getRequiredProperty("social.login.google.client-ids").split(",")[0];
+        settings = Map.of(
+                "google", binder.bind("fake.google", FakeProviderSettings.class).orElseGet(FakeProviderSettings::new),
+                "facebook", binder.bind("fake.facebook", FakeProviderSettings.class).orElseGet(FakeProviderSettings::new),
+                "linkedin", binder.bind("fake.linkedin", FakeProviderSettings.class).orElseGet(FakeProviderSettings::new));
+        try {
+            var generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            keyPair = generator.generateKeyPair();
+            server = HttpServer.create(new InetSocketAddress(environment.getProperty("fake.port", Integer.class, 8089)), 1024);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        var threads = Runtime.getRuntime().availableProcessors();
+        executor = Executors.newFixedThreadPool(threads);
+        scheduler = Executors.newScheduledThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/google/certs", exchange -> handle(exchange, "google",
+                (request, body) -> jwks(), "{\"error\":\"backend_error\"}"));
+        server.createContext("/facebook/oauth/access_token", exchange -> handle(exchange, "facebook",
+                (request, body) -> "{\"access_token\":\"1234567890|load-test-app-token\",\"token_type\":\"bearer\"}",
+                "{\"error\":{\"message\":\"An unexpected error has occurred. Please retry your request later.\",\"type\":\"OAuthException\",\"is_transient\":true,\"code\":2}}"));
+        server.createContext("/facebook/debug_token", exchange -> handle(exchange, "facebook",
+                (request, body) -> debugToken(getQueryParameter(request.getRequestURI().getRawQuery(), "input_token")),
+                "{\"error\":{\"message\":\"An unexpected error has occurred. Please retry your request later.\",\"type\":\"OAuthException\",\"is_transient\":true,\"code\":2}}"));
+        // Graph API batch requests are posted to the root
+        server.createContext("/facebook", exchange -> handle(exchange, "facebook",
+                (request, body) -> batch(getQueryParameter(body, "batch")),
+                "{\"error\":{\"message\":\"An unexpected error has occurred. Please retry your request later.\",\"type\":\"OAuthException\",\"is_transient\":true,\"code\":2}}"));
+        // requests without a code or a token, such as the warm-up's, are turned down right away, as LinkedIn does
+        server.createContext("/linkedin/oauth/v2/accessToken", exchange -> {
+            if (exchange.getRequestURI().getRawQuery() == null || getQueryParameter(exchange.getRequestURI().getRawQuery(), "code").isEmpty()) {
+                respond(exchange, 400, "{\"error\":\"invalid_request\",\"error_description\":\"A required parameter \\\"code\\\" is missing\"}", 0);
+                return;
+            }
+            handle(exchange, "linkedin",
+                    (request, body) -> "{\"access_token\":\"" + userId(getQueryParameter(request.getRequestURI().getRawQuery(), "code")) + "\",\"expires_in\":5184000}",
+                    "{\"error\":\"server_error\",\"error_description\":\"The server encountered an unexpected condition\"}");
+        });
+        server.createContext("/linkedin/v2/me", exchange -> {
+            if (exchange.getRequestHeaders().getFirst("Authorization") == null) {
+                respond(exchange, 401, "{\"serviceErrorCode\":65604,\"message\":\"Empty oauth2 access token\",\"status\":401}", 0);
+                return;
+            }
+            handle(exchange, "linkedin",
+                    (request, body) -> profile(request.getRequestHeaders().getFirst("Authorization").substring("Bearer ".length())),
+                    "{\"serviceErrorCode\":0,\"message\":\"Internal Server Error\",\"status\":500}");
+        });
+        server.start();
+        LOGGER.info("Fake providers listening on port {}", server.getAddress().getPort());
+    }
+
+    @PreDestroy
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * A token the fake of the given type accepts, belonging to the given user.
+     * Google ID tokens are signed with the key published by the fake, so they are costly to create and should be reused.
+     */
+    public String tokenFor(String type, int user) {
+        if ("google".equals(type)) {
+            return googleIdToken(user);
+        }
+        return type + "-token-" + user + "-" + ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+    }
+
+    private void handle(HttpExchange exchange, String provider, BiFunction<HttpExchange, String, String> success, String error) throws IOException {
+        var body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        var providerSettings = settings.get(provider);
+        var random = ThreadLocalRandom.current();
+        var roll = random.nextDouble(100);
+        var jitter = providerSettings.getJitter().toMillis();
+        var delay = Math.max(0, providerSettings.getLatency().toMillis() + (jitter > 0 ? random.nextLong(-jitter, jitter + 1) : 0));
+        if (roll < providerSettings.getTimeoutRate()) {
+            // the client gives up long before this
+            respond(exchange, 200, success.apply(exchange, body), providerSettings.getHang().toMillis());
+        } else if (roll < providerSettings.getTimeoutRate() + providerSettings.getErrorRate()) {
+            respond(exchange, 500, error, delay);
+        } else {
+            respond(exchange, 200, success.apply(exchange, body), delay);
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, String body, long delayMillis) {
+        scheduler.schedule(() -> {
+            try (exchange) {
+                var bytes = body.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+                exchange.sendResponseHeaders(status, bytes.length);
+                exchange.getResponseBody().write(bytes);
+            } catch (IOException e) {
+                // the client went away, most likely after timing out
+                LOGGER.debug("Could not send the fake response", e);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private String jwks() {
+        var publicKey = (RSAPublicKey) keyPair.getPublic();
+        return new StringBuilder()
+                .append("{\"keys\":[{\"kty\":\"RSA\",\"alg\":\"RS256\",\"use\":\"sig\",\"kid\":\"").append(KEY_ID)
+                .append("\",\"n\":\"").append(encode(toUnsigned(publicKey.getModulus().toByteArray())))
+                .append("\",\"e\":\"").append(encode(publicKey.getPublicExponent().toByteArray()))
+                .append("\"}]}")
+                .toString();
+    }
+
+    private static String debugToken(String token) {
+        var now = Instant.now();
+        return new StringBuilder()
+                .append("{\"data\":{\"app_id\":\"1234567890\",\"type\":\"USER\",\"application\":\"Load test\",")
+                .append("\"data_access_expires_at\":").append(now.plus(Duration.ofDays(90)).getEpochSecond())
+                .append(",\"expires_at\":").append(now.plus(Duration.ofDays(60)).getEpochSecond())
+                .append(",\"is_valid\":true,\"issued_at\":").append(now.getEpochSecond())
+                .append(",\"scopes\":[\"email\",\"public_profile\"],\"user_id\":\"").append(userId(token)).append("\"}}")
+                .toString();
+    }
+
+    private String batch(String batch) {
+        try {
+            var response = new StringBuilder("[");
+            for (var subRequest : objectMapper.readTree(batch)) {
+                var relativeUrl = subRequest.path("relative_url").asText();
+                if (response.length() > 1) {
+                    response.append(',');
+                }
+                response.append("{\"code\":200,\"body\":")
+                        .append(objectMapper.writeValueAsString(debugToken(getQueryParameter(relativeUrl.substring(relativeUrl.indexOf('?') + 1), "input_token"))))
+                        .append('}');
+            }
+            return response.append(']').toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String profile(String accessToken) {
+        return new StringBuilder()
+                .append("{\"localizedLastName\":\"Doe\",\"lastName\":{\"localized\":{\"en_US\":\"Doe\"},\"preferredLocale\":{\"country\":\"US\",\"language\":\"en\"}},")
+                .append("\"firstName\":{\"localized\":{\"en_US\":\"Jane\"},\"preferredLocale\":{\"country\":\"US\",\"language\":\"en\"}},")
+                .append("\"id\":\"").append(accessToken).append("\",\"localizedFirstName\":\"Jane\"}")
+                .toString();
+    }
+
+    private String googleIdToken(int user) {
+        var now = Instant.now().getEpochSecond();
+        var header = "{\"alg\":\"RS256\",\"kid\":\"" + KEY_ID + "\",\"typ\":\"JWT\"}";
+        var payload = new StringBuilder()
+                .append("{\"iss\":\"https://accounts.google.com\",\"azp\":\"").append(googleClientId)
+                .append("\",\"aud\":\"").append(googleClientId)
+                .append("\",\"sub\":\"").append(user)
+                .append("\",\"email_verified\":true,\"iat\":").append(now)
+                .append(",\"exp\":").append(now + 3600)
+                .append("}")
+                .toString();
+        var signingInput = encode(header.getBytes(StandardCharsets.UTF_8)) + "." + encode(payload.getBytes(StandardCharsets.UTF_8));
+        try {
+            var signature = Signature.getInstance("SHA256withRSA");
+            signature.initSign(keyPair.getPrivate());
+            signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+            return signingInput + "." + encode(signature.sign());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // tokens created by tokenFor carry their user, so the same user always gets the same id
+    private static String userId(String token) {
+        var parts = token.split("-");
+        return parts.length > 2 ? parts[2] : token;
+    }
+
+    private static String getQueryParameter(String query, String name) {
+        for (var parameter : query.split("&")) {
+            var separator = parameter.indexOf('=');
+            if (separator > 0 && parameter.substring(0, separator).equals(name)) {
+                return URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return "";
+    }
+
+    private static byte[] toUnsigned(byte[] bytes) {
+        // BigInteger adds a leading zero byte when the highest bit is set
+        if (bytes.length > 1 && bytes[0] == 0) {
+            var unsigned = new byte[bytes.length - 1];
+            System.arraycopy(bytes, 1, unsigned, 0, unsigned.length);
+            return unsigned;
+        }
+        return bytes;
+    }
+
+    private static String encode(byte[] bytes) {
+        return BASE64.encodeToString(bytes);
+    }
+}
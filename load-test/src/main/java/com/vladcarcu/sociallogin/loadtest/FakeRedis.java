@@ -0,0 +1,164 @@
+package com.vladcarcu.sociallogin.loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An embedded stand-in for Redis, started when the validation store is set to <code>redis</code>, so that the shared
+ * store can be tried without a real server. It knows just the commands the store sends (<code>GET</code>, <code>SET</code>
+ * with <code>PX</code>, <code>AUTH</code>, <code>SELECT</code>) and <code>PING</code>, and drops expired entries when they are read.
+ */
+@Component
+@ConditionalOnProperty(value = "social.login.validation-store.type", havingValue = "redis")
+public class FakeRedis {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FakeRedis.class);
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        var thread = new Thread(runnable, "fake-redis");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public FakeRedis(Environment environment) {
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.bind(new InetSocketAddress("localhost", environment.getProperty("fake.redis-port", Integer.class, 6389)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        executor.execute(this::accept);
+        LOGGER.info("Fake Redis listening on port {}", serverSocket.getLocalPort());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                var socket = serverSocket.accept();
+                executor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                LOGGER.debug("Fake Redis stopped accepting connections", e);
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            var in = new BufferedInputStream(socket.getInputStream());
+            var out = new BufferedOutputStream(socket.getOutputStream());
+            List<String> command;
+            while ((command = readCommand(in)) != null) {
+                out.write(execute(command).getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Fake Redis connection closed", e);
+        }
+    }
+
+    private String execute(List<String> command) {
+        switch (command.get(0).toUpperCase(Locale.ROOT)) {
+            case "PING":
+            case "AUTH":
+            case "SELECT":
+                return "+OK\r\n";
+            case "GET":
+                var entry = entries.get(command.get(1));
+                if (entry == null) {
+                    return "$-1\r\n";
+                }
+                if (entry.expiresAt < System.currentTimeMillis()) {
+                    entries.remove(command.get(1), entry);
+                    return "$-1\r\n";
+                }
+                var bytes = entry.value.getBytes(StandardCharsets.UTF_8);
+                return "$" + bytes.length + "\r\n" + entry.value + "\r\n";
+            case "SET":
+                var expiresAt = Long.MAX_VALUE;
+                if (command.size() == 5 && "PX".equalsIgnoreCase(command.get(3))) {
+                    expiresAt = System.currentTimeMillis() + Long.parseLong(command.get(4));
+                }
+                entries.put(command.get(1), new Entry(command.get(2), expiresAt));
+                return "+OK\r\n";
+            default:
+                return "-ERR unknown command '" + command.get(0) + "'\r\n";
+        }
+    }
+
+    private static List<String> readCommand(InputStream in) throws IOException {
+        var type = in.read();
+        if (type == -1) {
+            return null;
+        }
+        if (type != '*') {
+            throw new IOException("Expected an array of bulk strings");
+        }
+        var count = Integer.parseInt(readLine(in));
+        var command = new ArrayList<String>(count);
+        for (var i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Expected a bulk string");
+            }
+            var length = Integer.parseInt(readLine(in));
+            command.add(new String(in.readNBytes(length), StandardCharsets.UTF_8));
+            readLine(in);
+        }
+        return command;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        var line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b == -1) {
+                throw new IOException("Connection closed in the middle of a command");
+            }
+            line.write(b);
+        }
+        in.read();
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private static final class Entry {
+
+        private final String value;
+        private final long expiresAt;
+
+        private Entry(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.vladcarcu.sociallogin.loadtest;
+
+import com.vladcarcu.sociallogin.SocialUserResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A stand-in for the user database of an application, started with <code>fake.user-store.enabled=true</code>.
+ * Every subject has an account, found after <code>fake.user-store.latency</code>; the lookups are counted,
+ * so that the report can be read against how many of them the user cache saved.
+ */
+@Component
+@ConditionalOnProperty("fake.user-store.enabled")
+public class FakeUserStore implements SocialUserResolver {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FakeUserStore.class);
+
+    private final Duration latency;
+    private final AtomicLong lookups = new AtomicLong();
+
+    public FakeUserStore(Environment environment) {
+        this.latency = environment.getProperty("fake.user-store.latency", Duration.class, Duration.ofMillis(10));
+    }
+
+    @Override
+    public UserDetails resolve(String type, String subject) {
+        lookups.incrementAndGet();
+        try {
+            Thread.sleep(latency.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new User(type + ":" + subject, "", AuthorityUtils.createAuthorityList("ROLE_USER"));
+    }
+
+    @PreDestroy
+    public void report() {
+        LOGGER.info("Fake user store served {} lookups", lookups.get());
+    }
+}
@@ -0,0 +1,215 @@
+package com.vladcarcu.sociallogin.loadtest;
+
+import com.vladcarcu.sociallogin.resilience.AdapterGuards;
+import org.apache.catalina.connector.Connector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Drives concurrent social grant requests at the token endpoint, in a closed loop: every worker sends its next
+ * request as soon as it gets a response. Once the run is over it logs the latency percentiles, the throughput,
+ * the outcomes and how busy Tomcat's request threads were.
+ */
+@Component
+public class LoadDriver implements ApplicationRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadDriver.class);
+
+    // the user tokens for Google are signed up front, this many at most
+    private static final int MAX_SIGNED_TOKENS = 1000;
+    private static final Duration THREAD_SAMPLING_INTERVAL = Duration.ofMillis(100);
+
+    private final ServletWebServerApplicationContext context;
+    private final FakeProviders fakeProviders;
+    private final AdapterGuards adapterGuards;
+    private final LoadSettings settings;
+
+    public LoadDriver(ServletWebServerApplicationContext context, FakeProviders fakeProviders, AdapterGuards adapterGuards, Environment environment) {
+        this.context = context;
+        this.fakeProviders = fakeProviders;
+        this.adapterGuards = adapterGuards;
+        this.settings = Binder.get(environment).bind("load", LoadSettings.class).orElseGet(LoadSettings::new);
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!settings.isEnabled()) {
+            LOGGER.info("The load driver is disabled, the server and the fake providers keep running.");
+            return;
+        }
+        var uri = URI.create("http://localhost:" + context.getWebServer().getPort() + "/oauth/token");
+        var authorization = "Basic " + Base64.getEncoder().encodeToString(
+                (LoadTestApplication.CLIENT_ID + ":" + LoadTestApplication.CLIENT_SECRET).getBytes(StandardCharsets.UTF_8));
+        var googleTokens = new ArrayList<String>();
+        if (settings.getTypes().contains("google")) {
+            for (var user = 0; user < Math.min(settings.getUsers(), MAX_SIGNED_TOKENS); user++) {
+                googleTokens.add(fakeProviders.tokenFor("google", user));
+            }
+        }
+        var client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        LOGGER.info("Driving {} concurrent requests for {} (warm-up {}) at {}", settings.getConcurrency(), settings.getDuration(), settings.getWarmUp(), uri);
+        var start = System.nanoTime();
+        var measureFrom = start + settings.getWarmUp().toNanos();
+        var measureUntil = measureFrom + settings.getDuration().toNanos();
+
+        var threadSampler = new ThreadSampler(getTomcatExecutor());
+        var sampling = Executors.newSingleThreadScheduledExecutor();
+        sampling.scheduleAtFixedRate(() -> {
+            var now = System.nanoTime();
+            if (now >= measureFrom && now < measureUntil) {
+                threadSampler.sample();
+            }
+        }, 0, THREAD_SAMPLING_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+
+        var workers = Executors.newFixedThreadPool(settings.getConcurrency());
+        var results = new ArrayList<Future<Map<String, Samples>>>();
+        for (var worker = 0; worker < settings.getConcurrency(); worker++) {
+            var offset = worker;
+            results.add(workers.submit(() -> {
+                var samples = new HashMap<String, Samples>();
+                var random = ThreadLocalRandom.current();
+                for (var i = offset; System.nanoTime() < measureUntil; i++) {
+                    var type = settings.getTypes().get(i % settings.getTypes().size());
+                    var user = random.nextInt(settings.getUsers());
+                    var token = "google".equals(type) ? googleTokens.get(user % googleTokens.size()) : fakeProviders.tokenFor(type, user);
+                    var request = HttpRequest.newBuilder(uri)
+                            .timeout(Duration.ofSeconds(60))
+                            .header("Authorization", authorization)
+                            .header("Content-Type", "application/x-www-form-urlencoded")
+                            .POST(HttpRequest.BodyPublishers.ofString(new StringBuilder()
+                                    .append("grant_type=social")
+                                    .append("&type=").append(URLEncoder.encode(type, StandardCharsets.UTF_8))
+                                    .append("&token=").append(URLEncoder.encode(token, StandardCharsets.UTF_8))
+                                    .toString()))
+                            .build();
+                    var sentAt = System.nanoTime();
+                    String outcome;
+                    try {
+                        outcome = Integer.toString(client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+                    } catch (IOException e) {
+                        outcome = e.getClass().getSimpleName();
+                    }
+                    if (sentAt >= measureFrom && sentAt < measureUntil) {
+                        samples.computeIfAbsent(type, key -> new Samples()).add(System.nanoTime() - sentAt, outcome);
+                    }
+                }
+                return samples;
+            }));
+        }
+        var byType = new HashMap<String, List<Samples>>();
+        for (var result : results) {
+            result.get().forEach((type, samples) -> byType.computeIfAbsent(type, key -> new ArrayList<>()).add(samples));
+        }
+        workers.shutdown();
+        sampling.shutdownNow();
+
+        LOGGER.info(report(byType, threadSampler));
+    }
+
+    private String report(Map<String, List<Samples>> byType, ThreadSampler threadSampler) {
+        var seconds = settings.getDuration().toMillis() / 1000.0;
+        var report = new StringBuilder()
+                .append("\nConcurrency: ").append(settings.getConcurrency())
+                .append(", measured for ").append(settings.getDuration())
+                .append(String.format("%n%-10s %10s %10s %10s %10s %10s %10s  %s", "type", "requests", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "outcomes"));
+        var all = new ArrayList<Samples>();
+        for (var type : settings.getTypes()) {
+            var parts = byType.getOrDefault(type, List.of());
+            all.addAll(parts);
+            appendRow(report, type, Samples.merge(parts), seconds);
+        }
+        appendRow(report, "all", Samples.merge(all), seconds);
+        report.append(String.format("%nTomcat threads: max %d, busy on average %.1f, at most %d, all busy in %.1f%% of the samples",
+                threadSampler.maxThreads, threadSampler.getAverageBusy(), threadSampler.maxBusy, threadSampler.getSaturatedPercentage()));
+        report.append("\nCircuit breakers: ").append(adapterGuards.getGuards().entrySet().stream()
+                .map(guard -> guard.getKey() + "=" + guard.getValue().getCircuitBreakerState())
+                .collect(Collectors.joining(", ")));
+        return report.toString();
+    }
+
+    private static void appendRow(StringBuilder report, String type, Samples samples, double seconds) {
+        report.append(String.format("%n%-10s %10d %10.1f %10.2f %10.2f %10.2f %10.2f  %s", type, samples.size(), samples.size() / seconds,
+                toMillis(samples.percentile(50)), toMillis(samples.percentile(99)), toMillis(samples.percentile(99.9)), toMillis(samples.percentile(100)),
+                samples.getOutcomes()));
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private ThreadPoolExecutor getTomcatExecutor() {
+        Connector connector = ((TomcatWebServer) context.getWebServer()).getTomcat().getConnector();
+        return (ThreadPoolExecutor) connector.getProtocolHandler().getExecutor();
+    }
+
+    /**
+     * Periodic readings of how many of Tomcat's request threads are busy.
+     */
+    private static class ThreadSampler {
+
+        private final ThreadPoolExecutor executor;
+        private final int maxThreads;
+        private int maxBusy;
+        private long totalBusy;
+        private int samples;
+        private int saturatedSamples;
+
+        private ThreadSampler(ThreadPoolExecutor executor) {
+            this.executor = executor;
+            this.maxThreads = executor.getMaximumPoolSize();
+        }
+
+        private synchronized void sample() {
+            var busy = executor.getActiveCount();
+            maxBusy = Math.max(maxBusy, busy);
+            totalBusy += busy;
+            samples++;
+            if (busy >= maxThreads) {
+                saturatedSamples++;
+            }
+        }
+
+        private synchronized double getAverageBusy() {
+            return samples == 0 ? 0 : (double) totalBusy / samples;
+        }
+
+        private synchronized double getSaturatedPercentage() {
+            return samples == 0 ? 0 : 100.0 * saturatedSamples / samples;
+        }
+    }
+}
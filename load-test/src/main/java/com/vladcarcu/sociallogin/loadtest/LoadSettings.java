@@ -0,0 +1,74 @@
+package com.vladcarcu.sociallogin.loadtest;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The load to drive, bound from <code>load.*</code>.
+ */
+public class LoadSettings {
+
+    private boolean enabled = true;
+
+    // requests in flight at once; every one waits for its response before sending the next
+    private int concurrency = 100;
+
+    // results from this first part of the run are discarded
+    private Duration warmUp = Duration.ofSeconds(10);
+
+    private Duration duration = Duration.ofSeconds(30);
+
+    // requests cycle through these types
+    private List<String> types = List.of("google", "facebook", "linkedin");
+
+    // distinct users the tokens belong to
+    private int users = 1000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public Duration getWarmUp() {
+        return warmUp;
+    }
+
+    public void setWarmUp(Duration warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public void setDuration(Duration duration) {
+        this.duration = duration;
+    }
+
+    public List<String> getTypes() {
+        return types;
+    }
+
+    public void setTypes(List<String> types) {
+        this.types = types;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public void setUsers(int users) {
+        this.users = users;
+    }
+}
@@ -0,0 +1,38 @@
+package com.vladcarcu.sociallogin.loadtest;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.security.oauth2.config.annotation.configurers.ClientDetailsServiceConfigurer;
+import org.springframework.security.oauth2.config.annotation.web.configuration.AuthorizationServerConfigurerAdapter;
+import org.springframework.security.oauth2.config.annotation.web.configuration.EnableAuthorizationServer;
+
+/**
+ * A sample authorization server using the starter, with fake providers behind it and a load driver in front of it.
+ * Once the run is over the report is logged and the application exits, unless <code>load.enabled=false</code>,
+ * in which case the server and the fake providers keep running for an external load generator.
+ */
+@SpringBootApplication
+@EnableAuthorizationServer
+public class LoadTestApplication extends AuthorizationServerConfigurerAdapter {
+
+    static final String CLIENT_ID = "load-test";
+    static final String CLIENT_SECRET = "load-test-secret";
+
+    public static void main(String[] args) {
+        // the JAXB runtime used by Spring Security OAuth2 can't generate its optimized accessors on recent JDKs
+        System.setProperty("com.sun.xml.bind.v2.bytecode.ClassTailor.noOptimize", "true");
+        var context = SpringApplication.run(LoadTestApplication.class, args);
+        if (context.getBean(LoadDriver.class).isEnabled()) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    @Override
+    public void configure(ClientDetailsServiceConfigurer clients) throws Exception {
+        clients.inMemory()
+                .withClient(CLIENT_ID)
+                .secret("{noop}" + CLIENT_SECRET)
+                .authorizedGrantTypes("social")
+                .scopes("read");
+    }
+}
@@ -0,0 +1,55 @@
+package com.vladcarcu.sociallogin.loadtest;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latencies and response statuses recorded by one worker, merged once the run is over.
+ */
+class Samples {
+
+    private long[] latencies = new long[1024];
+    private int size;
+    private final Map<String, Long> outcomes = new TreeMap<>();
+
+    void add(long latencyNanos, String outcome) {
+        if (size == latencies.length) {
+            latencies = Arrays.copyOf(latencies, size * 2);
+        }
+        latencies[size++] = latencyNanos;
+        outcomes.merge(outcome, 1L, Long::sum);
+    }
+
+    int size() {
+        return size;
+    }
+
+    Map<String, Long> getOutcomes() {
+        return outcomes;
+    }
+
+    /**
+     * The latency at the given percentile (between 0 and 100), once the samples are sorted.
+     */
+    long percentile(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        var index = (int) Math.ceil(percentile / 100 * size) - 1;
+        return latencies[Math.max(0, Math.min(index, size - 1))];
+    }
+
+    static Samples merge(Collection<Samples> parts) {
+        var merged = new Samples();
+        merged.latencies = new long[Math.max(1, parts.stream().mapToInt(Samples::size).sum())];
+        for (var part : parts) {
+            System.arraycopy(part.latencies, 0, merged.latencies, merged.size, part.size);
+            merged.size += part.size;
+            part.outcomes.forEach((outcome, count) -> merged.outcomes.merge(outcome, count, Long::sum));
+        }
+        Arrays.sort(merged.latencies, 0, merged.size);
+        return merged;
+    }
+}
@@ -0,0 +1,37 @@
+package com.vladcarcu.sociallogin;
+
+/**
+ * Settings of the <code>type=auto</code> mode, bound from <code>social.login.auto-detect.*</code>.
+ */
+public class AutoDetectSettings {
+
+    private boolean enabled;
+
+    private int threads = 4;
+
+    private int queueCapacity = 1000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+}
@@ -0,0 +1,185 @@
+package com.vladcarcu.sociallogin;
+
+import com.vladcarcu.sociallogin.resilience.ValidationRejectedException;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Serves <code>type=auto</code>: picks the types whose adapters could have issued the token, judging by its shape,
+ * and validates it against all of them at once. The first successful validation wins and the others are cancelled,
+ * so a login takes about one provider round trip however many candidates there are.
+ * Candidates are dispatched on a small bounded pool, so that adapters which only validate synchronously
+ * still run side by side without taking more threads than configured.
+ */
+public class AutoDetector implements Closeable {
+
+    public static final String AUTO_TYPE = "auto";
+
+    private final SocialLoginAdapterRegistry registry;
+    private final ThreadPoolExecutor executor;
+
+    public AutoDetector(SocialLoginAdapterRegistry registry, AutoDetectSettings settings) {
+        if (registry.getAdapter(AUTO_TYPE) != null) {
+            throw new IllegalStateException(new StringBuilder()
+                    .append("Type '").append(AUTO_TYPE).append("' is reserved while social.login.auto-detect.enabled is set, but ")
+                    .append(registry.getAdapter(AUTO_TYPE).getClass().getName()).append(" declares it")
+                    .toString());
+        }
+        this.registry = registry;
+        var threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(settings.getThreads(), settings.getThreads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(settings.getQueueCapacity()), runnable -> {
+            var thread = new Thread(runnable, "social-login-auto-detect-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The types whose adapters may accept the token, in no particular order.
+     */
+    public List<String> getCandidates(String token) {
+        var candidates = new ArrayList<String>();
+        for (var type : registry.getTypes()) {
+            if (registry.getAdapter(type).mayAccept(type, token)) {
+                candidates.add(type);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Runs the validation for every candidate and completes with the first success, cancelling the rest.
+     * If none succeeds, it fails with the first failure that was not about the token itself, if any,
+     * since then the token may well be valid, and otherwise completes with the first rejection.
+     */
+    public CompletableFuture<Detection> race(List<String> candidates, Function<String, CompletionStage<ValidationResult>> validation) {
+        if (candidates.size() == 1) {
+            // nothing to race, so no need to change threads
+            var candidate = candidates.get(0);
+            return validation.apply(candidate).toCompletableFuture().thenApply(result -> new Detection(candidate, result));
+        }
+        var winner = new CompletableFuture<Detection>();
+        var pending = new AtomicInteger(candidates.size());
+        var upstreamFailure = new AtomicReference<Throwable>();
+        var rejection = new AtomicReference<Detection>();
+        var tasks = new AtomicReferenceArray<Future<?>>(candidates.size());
+        var attempts = new AtomicReferenceArray<CompletableFuture<ValidationResult>>(candidates.size());
+        BiConsumer<Detection, Throwable> onFailure = (detection, e) -> {
+            if (detection.result != null) {
+                rejection.compareAndSet(null, detection);
+            } else if (SocialLoginMetrics.getOutcome(e) != SocialLoginMetrics.Outcome.BAD_CREDENTIALS) {
+                upstreamFailure.compareAndSet(null, Futures.unwrap(e));
+            } else {
+                rejection.compareAndSet(null, new Detection(detection.type, ValidationResult.INVALID_TOKEN));
+            }
+            if (pending.decrementAndGet() == 0) {
+                var failure = upstreamFailure.get();
+                if (failure != null) {
+                    winner.completeExceptionally(failure);
+                } else {
+                    winner.complete(rejection.get());
+                }
+            }
+        };
+        for (var i = 0; i < candidates.size(); i++) {
+            var index = i;
+            var candidate = candidates.get(i);
+            try {
+                tasks.set(index, executor.submit(() -> {
+                    if (winner.isDone()) {
+                        // another candidate won while this one was queued
+                        return;
+                    }
+                    CompletableFuture<ValidationResult> attempt;
+                    try {
+                        attempt = validation.apply(candidate).toCompletableFuture();
+                    } catch (RuntimeException e) {
+                        attempt = CompletableFuture.failedFuture(e);
+                    }
+                    attempts.set(index, attempt);
+                    attempt.whenComplete((result, e) -> {
+                        if (e == null && result.isSuccess()) {
+                            if (winner.complete(new Detection(candidate, result))) {
+                                cancel(tasks, attempts, index);
+                            }
+                        } else {
+                            onFailure.accept(new Detection(candidate, e == null ? result : null), e);
+                        }
+                    });
+                    if (winner.isDone()) {
+                        attempt.cancel(true);
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                onFailure.accept(new Detection(candidate, null), new ValidationRejectedException("Too many concurrent validations for type: " + AUTO_TYPE));
+            }
+        }
+        winner.whenComplete((result, e) -> {
+            if (winner.isCancelled()) {
+                // the caller gave up
+                cancel(tasks, attempts, -1);
+            }
+        });
+        return winner;
+    }
+
+    private static void cancel(AtomicReferenceArray<Future<?>> tasks, AtomicReferenceArray<? extends CompletableFuture<?>> attempts, int winnerIndex) {
+        // the losers only get their own copy of the validation cancelled, validations shared with other requests go on
+        for (var i = 0; i < tasks.length(); i++) {
+            if (i == winnerIndex) {
+                continue;
+            }
+            var task = tasks.get(i);
+            if (task != null) {
+                // dropped if still queued, but never interrupted: a synchronous adapter may be running a validation others wait for
+                task.cancel(false);
+            }
+            var attempt = attempts.get(i);
+            if (attempt != null) {
+                attempt.cancel(true);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The outcome of a race: the candidate that decided it, along with the result of its validation.
+     */
+    public static final class Detection {
+
+        private final String type;
+        private final ValidationResult result;
+
+        private Detection(String type, ValidationResult result) {
+            this.type = type;
+            this.result = result;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public ValidationResult getResult() {
+            return result;
+        }
+    }
+}
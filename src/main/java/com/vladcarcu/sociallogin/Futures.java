@@ -0,0 +1,44 @@
+package com.vladcarcu.sociallogin;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+public final class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * Waits for the stage and rethrows its failure as it was raised, rather than wrapped in a CompletionException.
+     */
+    public static <T> T join(CompletionStage<T> stage) {
+        try {
+            return stage.toCompletableFuture().join();
+        } catch (CompletionException e) {
+            throw propagate(e);
+        }
+    }
+
+    /**
+     * Strips the wrappers added by CompletableFuture and returns the failure as a RuntimeException.
+     */
+    public static RuntimeException propagate(Throwable throwable) {
+        var cause = unwrap(throwable);
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new CompletionException(cause);
+    }
+
+    public static Throwable unwrap(Throwable throwable) {
+        var cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
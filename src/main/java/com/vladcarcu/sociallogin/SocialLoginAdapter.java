@@ -1,8 +1,83 @@
 package com.vladcarcu.sociallogin;
 
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 public interface SocialLoginAdapter {
 
-    boolean isApplicable(String type);
+    /**
+     * The values of the <code>type</code> request parameter this adapter validates tokens for.
+     * They are indexed once at startup, so they must not change afterwards.
+     */
+    default Set<String> getTypes() {
+        return Set.of();
+    }
+
+    /**
+     * Only called for adapters that declare no type in {@link #getTypes()}, which are then asked one after the other.
+     *
+     * @deprecated declare the types in {@link #getTypes()} instead.
+     */
+    @Deprecated
+    default boolean isApplicable(String type) {
+        return getTypes().contains(type);
+    }
+
+    /**
+     * Whether a token shaped like this one could have been issued by the provider of the given type.
+     * Tokens it refuses are rejected without being validated, and it decides which adapters are tried
+     * for <code>type=auto</code>, so it must be cheap and must not reach the provider.
+     * When in doubt, answer true: a wrong true only costs a validation, a wrong false fails the login.
+     */
+    default boolean mayAccept(String type, String token) {
+        return true;
+    }
+
+    /**
+     * Whether a token of the given type that validated once may be taken as valid again without asking the provider.
+     * Single-use tokens, such as authorization codes, must answer false: their validations are then neither cached
+     * nor shared between concurrent requests, so that a replay reaches the provider, which turns it down.
+     */
+    default boolean isCacheable(String type) {
+        return true;
+    }
 
     SocialLoginAuthenticationToken validateLogin(String token);
+
+    /**
+     * Gets the adapter ready for its first logins, when the warm-up is enabled: fetches what it would otherwise fetch
+     * on the first validation (keys, app tokens), opens its connections and runs its decoding once.
+     * A failure is logged and does not keep the application from serving.
+     */
+    default CompletionStage<Void> warmUp() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Validates the token and reports a rejected token as a {@link ValidationResult} rather than an exception, which is
+     * what the token endpoint calls. A failed stage is taken as an upstream error.
+     * By default this bridges to {@link #validateLoginAsync(String)}, mapping authentication exceptions to rejections;
+     * adapters expecting many bad tokens should override it and return the shared rejections.
+     */
+    default CompletionStage<ValidationResult> validate(String token) {
+        try {
+            return validateLoginAsync(token).handle(ValidationResult::of);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(ValidationResult.of(null, e));
+        }
+    }
+
+    /**
+     * Validates the token without holding the calling thread while the provider answers.
+     * By default this bridges to {@link #validateLogin(String)}, which runs on the calling thread;
+     * adapters that can reach their provider asynchronously should override it.
+     */
+    default CompletionStage<SocialLoginAuthenticationToken> validateLoginAsync(String token) {
+        try {
+            return CompletableFuture.completedFuture(validateLogin(token));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 }
@@ -0,0 +1,77 @@
+package com.vladcarcu.sociallogin;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps every provider type to the single adapter declaring it. Built once at startup, so that a duplicated
+ * type stops the application from starting instead of showing up on the first login.
+ * <p>
+ * Adapters written before {@link SocialLoginAdapter#getTypes()} existed declare no type. They are still
+ * looked up, by asking each of them {@link SocialLoginAdapter#isApplicable(String)} in turn, but since their
+ * types are not known up front they get no cache, guards, rate limit, timers, warm-up or auto-detection.
+ */
+public class SocialLoginAdapterRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SocialLoginAdapterRegistry.class);
+
+    private final Map<String, SocialLoginAdapter> adapters;
+
+    private final List<SocialLoginAdapter> legacyAdapters;
+
+    public SocialLoginAdapterRegistry(List<SocialLoginAdapter> adapters) {
+        var byType = new HashMap<String, SocialLoginAdapter>();
+        var legacy = new ArrayList<SocialLoginAdapter>();
+        for (var adapter : adapters) {
+            var types = adapter.getTypes();
+            if (types == null || types.isEmpty()) {
+                LOGGER.warn("{} does not declare any type and is looked up through the deprecated isApplicable(). "
+                        + "Please override SocialLoginAdapter.getTypes().", adapter.getClass().getName());
+                legacy.add(adapter);
+                continue;
+            }
+            for (var type : types) {
+                var existing = byType.putIfAbsent(type, adapter);
+                if (existing != null) {
+                    throw new IllegalStateException(new StringBuilder()
+                            .append("Type '").append(type).append("' is declared by both ")
+                            .append(existing.getClass().getName()).append(" and ")
+                            .append(adapter.getClass().getName())
+                            .toString());
+                }
+            }
+        }
+        this.adapters = Map.copyOf(byType);
+        this.legacyAdapters = List.copyOf(legacy);
+    }
+
+    /**
+     * Returns the adapter for the given type, or null if no adapter declares or accepts it.
+     */
+    @SuppressWarnings("deprecation")
+    public SocialLoginAdapter getAdapter(String type) {
+        var adapter = adapters.get(type);
+        if (adapter != null) {
+            return adapter;
+        }
+        for (var legacyAdapter : legacyAdapters) {
+            if (legacyAdapter.isApplicable(type)) {
+                return legacyAdapter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The declared types only, without those of the adapters that rely on {@link SocialLoginAdapter#isApplicable(String)}.
+     */
+    public Set<String> getTypes() {
+        return adapters.keySet();
+    }
+}
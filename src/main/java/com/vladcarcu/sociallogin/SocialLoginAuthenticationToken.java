@@ -1,14 +1,35 @@
 package com.vladcarcu.sociallogin;
 
 import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.time.Instant;
+import java.util.Collection;
 
 public class SocialLoginAuthenticationToken extends AbstractAuthenticationToken {
 
-    private final String username;
+    private final Object principal;
+
+    private final Instant expiresAt;
 
     public SocialLoginAuthenticationToken(String username) {
-        super(null);
-        this.username = username;
+        this(username, null);
+    }
+
+    public SocialLoginAuthenticationToken(String username, Instant expiresAt) {
+        this(username, expiresAt, null);
+    }
+
+    /**
+     * A user resolved from the subject of the provider, with its authorities; authenticated already.
+     */
+    public SocialLoginAuthenticationToken(Object principal, Instant expiresAt, Collection<? extends GrantedAuthority> authorities) {
+        super(authorities);
+        this.principal = principal;
+        this.expiresAt = expiresAt;
+        if (authorities != null) {
+            setAuthenticated(true);
+        }
     }
 
     @Override
@@ -16,8 +37,18 @@ public class SocialLoginAuthenticationToken extends AbstractAuthenticationToken
         return "";
     }
 
+    /**
+     * The subject of the provider, or the local user once a {@link SocialUserResolver} resolved it.
+     */
     @Override
     public Object getPrincipal() {
-        return username;
+        return principal;
+    }
+
+    /**
+     * The moment the provider token stops being valid, or null if the provider did not say.
+     */
+    public Instant getExpiresAt() {
+        return expiresAt;
     }
 }
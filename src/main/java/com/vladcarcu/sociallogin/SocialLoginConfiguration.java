@@ -3,34 +3,228 @@ package com.vladcarcu.sociallogin;
 import com.vladcarcu.sociallogin.adapters.FacebookAdapter;
 import com.vladcarcu.sociallogin.adapters.GoogleAdapter;
 import com.vladcarcu.sociallogin.adapters.LinkedInAdapter;
+import com.vladcarcu.sociallogin.adapters.OidcAdapterRegistrar;
+import com.vladcarcu.sociallogin.cache.CachingSocialUserResolver;
+import com.vladcarcu.sociallogin.cache.InMemoryValidationResultStore;
+import com.vladcarcu.sociallogin.cache.RedisValidationResultStore;
+import com.vladcarcu.sociallogin.cache.RejectedTokenFilter;
+import com.vladcarcu.sociallogin.cache.RejectedTokenFilterSettings;
+import com.vladcarcu.sociallogin.cache.SocialUserCacheSettings;
+import com.vladcarcu.sociallogin.cache.ValidationCache;
+import com.vladcarcu.sociallogin.cache.ValidationCacheSettings;
+import com.vladcarcu.sociallogin.cache.ValidationResultStore;
+import com.vladcarcu.sociallogin.cache.ValidationStoreSettings;
+import com.vladcarcu.sociallogin.http.ProviderHttpClientMeters;
+import com.vladcarcu.sociallogin.http.ProviderHttpClients;
+import com.vladcarcu.sociallogin.resilience.AdapterGuards;
+import com.vladcarcu.sociallogin.resilience.BulkheadSettings;
+import com.vladcarcu.sociallogin.resilience.CircuitBreakerSettings;
+import com.vladcarcu.sociallogin.resilience.RateLimitMeters;
+import com.vladcarcu.sociallogin.resilience.RateLimitSettings;
+import com.vladcarcu.sociallogin.resilience.RateLimiters;
+import com.vladcarcu.sociallogin.trace.FlightRecorder;
+import com.vladcarcu.sociallogin.trace.FlightRecorderConfiguration;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfigureOrder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnSingleCandidate;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
 import org.springframework.security.oauth2.config.annotation.web.configuration.AuthorizationServerConfigurerAdapter;
 import org.springframework.security.oauth2.config.annotation.web.configurers.AuthorizationServerEndpointsConfigurer;
 import org.springframework.security.oauth2.provider.CompositeTokenGranter;
 
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @Configuration
 @AutoConfigureOrder(Ordered.LOWEST_PRECEDENCE)
-@Import({GoogleAdapter.class, FacebookAdapter.class, LinkedInAdapter.class})
+@Import({ProviderHttpClients.class, GoogleAdapter.class, FacebookAdapter.class, LinkedInAdapter.class, OidcAdapterRegistrar.class, FlightRecorderConfiguration.class})
 public class SocialLoginConfiguration extends AuthorizationServerConfigurerAdapter {
 
     @Autowired
-    private List<SocialLoginAdapter> loginAdapters;
+    private SocialLoginAdapterRegistry adapterRegistry;
+
+    @Autowired
+    private ValidationCache validationCache;
+
+    @Autowired
+    private AdapterGuards adapterGuards;
+
+    @Autowired
+    private RateLimiters rateLimiters;
+
+    @Autowired
+    private SocialLoginMetrics metrics;
+
+    @Autowired(required = false)
+    private FlightRecorder flightRecorder;
+
+    @Autowired(required = false)
+    private AutoDetector autoDetector;
+
+    @Autowired(required = false)
+    private SocialLoginWarmUp warmUp;
+
+    @Autowired(required = false)
+    private RejectedTokenFilter rejectedTokenFilter;
+
+    @Autowired(required = false)
+    private SocialUserResolver userResolver;
+
+    @Value("${social.login.validation-timeout:10s}")
+    private Duration validationTimeout;
+
+    @Bean
+    public static SocialLoginAdapterRegistry socialLoginAdapterRegistry(List<SocialLoginAdapter> loginAdapters) {
+        return new SocialLoginAdapterRegistry(loginAdapters);
+    }
+
+    @Bean
+    public static ValidationCache validationCache(SocialLoginAdapterRegistry adapterRegistry, ObjectProvider<ValidationResultStore> store, Environment environment) {
+        var binder = Binder.get(environment);
+        // the store is shared by the types whose cache is enabled, the caches being its near tier
+        return new ValidationCache(adapterRegistry.getTypes(), type -> binder.bind("social.login." + type + ".cache", ValidationCacheSettings.class)
+                .orElseGet(ValidationCacheSettings::new), store.getIfAvailable(), validationStoreSettings(binder).getTimeout());
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "social.login.validation-store.type", havingValue = "memory")
+    @ConditionalOnMissingBean(ValidationResultStore.class)
+    public static InMemoryValidationResultStore inMemoryValidationResultStore(Environment environment) {
+        return new InMemoryValidationResultStore(validationStoreSettings(Binder.get(environment)).getMaxSize());
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "social.login.validation-store.type", havingValue = "redis")
+    @ConditionalOnMissingBean(ValidationResultStore.class)
+    public static RedisValidationResultStore redisValidationResultStore(Environment environment) {
+        return new RedisValidationResultStore(validationStoreSettings(Binder.get(environment)).getRedis());
+    }
+
+    @Bean
+    public static AdapterGuards adapterGuards(SocialLoginAdapterRegistry adapterRegistry, Environment environment) {
+        var binder = Binder.get(environment);
+        return new AdapterGuards(adapterRegistry.getTypes(),
+                type -> binder.bind("social.login." + type + ".bulkhead", BulkheadSettings.class).orElseGet(BulkheadSettings::new),
+                type -> binder.bind("social.login." + type + ".circuit-breaker", CircuitBreakerSettings.class).orElseGet(CircuitBreakerSettings::new));
+    }
+
+    @Bean
+    public static RateLimiters rateLimiters(SocialLoginAdapterRegistry adapterRegistry, Environment environment) {
+        var binder = Binder.get(environment);
+        return new RateLimiters(adapterRegistry.getTypes(),
+                binder.bind("social.login.client-rate-limit", RateLimitSettings.class).orElseGet(RateLimitSettings::new),
+                type -> binder.bind("social.login." + type + ".rate-limit", RateLimitSettings.class).orElseGet(RateLimitSettings::new));
+    }
+
+    @Bean
+    @ConditionalOnProperty("social.login.auto-detect.enabled")
+    public static AutoDetector autoDetector(SocialLoginAdapterRegistry adapterRegistry, Environment environment) {
+        return new AutoDetector(adapterRegistry, Binder.get(environment).bind("social.login.auto-detect", AutoDetectSettings.class)
+                .orElseGet(AutoDetectSettings::new));
+    }
+
+    @Bean
+    @ConditionalOnProperty("social.login.rejected-token-filter.enabled")
+    public static RejectedTokenFilter rejectedTokenFilter(Environment environment) {
+        return new RejectedTokenFilter(Binder.get(environment).bind("social.login.rejected-token-filter", RejectedTokenFilterSettings.class)
+                .orElseGet(RejectedTokenFilterSettings::new));
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnSingleCandidate(SocialUserResolver.class)
+    @ConditionalOnMissingBean(CachingSocialUserResolver.class)
+    @ConditionalOnProperty(value = "social.login.user-cache.enabled", matchIfMissing = true)
+    public static CachingSocialUserResolver cachingSocialUserResolver(SocialUserResolver userResolver, Environment environment) {
+        // primary, so that the application invalidates the same cache the grants read
+        return new CachingSocialUserResolver(userResolver, Binder.get(environment).bind("social.login.user-cache", SocialUserCacheSettings.class)
+                .orElseGet(SocialUserCacheSettings::new));
+    }
+
+    @Bean
+    @ConditionalOnProperty("social.login.warm-up.enabled")
+    public static SocialLoginWarmUp socialLoginWarmUp(SocialLoginAdapterRegistry adapterRegistry, Environment environment) {
+        return new SocialLoginWarmUp(adapterRegistry, Binder.get(environment).bind("social.login.warm-up", WarmUpSettings.class)
+                .orElseGet(WarmUpSettings::new));
+    }
+
+    @Bean
+    public static SocialLoginMetrics socialLoginMetrics(SocialLoginAdapterRegistry adapterRegistry, ObjectProvider<AutoDetector> autoDetector) {
+        var types = new HashSet<>(adapterRegistry.getTypes());
+        if (autoDetector.getIfAvailable() != null) {
+            // the grants of type=auto are timed as such, their validations under the type that was detected
+            types.add(AutoDetector.AUTO_TYPE);
+        }
+        return new SocialLoginMetrics(Set.copyOf(types));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        // once the application is up, so that the warm-up runs against the same beans the logins will
+        if (warmUp != null) {
+            warmUp.start();
+        }
+    }
+
+    private static ValidationStoreSettings validationStoreSettings(Binder binder) {
+        return binder.bind("social.login.validation-store", ValidationStoreSettings.class).orElseGet(ValidationStoreSettings::new);
+    }
 
     @Override
     public void configure(AuthorizationServerEndpointsConfigurer endpoints) {
         var tokenGranter = endpoints.getTokenGranter();
         var compositeTokenGranter = new CompositeTokenGranter(Arrays.asList(
                 tokenGranter,
-                new SocialTokenGranter(loginAdapters, endpoints.getTokenServices(), endpoints.getClientDetailsService(), endpoints.getOAuth2RequestFactory())
+                new SocialTokenGranter(adapterRegistry, validationCache, adapterGuards, rateLimiters, validationTimeout, metrics, flightRecorder, autoDetector, rejectedTokenFilter, userResolver, endpoints.getTokenServices(), endpoints.getClientDetailsService(), endpoints.getOAuth2RequestFactory())
         ));
         endpoints.tokenGranter(compositeTokenGranter);
     }
 
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+    static class MetricsConfiguration {
+
+        @Bean
+        public SocialLoginMeters socialLoginMeters(SocialLoginMetrics metrics) {
+            return new SocialLoginMeters(metrics);
+        }
+
+        @Bean
+        public RateLimitMeters rateLimitMeters(RateLimiters rateLimiters) {
+            return new RateLimitMeters(rateLimiters);
+        }
+
+        @Bean
+        public ProviderHttpClientMeters providerHttpClientMeters(ProviderHttpClients httpClients) {
+            return new ProviderHttpClientMeters(httpClients);
+        }
+    }
+
+    @Configuration
+    @ConditionalOnProperty("social.login.warm-up.enabled")
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.health.HealthIndicator")
+    static class WarmUpHealthConfiguration {
+
+        @Bean
+        public SocialLoginWarmUpHealthIndicator socialLoginWarmUpHealthIndicator(SocialLoginWarmUp warmUp) {
+            return new SocialLoginWarmUpHealthIndicator(warmUp);
+        }
+    }
+
 }
@@ -0,0 +1,57 @@
+package com.vladcarcu.sociallogin;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registers the timers of {@link SocialLoginMetrics}, per type and outcome, once Micrometer binds a registry.
+ */
+public class SocialLoginMeters implements MeterBinder {
+
+    private final SocialLoginMetrics metrics;
+
+    public SocialLoginMeters(SocialLoginMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        // registered up front, so that an outcome that never happened shows up as zero rather than missing
+        metrics.setRecorders(
+                recorder(register(registry, "social.login.grants", "Social grants, from the request parameters to the issued access token")),
+                recorder(register(registry, "social.login.validations", "Token validations by the adapters, without the time spent waiting for the guards")));
+    }
+
+    private static SocialLoginMetrics.Recorder recorder(Map<String, Timer[]> timers) {
+        return (type, outcome, durationNanos) -> {
+            var byOutcome = timers.get(type);
+            // the types of the adapters that only implement isApplicable() are not known up front
+            if (byOutcome != null) {
+                byOutcome[outcome.ordinal()].record(durationNanos, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    // the timers of every type, indexed by outcome
+    private Map<String, Timer[]> register(MeterRegistry registry, String name, String description) {
+        var timers = new HashMap<String, Timer[]>();
+        for (var type : metrics.getTypes()) {
+            var byOutcome = new Timer[SocialLoginMetrics.Outcome.values().length];
+            for (var outcome : SocialLoginMetrics.Outcome.values()) {
+                byOutcome[outcome.ordinal()] = Timer.builder(name)
+                        .description(description)
+                        .tag("type", type)
+                        .tag("outcome", outcome.getTag())
+                        .publishPercentileHistogram()
+                        .register(registry);
+            }
+            timers.put(type, byOutcome);
+        }
+        return Map.copyOf(timers);
+    }
+}
@@ -0,0 +1,93 @@
+package com.vladcarcu.sociallogin;
+
+import com.vladcarcu.sociallogin.resilience.RateLimitExceededException;
+import com.vladcarcu.sociallogin.resilience.ValidationRejectedException;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.common.exceptions.OAuth2Exception;
+
+import java.net.http.HttpTimeoutException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Times social grants, and the adapter validations within them, per type and outcome.
+ * Nothing is recorded until Micrometer binds a registry, so without one recording costs a volatile read.
+ * It does not depend on Micrometer itself, which is only needed by {@link SocialLoginMeters}.
+ */
+public class SocialLoginMetrics {
+
+    /**
+     * Where the durations of grants or validations go, e.g. the timers of a meter registry.
+     */
+    public interface Recorder {
+
+        void record(String type, Outcome outcome, long durationNanos);
+    }
+
+    public enum Outcome {
+        SUCCESS, BAD_CREDENTIALS, UPSTREAM_ERROR, TIMEOUT, REJECTED;
+
+        private final String tag = name().toLowerCase(Locale.ROOT);
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    private final Set<String> types;
+
+    private volatile Recorder grants;
+    private volatile Recorder validations;
+
+    public SocialLoginMetrics(Set<String> types) {
+        this.types = types;
+    }
+
+    public Set<String> getTypes() {
+        return types;
+    }
+
+    public void setRecorders(Recorder grants, Recorder validations) {
+        this.grants = grants;
+        this.validations = validations;
+    }
+
+    public void recordGrant(String type, Outcome outcome, long durationNanos) {
+        var recorder = grants;
+        if (recorder != null) {
+            recorder.record(type, outcome, durationNanos);
+        }
+    }
+
+    public void recordValidation(String type, Outcome outcome, long durationNanos) {
+        var recorder = validations;
+        if (recorder != null) {
+            recorder.record(type, outcome, durationNanos);
+        }
+    }
+
+    public static Outcome getOutcome(ValidationResult result, Throwable failure) {
+        if (failure == null && result != null && !result.isSuccess()) {
+            return Outcome.BAD_CREDENTIALS;
+        }
+        return getOutcome(failure);
+    }
+
+    public static Outcome getOutcome(Throwable failure) {
+        if (failure == null) {
+            return Outcome.SUCCESS;
+        }
+        var cause = Futures.unwrap(failure);
+        if (cause instanceof ValidationRejectedException || cause instanceof RateLimitExceededException) {
+            return Outcome.REJECTED;
+        }
+        if (cause instanceof ValidationTimeoutException || cause instanceof TimeoutException || cause instanceof HttpTimeoutException) {
+            return Outcome.TIMEOUT;
+        }
+        if (cause instanceof AuthenticationException || cause instanceof OAuth2Exception) {
+            return Outcome.BAD_CREDENTIALS;
+        }
+        return Outcome.UPSTREAM_ERROR;
+    }
+}
@@ -0,0 +1,97 @@
+package com.vladcarcu.sociallogin;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Warms up every adapter at once, so that the first logins after a deploy don't pay for fetching keys and
+ * app tokens or for opening connections. Until all of them are done, or the timeout has passed, the warm-up
+ * is reported as not finished, which the health indicator turns into the application being out of service.
+ */
+public class SocialLoginWarmUp {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SocialLoginWarmUp.class);
+
+    private final SocialLoginAdapterRegistry registry;
+    private final WarmUpSettings settings;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final CompletableFuture<Void> finished = new CompletableFuture<>();
+    // by the types of every adapter: pending, done, timed out or the failure
+    private final Map<String, String> results = new ConcurrentHashMap<>();
+
+    public SocialLoginWarmUp(SocialLoginAdapterRegistry registry, WarmUpSettings settings) {
+        this.registry = registry;
+        this.settings = settings;
+    }
+
+    /**
+     * Starts warming up the adapters; only the first call does anything.
+     */
+    public CompletableFuture<Void> start() {
+        if (!started.compareAndSet(false, true)) {
+            return finished;
+        }
+        var start = System.nanoTime();
+        var warmUps = new ArrayList<CompletableFuture<Void>>();
+        for (var entry : byAdapter().entrySet()) {
+            var name = String.join(",", entry.getValue());
+            results.put(name, "pending");
+            warmUps.add(warmUp(entry.getKey(), name));
+        }
+        CompletableFuture.allOf(warmUps.toArray(CompletableFuture[]::new))
+                .completeOnTimeout(null, settings.getTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((ignored, e) -> {
+                    results.replaceAll((name, result) -> "pending".equals(result) ? "timed out" : result);
+                    LOGGER.info("Social login warm-up finished in {}ms: {}", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), new TreeMap<>(results));
+                    finished.complete(null);
+                });
+        return finished;
+    }
+
+    public boolean isFinished() {
+        return finished.isDone();
+    }
+
+    public Map<String, String> getResults() {
+        return new TreeMap<>(results);
+    }
+
+    private CompletableFuture<Void> warmUp(SocialLoginAdapter adapter, String name) {
+        CompletableFuture<Void> warmUp;
+        try {
+            warmUp = adapter.warmUp().toCompletableFuture();
+        } catch (RuntimeException e) {
+            warmUp = CompletableFuture.failedFuture(e);
+        }
+        return warmUp.handle((ignored, e) -> {
+            if (e != null) {
+                // the adapter will fetch what it needs on its first login instead
+                LOGGER.warn("Could not warm up the adapter for {}.", name, e);
+                results.put(name, "failed: " + Futures.unwrap(e).getMessage());
+            } else {
+                results.put(name, "done");
+            }
+            return null;
+        });
+    }
+
+    private Map<SocialLoginAdapter, TreeSet<String>> byAdapter() {
+        // an adapter declaring several types is warmed up once
+        var byAdapter = new IdentityHashMap<SocialLoginAdapter, TreeSet<String>>();
+        for (var type : registry.getTypes()) {
+            byAdapter.computeIfAbsent(registry.getAdapter(type), key -> new TreeSet<>()).add(type);
+        }
+        return byAdapter;
+    }
+}
@@ -0,0 +1,28 @@
+package com.vladcarcu.sociallogin;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+
+/**
+ * Out of service until the warm-up has finished, so that a load balancer checking the health endpoint
+ * only sends logins to nodes that are ready for them. The details tell how every adapter fared.
+ */
+public class SocialLoginWarmUpHealthIndicator extends AbstractHealthIndicator {
+
+    private final SocialLoginWarmUp warmUp;
+
+    public SocialLoginWarmUpHealthIndicator(SocialLoginWarmUp warmUp) {
+        super("Social login warm-up health check failed");
+        this.warmUp = warmUp;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        if (warmUp.isFinished()) {
+            builder.up();
+        } else {
+            builder.outOfService();
+        }
+        builder.withDetails(warmUp.getResults());
+    }
+}
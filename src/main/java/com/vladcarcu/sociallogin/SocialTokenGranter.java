@@ -1,7 +1,16 @@
 package com.vladcarcu.sociallogin;
 
-import org.springframework.security.authentication.AbstractAuthenticationToken;
+import com.vladcarcu.sociallogin.cache.RejectedTokenFilter;
+import com.vladcarcu.sociallogin.cache.SingleFlight;
+import com.vladcarcu.sociallogin.cache.TokenKey;
+import com.vladcarcu.sociallogin.cache.ValidationCache;
+import com.vladcarcu.sociallogin.resilience.AdapterGuards;
+import com.vladcarcu.sociallogin.resilience.RateLimitExceededException;
+import com.vladcarcu.sociallogin.resilience.RateLimiters;
+import com.vladcarcu.sociallogin.trace.FlightRecorder;
+import com.vladcarcu.sociallogin.trace.GrantTrace;
 import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
 import org.springframework.security.oauth2.common.exceptions.InvalidGrantException;
 import org.springframework.security.oauth2.provider.ClientDetails;
 import org.springframework.security.oauth2.provider.ClientDetailsService;
@@ -11,37 +20,242 @@ import org.springframework.security.oauth2.provider.TokenRequest;
 import org.springframework.security.oauth2.provider.token.AbstractTokenGranter;
 import org.springframework.security.oauth2.provider.token.AuthorizationServerTokenServices;
 
-import java.util.LinkedHashMap;
-import java.util.List;
+import java.time.Duration;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 import static org.springframework.util.ObjectUtils.isEmpty;
 
 public class SocialTokenGranter extends AbstractTokenGranter {
 
     private static final String GRANT_TYPE = "social";
+    // rejections that no later attempt can turn around; unknown keys may be rotated in and claims may become valid later
+    private static final Set<ValidationResult> FILTERED_REJECTIONS = Set.of(ValidationResult.MALFORMED, ValidationResult.INVALID_TOKEN,
+            ValidationResult.EXPIRED, ValidationResult.INVALID_SIGNATURE);
 
-    private List<SocialLoginAdapter> adapters;
+    private SocialLoginAdapterRegistry registry;
 
-    protected SocialTokenGranter(List<SocialLoginAdapter> adapters, AuthorizationServerTokenServices tokenServices, ClientDetailsService clientDetailsService, OAuth2RequestFactory requestFactory) {
+    private ValidationCache validationCache;
+
+    private AdapterGuards adapterGuards;
+
+    private RateLimiters rateLimiters;
+
+    private Duration validationTimeout;
+
+    private SocialLoginMetrics metrics;
+
+    private FlightRecorder flightRecorder;
+
+    private AutoDetector autoDetector;
+
+    private RejectedTokenFilter rejectedTokens;
+
+    private SocialUserResolver userResolver;
+
+    private final SingleFlight<TokenKey, ValidationResult> validations = new SingleFlight<>();
+
+    protected SocialTokenGranter(SocialLoginAdapterRegistry registry, ValidationCache validationCache, AdapterGuards adapterGuards, RateLimiters rateLimiters, Duration validationTimeout, SocialLoginMetrics metrics, FlightRecorder flightRecorder, AutoDetector autoDetector, RejectedTokenFilter rejectedTokens, SocialUserResolver userResolver, AuthorizationServerTokenServices tokenServices, ClientDetailsService clientDetailsService, OAuth2RequestFactory requestFactory) {
         super(tokenServices, clientDetailsService, requestFactory, GRANT_TYPE);
-        this.adapters = adapters;
+        this.registry = registry;
+        this.validationCache = validationCache;
+        this.adapterGuards = adapterGuards;
+        this.rateLimiters = rateLimiters;
+        this.validationTimeout = validationTimeout;
+        this.metrics = metrics;
+        this.flightRecorder = flightRecorder;
+        this.autoDetector = autoDetector;
+        this.rejectedTokens = rejectedTokens;
+        this.userResolver = userResolver;
+    }
+
+    @Override
+    protected OAuth2AccessToken getAccessToken(ClientDetails client, TokenRequest tokenRequest) {
+        var parameters = tokenRequest.getRequestParameters();
+        var type = parameters.get("type");
+        if (type == null || (registry.getAdapter(type) == null && !isAutoDetect(type))) {
+            // fails right away; unknown types are not timed, so that clients can't add tags at will
+            return super.getAccessToken(client, tokenRequest);
+        }
+        var trace = flightRecorder != null ? flightRecorder.start(type, client.getClientId(), parameters.get("token")) : null;
+        var previousTrace = trace != null ? GrantTrace.attach(trace) : null;
+        var start = System.nanoTime();
+        try {
+            var authentication = getOAuth2Authentication(client, tokenRequest);
+            var issuanceStart = System.nanoTime();
+            var accessToken = getTokenServices().createAccessToken(authentication);
+            if (trace != null) {
+                trace.addStage("token_issuance", issuanceStart);
+            }
+            record(type, trace, SocialLoginMetrics.Outcome.SUCCESS, start);
+            return accessToken;
+        } catch (RuntimeException e) {
+            record(type, trace, SocialLoginMetrics.getOutcome(e), start);
+            throw e;
+        } finally {
+            if (trace != null) {
+                GrantTrace.restore(previousTrace);
+            }
+        }
     }
 
     @Override
     protected OAuth2Authentication getOAuth2Authentication(ClientDetails client, TokenRequest tokenRequest) {
-        Map<String, String> parameters = new LinkedHashMap<>(tokenRequest.getRequestParameters());
+        if (!rateLimiters.tryAcquireForClient(client.getClientId())) {
+            throw new RateLimitExceededException("Too many social grants for client: " + client.getClientId());
+        }
+        var parameters = tokenRequest.getRequestParameters();
         var type = getType(parameters);
-        var token = getToken(parameters);
-        parameters.remove("token");
-
-        return adapters.stream()
-                .filter(adapter -> adapter.isApplicable(type))
-                .map(adapter -> adapter.validateLogin(token))
-                .filter(AbstractAuthenticationToken::isAuthenticated)
-                .findAny()
-                .map(authToken -> new OAuth2Authentication(getRequestFactory().createOAuth2Request(client, tokenRequest), authToken))
-                .orElseThrow(() ->  new InvalidGrantException("Could not validate token for type: " + type));
+        ValidationResult result;
+        if (isAutoDetect(type)) {
+            var detection = await(detect(getToken(parameters)), type);
+            result = detection.getResult();
+            if (result.isSuccess()) {
+                // the user is one of the provider whose validation won
+                type = detection.getType();
+            }
+        } else {
+            var adapter = registry.getAdapter(type);
+            if (adapter == null) {
+                throw new InvalidGrantException("Unsupported type: " + type);
+            }
+            var token = getToken(parameters);
+            // turned away before it takes a permit of the guards or reaches the provider
+            result = adapter.mayAccept(type, token) ? await(validation(type, token), type) : ValidationResult.MALFORMED;
+        }
+        if (!result.isSuccess()) {
+            // the only exception a rejected token costs
+            throw new TokenRejectedException(type, result.getReason());
+        }
+        return new OAuth2Authentication(getRequestFactory().createOAuth2Request(client, tokenRequest), resolveUser(type, result.getAuthenticationToken()));
+    }
+
+    private SocialLoginAuthenticationToken resolveUser(String type, SocialLoginAuthenticationToken authToken) {
+        if (userResolver == null) {
+            return authToken;
+        }
+        var start = System.nanoTime();
+        // on the request thread, after the validation, so that a slow lookup holds no validation thread and a cached validation still looks the user up
+        var user = userResolver.resolve(type, (String) authToken.getPrincipal());
+        var trace = GrantTrace.current();
+        if (trace != null) {
+            trace.addStage("user_resolution", start);
+        }
+        if (user == null) {
+            throw new TokenRejectedException(type, "unknown_user");
+        }
+        return new SocialLoginAuthenticationToken(user, authToken.getExpiresAt(), user.getAuthorities());
+    }
+
+    private boolean isAutoDetect(String type) {
+        return autoDetector != null && AutoDetector.AUTO_TYPE.equals(type);
+    }
+
+    private CompletionStage<AutoDetector.Detection> detect(String token) {
+        var candidates = autoDetector.getCandidates(token);
+        if (candidates.isEmpty()) {
+            throw new InvalidGrantException("Could not detect the type of the token.");
+        }
+        var trace = GrantTrace.current();
+        return autoDetector.race(candidates, candidate -> {
+            // the candidates are dispatched from the auto-detect threads, which don't carry the trace
+            var previousTrace = trace != null ? GrantTrace.attach(trace) : null;
+            try {
+                return validation(candidate, token);
+            } finally {
+                if (trace != null) {
+                    GrantTrace.restore(previousTrace);
+                }
+            }
+        });
+    }
+
+    private CompletionStage<ValidationResult> validation(String type, String token) {
+        var adapter = registry.getAdapter(type);
+        var key = TokenKey.of(type, token);
+        if (rejectedTokens != null && rejectedTokens.mightContain(key)) {
+            // a replay of a token turned down lately
+            return CompletableFuture.completedFuture(ValidationResult.REJECTED_RECENTLY);
+        }
+        var guard = adapterGuards.get(type);
+        Supplier<CompletionStage<ValidationResult>> call = () -> validate(adapter, type, token, key);
+        // an adapter only implementing isApplicable() has no guard, its types not being known up front
+        Supplier<CompletionStage<ValidationResult>> guarded = guard != null ? () -> guard.call(call) : call;
+        // the provider's quota is only spent on validations that actually reach it
+        Supplier<CompletionStage<ValidationResult>> upstream = () -> rateLimiters.tryAcquireForProvider(type)
+                ? guarded.get()
+                : CompletableFuture.failedFuture(new RateLimitExceededException("Too many validations for type: " + type));
+        if (!adapter.isCacheable(type)) {
+            // a single-use token: whoever sends it again must be turned down by the provider, not handed the first result
+            return upstream.get();
+        }
+        // concurrent requests for the same token share one upstream validation
+        return validationCache.get(type, key, () -> validations.execute(key, upstream));
+    }
+
+    private CompletionStage<ValidationResult> validate(SocialLoginAdapter adapter, String type, String token, TokenKey key) {
+        var start = System.nanoTime();
+        var trace = GrantTrace.current();
+        if (trace != null) {
+            // everything from the start of the grant up to here: parameters, cache, guards
+            trace.addStage("dispatch", trace.getStartNanos());
+        }
+        CompletionStage<ValidationResult> validation;
+        try {
+            validation = adapter.validate(token);
+        } catch (RuntimeException e) {
+            validation = CompletableFuture.failedFuture(e);
+        }
+        return validation.thenApply(result -> {
+            if (result == null || (result.isSuccess() && !isAuthenticated(result.getAuthenticationToken()))) {
+                return ValidationResult.INVALID_TOKEN;
+            }
+            if (result.getStatus() == ValidationResult.Status.UPSTREAM_ERROR) {
+                // failures go on as such, so that the circuit breaker counts them and the auto-detect race reports them
+                throw Futures.propagate(result.getCause());
+            }
+            if (rejectedTokens != null && FILTERED_REJECTIONS.contains(result)) {
+                rejectedTokens.add(key);
+            }
+            return result;
+        }).whenComplete((result, e) -> {
+            metrics.recordValidation(type, SocialLoginMetrics.getOutcome(result, e), System.nanoTime() - start);
+            if (trace != null) {
+                trace.addStage("validation", start);
+            }
+        });
+    }
+
+    private void record(String type, GrantTrace trace, SocialLoginMetrics.Outcome outcome, long start) {
+        metrics.recordGrant(type, outcome, System.nanoTime() - start);
+        if (trace != null) {
+            flightRecorder.record(trace, outcome.getTag());
+        }
+    }
+
+    private static boolean isAuthenticated(SocialLoginAuthenticationToken authToken) {
+        return authToken != null && authToken.isAuthenticated();
+    }
+
+    private <T> T await(CompletionStage<T> validation, String type) {
+        try {
+            return validation.toCompletableFuture().get(validationTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // only this request's copy of the validation, so that nothing waits for a result no one will read
+            validation.toCompletableFuture().cancel(true);
+            throw new ValidationTimeoutException("Timed out while validating token for type: " + type);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InvalidGrantException("Interrupted while validating token for type: " + type);
+        } catch (ExecutionException e) {
+            throw Futures.propagate(e);
+        }
     }
 
     private String getType(Map<String, String> parameters){
@@ -0,0 +1,37 @@
+package com.vladcarcu.sociallogin;
+
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps the subject a provider vouched for to the local account that signs in with it. The user it returns becomes
+ * the principal of the grant, and its authorities those of the access token, so that a token enhancer finds them
+ * there instead of looking the user up again. Declared as a bean, it is wrapped in a {@link com.vladcarcu.sociallogin.cache.CachingSocialUserResolver}
+ * unless <code>social.login.user-cache.enabled</code> is false.
+ */
+public interface SocialUserResolver {
+
+    /**
+     * The local user behind the subject of the given provider type, or null if there is none, which fails the login.
+     * It is called on the thread of the token request, so it may block.
+     */
+    UserDetails resolve(String type, String subject);
+
+    /**
+     * The local users behind several subjects of the same provider type, keyed by subject, leaving out the ones
+     * there are none for. Meant for preloading a cache; override it to look them all up in one query.
+     */
+    default Map<String, UserDetails> resolveAll(String type, Collection<String> subjects) {
+        var users = new HashMap<String, UserDetails>();
+        for (var subject : subjects) {
+            var user = resolve(type, subject);
+            if (user != null) {
+                users.put(subject, user);
+            }
+        }
+        return users;
+    }
+}
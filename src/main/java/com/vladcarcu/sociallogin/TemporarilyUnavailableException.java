@@ -0,0 +1,25 @@
+package com.vladcarcu.sociallogin;
+
+import org.springframework.security.oauth2.common.exceptions.OAuth2Exception;
+
+/**
+ * Thrown when a token could not be validated because of the provider, or of the guards in front of it, rather than
+ * because of the token. The token endpoint answers it with a 503, so that clients retry later instead of throwing away
+ * a token that may well be valid.
+ */
+public abstract class TemporarilyUnavailableException extends OAuth2Exception {
+
+    protected TemporarilyUnavailableException(String msg) {
+        super(msg);
+    }
+
+    @Override
+    public String getOAuth2ErrorCode() {
+        return "temporarily_unavailable";
+    }
+
+    @Override
+    public int getHttpErrorCode() {
+        return 503;
+    }
+}
@@ -0,0 +1,26 @@
+package com.vladcarcu.sociallogin;
+
+import org.springframework.security.oauth2.common.exceptions.InvalidGrantException;
+
+/**
+ * Thrown once, at the edge, for a token its adapter rejected. It carries no stack trace: rejections are
+ * expected, often by the thousand, and the reason code tells all there is to know.
+ */
+public class TokenRejectedException extends InvalidGrantException {
+
+    private final String reason;
+
+    public TokenRejectedException(String type, String reason) {
+        super("Invalid token for type " + type + ": " + reason);
+        this.reason = reason;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,116 @@
+package com.vladcarcu.sociallogin;
+
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.common.exceptions.OAuth2Exception;
+
+/**
+ * The outcome of validating a token: the authenticated user, a rejection of the token with a short reason code,
+ * or a failure of the provider. Rejections are plain values, so that turning away a flood of bad tokens costs
+ * no stack traces and no error messages; {@link SocialTokenGranter} turns them into a single OAuth error at the edge.
+ * The common rejections are shared instances.
+ */
+public final class ValidationResult {
+
+    public enum Status {
+        SUCCESS,
+        INVALID,
+        UPSTREAM_ERROR
+    }
+
+    /** Not shaped like a token of the provider, or could not be decoded. */
+    public static final ValidationResult MALFORMED = invalid("malformed");
+    /** The provider does not know the token, or says it is no longer valid. */
+    public static final ValidationResult INVALID_TOKEN = invalid("invalid_token");
+    public static final ValidationResult EXPIRED = invalid("expired");
+    /** Issued by someone else, for someone else, or not valid yet. */
+    public static final ValidationResult INVALID_CLAIMS = invalid("invalid_claims");
+    public static final ValidationResult INVALID_SIGNATURE = invalid("invalid_signature");
+    /** Signed with a key the issuer did not publish when its keys were last fetched; it may have been rotated in since. */
+    public static final ValidationResult UNKNOWN_KEY = invalid("unknown_key");
+    /** Rejected a moment ago, and not validated again. */
+    public static final ValidationResult REJECTED_RECENTLY = invalid("rejected_recently");
+
+    private final Status status;
+    private final String reason;
+    private final SocialLoginAuthenticationToken authToken;
+    private final Throwable cause;
+
+    private ValidationResult(Status status, String reason, SocialLoginAuthenticationToken authToken, Throwable cause) {
+        this.status = status;
+        this.reason = reason;
+        this.authToken = authToken;
+        this.cause = cause;
+    }
+
+    public static ValidationResult success(SocialLoginAuthenticationToken authToken) {
+        return new ValidationResult(Status.SUCCESS, null, authToken, null);
+    }
+
+    /**
+     * A rejection with a reason code of your own; prefer the shared instances where one fits.
+     */
+    public static ValidationResult invalid(String reason) {
+        return new ValidationResult(Status.INVALID, reason, null, null);
+    }
+
+    public static ValidationResult upstreamError(Throwable cause) {
+        return new ValidationResult(Status.UPSTREAM_ERROR, "upstream_error", null, Futures.unwrap(cause));
+    }
+
+    /**
+     * The result of a validation reported the old way: a token, or an authentication exception for a rejected one.
+     */
+    public static ValidationResult of(SocialLoginAuthenticationToken authToken, Throwable failure) {
+        if (failure != null) {
+            var cause = Futures.unwrap(failure);
+            // an unavailable provider says nothing about the token
+            return !(cause instanceof TemporarilyUnavailableException) && (cause instanceof AuthenticationException || cause instanceof OAuth2Exception)
+                    ? INVALID_TOKEN : upstreamError(cause);
+        }
+        return authToken != null && authToken.isAuthenticated() ? success(authToken) : INVALID_TOKEN;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCESS;
+    }
+
+    /**
+     * Why the token was rejected, e.g. <code>expired</code>, or null for a success.
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * The authenticated user, only set for a success.
+     */
+    public SocialLoginAuthenticationToken getAuthenticationToken() {
+        return authToken;
+    }
+
+    /**
+     * What went wrong, only set for an upstream error.
+     */
+    public Throwable getCause() {
+        return cause;
+    }
+
+    /**
+     * The authenticated user, or the failure thrown the old way, for callers of {@link SocialLoginAdapter#validateLogin}.
+     */
+    public SocialLoginAuthenticationToken orElseThrow() {
+        switch (status) {
+            case SUCCESS:
+                return authToken;
+            case INVALID:
+                throw new BadCredentialsException("Invalid token: " + reason);
+            default:
+                throw Futures.propagate(cause);
+        }
+    }
+}
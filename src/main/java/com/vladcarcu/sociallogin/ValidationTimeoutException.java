@@ -0,0 +1,11 @@
+package com.vladcarcu.sociallogin;
+
+/**
+ * Thrown when the validation of a token takes longer than <code>social.login.validation-timeout</code>.
+ */
+public class ValidationTimeoutException extends TemporarilyUnavailableException {
+
+    public ValidationTimeoutException(String msg) {
+        super(msg);
+    }
+}
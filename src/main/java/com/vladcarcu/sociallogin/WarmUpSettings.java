@@ -0,0 +1,30 @@
+package com.vladcarcu.sociallogin;
+
+import java.time.Duration;
+
+/**
+ * Settings of the startup warm-up, bound from <code>social.login.warm-up.*</code>.
+ */
+public class WarmUpSettings {
+
+    private boolean enabled;
+
+    // past it the application is reported ready anyway, so that a provider that is down cannot hold back the others
+    private Duration timeout = Duration.ofSeconds(30);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+}
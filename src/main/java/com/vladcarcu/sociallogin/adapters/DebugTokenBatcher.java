@@ -0,0 +1,192 @@
+package com.vladcarcu.sociallogin.adapters;
+
+import com.vladcarcu.sociallogin.http.JsonFields;
+import com.vladcarcu.sociallogin.http.ProviderHttpClient;
+import com.vladcarcu.sociallogin.http.ProviderResponse;
+import com.vladcarcu.sociallogin.trace.GrantTrace;
+import org.springframework.http.HttpStatus;
+
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * Collects the <code>debug_token</code> calls made within a few milliseconds of each other and sends them as one
+ * Graph API batch request, handing every caller the result of its own sub-request. A batch is sent as soon as it is full,
+ * or once the window has passed since its first call; a batch of one is sent as a plain <code>debug_token</code> call.
+ */
+class DebugTokenBatcher {
+
+    // the most sub-requests the Graph API takes in one batch
+    static final int MAX_BATCH_SIZE = 50;
+    // every sub-request's answer comes back with its body as a string of JSON
+    private static final JsonFields BATCH_FIELDS = JsonFields.of("code", "body");
+
+    private final ProviderHttpClient httpClient;
+    private final String graphUrl;
+    private final JsonFields debugTokenFields;
+    private final BiFunction<String, String, CompletableFuture<JsonFields.Values>> singleCall;
+    private final int maxSize;
+    private final long windowNanos;
+
+    private final Queue<Call> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    DebugTokenBatcher(ProviderHttpClient httpClient, String graphUrl, JsonFields debugTokenFields,
+                      BiFunction<String, String, CompletableFuture<JsonFields.Values>> singleCall, int maxSize, Duration window) {
+        this.httpClient = httpClient;
+        this.graphUrl = graphUrl;
+        this.debugTokenFields = debugTokenFields;
+        this.singleCall = singleCall;
+        this.maxSize = Math.max(1, Math.min(maxSize, MAX_BATCH_SIZE));
+        this.windowNanos = window.toNanos();
+    }
+
+    CompletableFuture<JsonFields.Values> debugToken(String token, String appToken) {
+        var call = new Call(token, appToken);
+        pending.add(call);
+        if (pendingCount.incrementAndGet() >= maxSize) {
+            flush();
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            CompletableFuture.delayedExecutor(windowNanos, TimeUnit.NANOSECONDS).execute(this::flush);
+        }
+        return call.result;
+    }
+
+    private void flush() {
+        // cleared first, so that a call queued while this flush drains schedules the next one
+        flushScheduled.set(false);
+        // the batch is shared by several grants, so it is not part of the trace of whichever one filled it
+        var previousTrace = GrantTrace.attach(null);
+        try {
+            while (true) {
+                var batch = new ArrayList<Call>(maxSize);
+                while (batch.size() < maxSize) {
+                    var call = pending.poll();
+                    if (call == null) {
+                        break;
+                    }
+                    pendingCount.decrementAndGet();
+                    batch.add(call);
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+                send(batch);
+                if (pendingCount.get() < maxSize) {
+                    // what is left waits for its own window, unless another full batch is already there
+                    if (pendingCount.get() > 0 && flushScheduled.compareAndSet(false, true)) {
+                        CompletableFuture.delayedExecutor(windowNanos, TimeUnit.NANOSECONDS).execute(this::flush);
+                    }
+                    return;
+                }
+            }
+        } finally {
+            GrantTrace.restore(previousTrace);
+        }
+    }
+
+    private void send(List<Call> batch) {
+        // the app token may have been renewed while the calls were collected, and it goes with the whole batch
+        var byAppToken = new HashMap<String, List<Call>>();
+        for (var call : batch) {
+            byAppToken.computeIfAbsent(call.appToken, key -> new ArrayList<>()).add(call);
+        }
+        byAppToken.forEach((appToken, calls) -> {
+            if (calls.size() == 1) {
+                var call = calls.get(0);
+                singleCall.apply(call.token, appToken).whenComplete((values, e) -> complete(call, values, e));
+                return;
+            }
+            httpClient.send("batch", batchRequest(appToken, calls)).whenComplete((response, e) -> {
+                if (e != null) {
+                    calls.forEach(call -> call.result.completeExceptionally(e));
+                    return;
+                }
+                try {
+                    dispatch(response, calls);
+                } catch (RuntimeException dispatchFailure) {
+                    calls.forEach(call -> call.result.completeExceptionally(dispatchFailure));
+                }
+            });
+        });
+    }
+
+    private HttpRequest batchRequest(String appToken, List<Call> calls) {
+        var batch = new StringBuilder("[");
+        for (var call : calls) {
+            if (batch.length() > 1) {
+                batch.append(',');
+            }
+            // URL encoding leaves nothing that would need escaping in JSON
+            batch.append("{\"method\":\"GET\",\"relative_url\":\"debug_token?input_token=")
+                    .append(encode(call.token))
+                    .append("\"}");
+        }
+        batch.append(']');
+        var form = new StringBuilder()
+                .append("access_token=").append(encode(appToken))
+                .append("&include_headers=false")
+                .append("&batch=").append(encode(batch.toString()))
+                .toString();
+        return httpClient.newRequest(graphUrl + "/")
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+    }
+
+    private void dispatch(ProviderResponse response, List<Call> calls) {
+        if (response.statusCode() != HttpStatus.OK.value()) {
+            // an error about the whole batch, e.g. about the app token, which every caller handles as for a single call
+            var error = debugTokenFields.read(response);
+            calls.forEach(call -> call.result.complete(error));
+            return;
+        }
+        var results = BATCH_FIELDS.readArray(response);
+        for (var i = 0; i < calls.size(); i++) {
+            var result = i < results.size() ? results.get(i) : null;
+            if (result == null || !result.has("body")) {
+                // Facebook answers null for the sub-requests it did not get to in time
+                calls.get(i).result.completeExceptionally(new RuntimeException("Facebook did not answer the batched debug_token call."));
+            } else {
+                calls.get(i).result.complete(debugTokenFields.read(result.get("body")));
+            }
+        }
+    }
+
+    private static void complete(Call call, JsonFields.Values values, Throwable failure) {
+        if (failure != null) {
+            call.result.completeExceptionally(failure);
+        } else {
+            call.result.complete(values);
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static final class Call {
+
+        private final String token;
+        private final String appToken;
+        private final CompletableFuture<JsonFields.Values> result = new CompletableFuture<>();
+
+        private Call(String token, String appToken) {
+            this.token = token;
+            this.appToken = appToken;
+        }
+    }
+}
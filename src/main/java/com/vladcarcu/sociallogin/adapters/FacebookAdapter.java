@@ -1,25 +1,46 @@
 package com.vladcarcu.sociallogin.adapters;
 
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.fasterxml.jackson.annotation.JsonProperty;
+import com.vladcarcu.sociallogin.Futures;
 import com.vladcarcu.sociallogin.SocialLoginAdapter;
 import com.vladcarcu.sociallogin.SocialLoginAuthenticationToken;
+import com.vladcarcu.sociallogin.ValidationResult;
+import com.vladcarcu.sociallogin.http.JsonFields;
+import com.vladcarcu.sociallogin.http.ProviderHttpClient;
+import com.vladcarcu.sociallogin.http.ProviderHttpClients;
+import com.vladcarcu.sociallogin.http.ProviderResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
-import org.springframework.context.annotation.Import;
-import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Component
 @ConditionalOnProperty(value = {"social.login.facebook.app-id", "social.login.facebook.app-secret"})
-@Import(RestTemplate.class)
 public class FacebookAdapter implements SocialLoginAdapter {
 
     private static final String TYPE_NAME = "facebook";
-    private static final String ACCESS_TOKEN_ENDPOINT = "https://graph.facebook.com/oauth/access_token";
-    private static final String DEBUG_TOKEN_ENDPOINT = "https://graph.facebook.com/debug_token";
+    // User access tokens are far longer in practice, but their size is not documented, so the upper bound is generous
+    private static final int MIN_TOKEN_LENGTH = 16;
+    private static final int MAX_TOKEN_LENGTH = 2048;
+    private static final String ACCESS_TOKEN_PATH = "/oauth/access_token";
+    private static final String DEBUG_TOKEN_PATH = "/debug_token";
+    private static final String INVALID_ACCESS_TOKEN_CODE = "190";
+    private static final String EXPIRED_ACCESS_TOKEN_SUBCODE = "463";
+    private static final JsonFields ACCESS_TOKEN_FIELDS = JsonFields.of("access_token", "expires_in", "error.code", "error.message");
+    // the token data and the errors about the token or about the request itself all come back in the same body
+    private static final JsonFields DEBUG_TOKEN_FIELDS = JsonFields.of("data.is_valid", "data.type", "data.user_id", "data.expires_at",
+            "data.error.code", "data.error.error_subcode", "data.error.message", "error.code", "error.message");
 
     @Value("${social.login.facebook.app-id}")
     private String appId;
@@ -27,149 +48,205 @@ public class FacebookAdapter implements SocialLoginAdapter {
     @Value("${social.login.facebook.app-secret}")
     private String appSecret;
 
+    @Value("${social.login.facebook.use-composed-app-token:false}")
+    private boolean useComposedAppToken;
+
+    @Value("${social.login.facebook.graph-url:https://graph.facebook.com}")
+    private String graphUrl;
+
+    @Value("${social.login.facebook.batch.enabled:false}")
+    private boolean batchEnabled;
+
+    @Value("${social.login.facebook.batch.max-size:50}")
+    private int batchMaxSize;
+
+    @Value("${social.login.facebook.batch.window:5ms}")
+    private Duration batchWindow;
+
     @Autowired
-    private RestTemplate restTemplate;
+    private ProviderHttpClients httpClients;
 
-    @Override
-    public boolean isApplicable(String type) {
-        return TYPE_NAME.equals(type);
-    }
+    private ProviderHttpClient httpClient;
 
-    @Override
-    public SocialLoginAuthenticationToken validateLogin(String token) {
-        FacebookResponse tokenInfo = null;
-        try {
-            // first we gen an app access token. For that, we need to provide the app id and the app secret
-            var accessTokenURI = new StringBuilder()
-                    .append(ACCESS_TOKEN_ENDPOINT)
-                    .append("?client_id=").append(appId)
-                    .append("&client_secret=").append(appSecret)
-                    .append("&grant_type=client_credentials")
-                    .toString();
-            var accessToken = restTemplate.getForEntity(accessTokenURI, FacebookAccessTokenResponse.class).getBody();
-            // then we use the access token to get the needed info for the Facebook token
-            var debugTokenURI = new StringBuilder()
-                    .append(DEBUG_TOKEN_ENDPOINT)
-                    .append("?input_token=").append(token)
-                    .append("&access_token=").append(accessToken.getAccessToken())
-                    .toString();
-            tokenInfo = restTemplate.getForEntity(debugTokenURI, FacebookResponse.class).getBody();
-        } catch (Exception e) {
-            throw new RuntimeException("An unforeseen exception appeared while validating the Facebook token.", e);
-        }
-        if (tokenInfo.getData() != null && tokenInfo.getData().isValid() && "USER".equalsIgnoreCase(tokenInfo.getData().getType())) {
-            var authToken = new SocialLoginAuthenticationToken(tokenInfo.getData().getUserId());
-            authToken.setAuthenticated(true);
-            return authToken;
-        } else if (tokenInfo.getData() != null && tokenInfo.getData().getError() != null) {
-            throw new BadCredentialsException(new StringBuilder()
-                    .append("Code:").append(tokenInfo.getData().getError().getCode())
-                    .append("; SubCode:").append(tokenInfo.getData().getError().getErrorSubcode())
-                    .append("; Message:").append(tokenInfo.getData().getError().getMessage())
-                    .toString());
-        }
-        throw new BadCredentialsException("Invalid Facebook token.");
-    }
+    // only set when batching is enabled
+    private DebugTokenBatcher batcher;
 
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private static class FacebookAccessTokenResponse {
-        @JsonProperty("access_token")
-        private String accessToken;
+    private final AtomicReference<CompletableFuture<AppToken>> appToken = new AtomicReference<>();
 
-        public String getAccessToken() {
-            return accessToken;
-        }
+    // tells when the app token expires
+    private Clock clock = Clock.systemUTC();
 
-        public void setAccessToken(String accessToken) {
-            this.accessToken = accessToken;
+    @PostConstruct
+    public void init() {
+        httpClient = httpClients.forProvider(TYPE_NAME);
+        if (batchEnabled) {
+            batcher = new DebugTokenBatcher(httpClient, graphUrl, DEBUG_TOKEN_FIELDS, this::sendDebugToken, batchMaxSize, batchWindow);
         }
     }
 
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private static class FacebookResponse {
-        private FacebookReponseData data;
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
 
-        public FacebookReponseData getData() {
-            return data;
-        }
+    @Override
+    public Set<String> getTypes() {
+        return Set.of(TYPE_NAME);
+    }
 
-        public void setData(FacebookReponseData data) {
-            this.data = data;
-        }
+    @Override
+    public boolean mayAccept(String type, String token) {
+        return TokenPrescreen.isOpaqueToken(token, MIN_TOKEN_LENGTH, MAX_TOKEN_LENGTH);
     }
 
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private static class FacebookReponseData {
-        private String type;
-        @JsonProperty("is_valid")
-        private boolean isValid;
-        @JsonProperty("user_id")
-        private String userId;
+    @Override
+    public CompletionStage<Void> warmUp() {
+        // the app token inspecting itself opens a connection and runs the debug_token decoding without any user token
+        return getAppToken()
+                .thenCompose(currentAppToken -> sendDebugToken(currentAppToken, currentAppToken))
+                .thenAccept(tokenInfo -> {
+                });
+    }
 
-        private FacebookErrorMessage error;
+    @Override
+    public SocialLoginAuthenticationToken validateLogin(String token) {
+        return Futures.join(validateLoginAsync(token));
+    }
 
-        public String getType() {
-            return type;
-        }
+    @Override
+    public CompletionStage<SocialLoginAuthenticationToken> validateLoginAsync(String token) {
+        return validate(token).thenApply(ValidationResult::orElseThrow);
+    }
 
-        public void setType(String type) {
-            this.type = type;
-        }
+    @Override
+    public CompletionStage<ValidationResult> validate(String token) {
+        return getAppToken()
+                .thenCompose(currentAppToken -> debugToken(token, currentAppToken)
+                        .thenCompose(tokenInfo -> {
+                            // errors about the app token itself are returned for the whole request, not inside the token data
+                            if (useComposedAppToken || !INVALID_ACCESS_TOKEN_CODE.equals(tokenInfo.get("error.code"))) {
+                                return CompletableFuture.completedFuture(tokenInfo);
+                            }
+                            invalidateAppToken(currentAppToken);
+                            return getAppToken().thenCompose(newAppToken -> debugToken(token, newAppToken));
+                        }))
+                .thenApply(this::toValidationResult);
+    }
 
-        public boolean isValid() {
-            return isValid;
-        }
+    private ValidationResult toValidationResult(JsonFields.Values tokenInfo) {
+        if (tokenInfo.getBoolean("data.is_valid") && "USER".equalsIgnoreCase(tokenInfo.get("data.type"))) {
+            // Facebook reports 0 for tokens that never expire
+            var expiresAt = tokenInfo.getLong("data.expires_at") > 0 ? Instant.ofEpochSecond(tokenInfo.getLong("data.expires_at")) : null;
+            var authToken = new SocialLoginAuthenticationToken(tokenInfo.get("data.user_id"), expiresAt);
+            authToken.setAuthenticated(true);
+            return ValidationResult.success(authToken);
+        } else if (tokenInfo.has("data.error.code")) {
+            // the token itself was turned down; its details only matter to whoever holds it
+            return EXPIRED_ACCESS_TOKEN_SUBCODE.equals(tokenInfo.get("data.error.error_subcode")) ? ValidationResult.EXPIRED : ValidationResult.INVALID_TOKEN;
+        } else if (tokenInfo.has("error.code")) {
+            return ValidationResult.upstreamError(new RuntimeException(new StringBuilder()
+                    .append("An unforeseen exception appeared while validating the Facebook token. Code:")
+                    .append(tokenInfo.get("error.code"))
+                    .append("; Message:").append(tokenInfo.get("error.message"))
+                    .toString()));
+        }
+        // e.g. an app or page token
+        return ValidationResult.INVALID_TOKEN;
+    }
 
-        public void setValid(boolean valid) {
-            isValid = valid;
-        }
+    private CompletableFuture<JsonFields.Values> debugToken(String token, String appToken) {
+        return batcher != null ? batcher.debugToken(token, appToken) : sendDebugToken(token, appToken);
+    }
 
-        public String getUserId() {
-            return userId;
-        }
+    private CompletableFuture<JsonFields.Values> sendDebugToken(String token, String appToken) {
+        var debugTokenURI = new StringBuilder()
+                .append(graphUrl).append(DEBUG_TOKEN_PATH)
+                .append("?input_token=").append(encode(token))
+                .append("&access_token=").append(encode(appToken))
+                .toString();
+        return send("debug_token", debugTokenURI).thenApply(DEBUG_TOKEN_FIELDS::read);
+    }
 
-        public void setUserId(String userId) {
-            this.userId = userId;
+    private CompletableFuture<String> getAppToken() {
+        if (useComposedAppToken) {
+            // Facebook accepts the app id and secret in place of an app access token, which saves a round trip
+            return CompletableFuture.completedFuture(appId + "|" + appSecret);
+        }
+        while (true) {
+            var current = appToken.get();
+            if (current != null && (!current.isDone() || isUsable(current))) {
+                return current.thenApply(token -> token.value);
+            }
+            // only one caller fetches a new app token, the others wait for it and then reuse it
+            var fetch = new CompletableFuture<AppToken>();
+            if (appToken.compareAndSet(current, fetch)) {
+                fetchAppToken().whenComplete((token, e) -> {
+                    if (e != null) {
+                        // let the next caller try again
+                        appToken.compareAndSet(fetch, null);
+                        fetch.completeExceptionally(e);
+                    } else {
+                        fetch.complete(token);
+                    }
+                });
+                return fetch.thenApply(token -> token.value);
+            }
         }
+    }
 
-        public FacebookErrorMessage getError() {
-            return error;
-        }
+    private CompletableFuture<AppToken> fetchAppToken() {
+        // we get an app access token by providing the app id and the app secret
+        var accessTokenURI = new StringBuilder()
+                .append(graphUrl).append(ACCESS_TOKEN_PATH)
+                .append("?client_id=").append(encode(appId))
+                .append("&client_secret=").append(encode(appSecret))
+                .append("&grant_type=client_credentials")
+                .toString();
+        return send("access_token", accessTokenURI).thenApply(response -> {
+            var accessToken = ACCESS_TOKEN_FIELDS.read(response);
+            if (response.statusCode() != HttpStatus.OK.value() || !accessToken.has("access_token")) {
+                throw new RuntimeException(new StringBuilder()
+                        .append("Could not get a Facebook app access token. Status: ").append(response.statusCode())
+                        .append("; Code:").append(accessToken.get("error.code"))
+                        .append("; Message:").append(accessToken.get("error.message"))
+                        .toString());
+            }
+            var expiresAt = accessToken.getLong("expires_in") > 0 ? clock.instant().plusSeconds(accessToken.getLong("expires_in")) : null;
+            return new AppToken(accessToken.get("access_token"), expiresAt);
+        });
+    }
 
-        public void setError(FacebookErrorMessage error) {
-            this.error = error;
+    private void invalidateAppToken(String rejected) {
+        var current = appToken.get();
+        // another caller may have already replaced the rejected token
+        if (current != null && isUsable(current) && current.join().value.equals(rejected)) {
+            appToken.compareAndSet(current, null);
         }
     }
 
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private static class FacebookErrorMessage {
-        private String message;
-        private int code;
-        @JsonProperty("error_subcode")
-        private int errorSubcode;
-
-        public String getMessage() {
-            return message;
-        }
+    private CompletableFuture<ProviderResponse> send(String call, String uri) {
+        // both calls are plain reads, so they may be hedged
+        return httpClient.sendIdempotent(call, httpClient.newRequest(uri).GET().build());
+    }
 
-        public void setMessage(String message) {
-            this.message = message;
-        }
+    private boolean isUsable(CompletableFuture<AppToken> token) {
+        return token.isDone() && !token.isCompletedExceptionally() && !token.join().isExpired(clock.instant());
+    }
 
-        public int getCode() {
-            return code;
-        }
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
 
-        public void setCode(int code) {
-            this.code = code;
-        }
+    private static class AppToken {
+        private final String value;
+        private final Instant expiresAt;
 
-        public int getErrorSubcode() {
-            return errorSubcode;
+        private AppToken(String value, Instant expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
         }
 
-        public void setErrorSubcode(int errorSubcode) {
-            this.errorSubcode = errorSubcode;
+        private boolean isExpired(Instant now) {
+            return expiresAt != null && !expiresAt.isAfter(now);
         }
     }
 
@@ -1,57 +1,147 @@
 package com.vladcarcu.sociallogin.adapters;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.client.auth.openidconnect.IdTokenVerifier;
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
-import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
-import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.jackson2.JacksonFactory;
+import com.vladcarcu.sociallogin.Futures;
 import com.vladcarcu.sociallogin.SocialLoginAdapter;
 import com.vladcarcu.sociallogin.SocialLoginAuthenticationToken;
+import com.vladcarcu.sociallogin.ValidationResult;
+import com.vladcarcu.sociallogin.http.ProviderHttpClients;
+import com.vladcarcu.sociallogin.jwt.JwksKeyStore;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
-import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.stereotype.Component;
 
-import java.io.IOException;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.security.GeneralSecurityException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 @Component
 @ConditionalOnProperty("social.login.google.client-ids")
 public class GoogleAdapter implements SocialLoginAdapter {
 
     private static final String TYPE_NAME = "google";
+    private static final List<String> ISSUERS = List.of("accounts.google.com", "https://accounts.google.com");
+    private static final Duration CLOCK_SKEW = Duration.ofSeconds(IdTokenVerifier.DEFAULT_TIME_SKEW_SECONDS);
 
     @Value("#{'${social.login.google.client-ids}'.split(',')}")
     private List<String> allowedApps;
 
+    @Value("${social.login.google.jwks-uri:https://www.googleapis.com/oauth2/v3/certs}")
+    private String jwksUri;
+
+    @Autowired
+    private ProviderHttpClients httpClients;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private JwksKeyStore keyStore;
+
+    private IdTokenVerifier verifier;
+
+    // tells whether an ID token has expired
+    private Clock clock = Clock.systemUTC();
+
+    @PostConstruct
+    public void init() {
+        keyStore = new JwksKeyStore(jwksUri, httpClients.forProvider(TYPE_NAME), objectMapper);
+        verifier = new IdTokenVerifier.Builder()
+                .setIssuers(ISSUERS)
+                .setAudience(allowedApps)
+                .setAcceptableTimeSkewSeconds(CLOCK_SKEW.getSeconds())
+                // read on every verification, so that a clock set after startup is used as well
+                .setClock(() -> clock.millis())
+                .build();
+    }
+
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        keyStore.close();
+    }
+
     @Override
-    public boolean isApplicable(String type) {
-        return TYPE_NAME.equals(type);
+    public Set<String> getTypes() {
+        return Set.of(TYPE_NAME);
+    }
+
+    @Override
+    public boolean mayAccept(String type, String token) {
+        return TokenPrescreen.isIdToken(token, objectMapper);
+    }
+
+    @Override
+    public CompletionStage<Void> warmUp() {
+        return keyStore.refresh().thenCompose(keySet -> {
+            var keyId = keySet.getKeys().keySet().stream().findFirst().orElse(null);
+            if (keyId == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            // parsed, checked and rejected on its signature, which loads the JSON and signature classes on the way
+            var token = SampleTokens.idToken(ISSUERS.get(1), allowedApps.get(0), keyId, "RS256");
+            mayAccept(TYPE_NAME, token);
+            return validate(token).handle((result, e) -> null);
+        });
     }
 
     @Override
     public SocialLoginAuthenticationToken validateLogin(String token) {
-        var verifier = new GoogleIdTokenVerifier.Builder(new NetHttpTransport.Builder().build(), JacksonFactory.getDefaultInstance())
-                .setAudience(allowedApps)
-                .build();
+        return Futures.join(validateLoginAsync(token));
+    }
 
+    @Override
+    public CompletionStage<SocialLoginAuthenticationToken> validateLoginAsync(String token) {
+        return validate(token).thenApply(ValidationResult::orElseThrow);
+    }
+
+    @Override
+    public CompletionStage<ValidationResult> validate(String token) {
+        GoogleIdToken idToken;
         try {
-            var idToken = verifier.verify(token);
-            if (idToken != null) {
-                GoogleIdToken.Payload payload = idToken.getPayload();
-                SocialLoginAuthenticationToken authenticationToken = new SocialLoginAuthenticationToken(payload.getSubject());
-                authenticationToken.setAuthenticated(true);
-                return authenticationToken;
-            } else {
-                throw new BadCredentialsException("Invalid Google token.");
-            }
-        } catch (IOException | GeneralSecurityException ioe) {
-            throw new RuntimeException("An unforeseen exception appeared while validating the Google token.", ioe);
+            idToken = GoogleIdToken.parse(JacksonFactory.getDefaultInstance(), token);
         } catch (Exception e) {
-            throw new RuntimeException("An unforeseen exception appeared while validating the Google token. Possible causes:\n" +
-                    "1. The sent Google token is in an invalid format and could not be processed. Please use a proper one.\n" +
-                    "2. Another unforeseen exception occurred. Please contact the developer.", e);
+            return CompletableFuture.completedFuture(ValidationResult.MALFORMED);
+        }
+        // the claims are checked first, as they are cheaper than the signature
+        if (!idToken.verifyExpirationTime(clock.millis(), CLOCK_SKEW.getSeconds())) {
+            return CompletableFuture.completedFuture(ValidationResult.EXPIRED);
+        }
+        var subject = idToken.getPayload().getSubject();
+        if (!verifier.verify(idToken) || subject == null || subject.isBlank()) {
+            return CompletableFuture.completedFuture(ValidationResult.INVALID_CLAIMS);
         }
+        // in steady state the key is already in memory and this completes right away
+        return keyStore.getKeyAsync(idToken.getHeader().getKeyId())
+                .thenApply(publicKey -> {
+                    try {
+                        if (publicKey == null) {
+                            return ValidationResult.UNKNOWN_KEY;
+                        }
+                        if (!idToken.verifySignature(publicKey)) {
+                            return ValidationResult.INVALID_SIGNATURE;
+                        }
+                    } catch (GeneralSecurityException e) {
+                        throw new RuntimeException("An unforeseen exception appeared while validating the Google token.", e);
+                    }
+                    GoogleIdToken.Payload payload = idToken.getPayload();
+                    var expiresAt = payload.getExpirationTimeSeconds() != null ? Instant.ofEpochSecond(payload.getExpirationTimeSeconds()) : null;
+                    SocialLoginAuthenticationToken authenticationToken = new SocialLoginAuthenticationToken(payload.getSubject(), expiresAt);
+                    authenticationToken.setAuthenticated(true);
+                    return ValidationResult.success(authenticationToken);
+                });
     }
 
 }
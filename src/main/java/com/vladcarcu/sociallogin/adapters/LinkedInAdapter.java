@@ -1,36 +1,58 @@
 package com.vladcarcu.sociallogin.adapters;
 
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.vladcarcu.sociallogin.Futures;
 import com.vladcarcu.sociallogin.SocialLoginAdapter;
 import com.vladcarcu.sociallogin.SocialLoginAuthenticationToken;
+import com.vladcarcu.sociallogin.ValidationResult;
+import com.vladcarcu.sociallogin.cache.TokenKey;
+import com.vladcarcu.sociallogin.http.JsonFields;
+import com.vladcarcu.sociallogin.http.ProviderHttpClient;
+import com.vladcarcu.sociallogin.http.ProviderHttpClients;
+import com.vladcarcu.sociallogin.http.ProviderResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
-import org.springframework.context.annotation.Import;
-import org.springframework.http.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestTemplate;
 
-import java.util.HashMap;
+import javax.annotation.PostConstruct;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 
 @Component
-@ConditionalOnProperty(value = {"social.login.linkedin.client-id", "social.login.linkedin.client-secret", "social.login.linkedin.redirect-uri"})
-@Import({RestTemplate.class, ObjectMapper.class})
+@ConditionalOnProperty(value = {"social.login.linkedin.client-id", "social.login.linkedin.client-secret"})
 public class LinkedInAdapter implements SocialLoginAdapter {
 
     private static final String TYPE_NAME = "linkedin";
-    private static final String ACCESS_TOKEN_ENDPOINT = "https://www.linkedin.com/oauth/v2/accessToken?redirect_uri={redirect_uri}&client_id={client_id}&client_secret={client_secret}&grant_type={grant_type}&code={code}";
-    private static final String PROFILE_ENDPOINT = "https://api.linkedin.com/v2/me";
-
-    @Autowired
-    private RestTemplate restTemplate;
-
-    @Autowired
-    private ObjectMapper objectMapper;
+    // Authorization codes and access tokens are far longer in practice, but their size is not documented, so the upper bound is generous
+    private static final int MIN_TOKEN_LENGTH = 16;
+    private static final int MAX_TOKEN_LENGTH = 2048;
+    // what clients send: authorization codes, exchanged here, or access tokens they got themselves
+    private static final String AUTHORIZATION_CODE = "authorization-code";
+    private static final String ACCESS_TOKEN = "access-token";
+    private static final String ACCESS_TOKEN_PATH = "/oauth/v2/accessToken";
+    private static final String INTROSPECT_TOKEN_PATH = "/oauth/v2/introspectToken";
+    private static final String PROFILE_PATH = "/v2/me";
+    // success and error fields are read in the same pass, whatever the status
+    private static final JsonFields ACCESS_TOKEN_FIELDS = JsonFields.of("access_token", "expires_in", "error", "error_description");
+    // an inactive token only comes with active=false
+    private static final JsonFields INTROSPECTION_FIELDS = JsonFields.of("active", "client_id", "expires_at", "error", "error_description");
+    private static final JsonFields PROFILE_FIELDS = JsonFields.of("id", "message", "serviceErrorCode", "status");
+    // the OAuth errors that turn down the code itself; any other error says nothing about the code
+    private static final Set<String> REJECTED_CODE_ERRORS = Set.of("invalid_grant", "invalid_request");
 
     @Value("${social.login.linkedin.client-id}")
     private String clientId;
@@ -38,220 +60,277 @@ public class LinkedInAdapter implements SocialLoginAdapter {
     @Value("${social.login.linkedin.client-secret}")
     private String clientSecret;
 
-    @Value("${social.login.linkedin.redirect-uri}")
+    // only needed to exchange authorization codes
+    @Value("${social.login.linkedin.redirect-uri:#{null}}")
     private String redirectUri;
 
-    @Override
-    public boolean isApplicable(String type) {
-        return TYPE_NAME.equals(type);
-    }
+    @Value("${social.login.linkedin.auth-url:https://www.linkedin.com}")
+    private String authUrl;
 
-    @Override
-    public SocialLoginAuthenticationToken validateLogin(String token) {
-        var parameters = new HashMap<String, String>();
-        parameters.put("grant_type", "authorization_code");
-        parameters.put("code", token);
-        parameters.put("redirect_uri", redirectUri);
-        parameters.put("client_id", clientId);
-        parameters.put("client_secret", clientSecret);
-
-        ResponseEntity<String> accessTokenResponse = null;
-        LinkedInAuthCode authCode = null;
-        try {
-            accessTokenResponse = restTemplate.getForEntity(ACCESS_TOKEN_ENDPOINT, String.class, parameters);
-            if (accessTokenResponse.getStatusCode() == HttpStatus.OK) {
-                authCode = objectMapper.readValue(accessTokenResponse.getBody(), LinkedInAuthCode.class);
-            } else {
-                // assume an error
-                LinkedInAuthCodeError authCodeError = objectMapper.readValue(accessTokenResponse.getBody(), LinkedInAuthCodeError.class);
-                throw new RuntimeException(new StringBuilder()
-                        .append("The token could not be validated. Details: \n")
-                        .append(authCodeError)
-                        .toString());
-            }
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException(new StringBuilder()
-                    .append("Could not deserialize: ")
-                    .append(accessTokenResponse.getBody())
-                    .toString(), e);
-        } catch (Exception e) {
-            throw new RuntimeException("Unexpected exception", e);
-        }
+    @Value("${social.login.linkedin.api-url:https://api.linkedin.com}")
+    private String apiUrl;
 
-        var headers = new HttpHeaders();
-        headers.add(HttpHeaders.AUTHORIZATION, new StringBuilder()
-                .append("Bearer ")
-                .append(authCode.getAccessToken())
-                .toString());
+    @Value("${social.login.linkedin.token-type:" + AUTHORIZATION_CODE + "}")
+    private String tokenType;
 
-        ResponseEntity<String> response = null;
-        try {
-            response = restTemplate.exchange(PROFILE_ENDPOINT, HttpMethod.GET, new HttpEntity(headers), String.class, parameters);
-
-            if (response.getStatusCode() == HttpStatus.OK) {
-                // validation ok, return authentication token
-                LinkedInProfile profile = objectMapper.readValue(response.getBody(), LinkedInProfile.class);
-                SocialLoginAuthenticationToken authenticationToken = new SocialLoginAuthenticationToken(profile.getId());
-                authenticationToken.setAuthenticated(true);
-                return authenticationToken;
-            } else if (response.getStatusCodeValue() >= HttpStatus.BAD_REQUEST.value()) {
-                // either a client or a server error
-                LinkedInErrorMessage error = objectMapper.readValue(response.getBody(), LinkedInErrorMessage.class);
-                throw new RuntimeException(new StringBuilder()
-                        .append("An error has occurred. Details: \n")
-                        .append(error)
-                        .toString());
-            }
-            throw new RuntimeException(new StringBuilder()
-                    .append("Unexpected response. Details: \n")
-                    .append(response.getBody())
-                    .toString());
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException(new StringBuilder()
-                    .append("Could not deserialize: ")
-                    .append(response.getBody())
-                    .toString(), e);
-        } catch (HttpClientErrorException e) {
-            throw new RuntimeException(new StringBuilder()
-                    .append("An error has occurred. Details: ")
-                    .append("\nStatus: ").append(e.getRawStatusCode())
-                    .append("\nMessage: ").append(e.getLocalizedMessage())
+    @Value("${social.login.linkedin.profile-cache.max-size:10000}")
+    private long profileCacheMaxSize;
+
+    @Autowired
+    private ProviderHttpClients httpClients;
+
+    private ProviderHttpClient httpClient;
+
+    private boolean acceptsAccessTokens;
+
+    // the validations of the access tokens seen lately, kept until the tokens expire; only used when clients send access tokens
+    private AsyncCache<TokenKey, ValidationResult> profiles;
+
+    // tells when the access tokens expire
+    private Clock clock = Clock.systemUTC();
+
+    @PostConstruct
+    public void init() {
+        httpClient = httpClients.forProvider(TYPE_NAME);
+        if (ACCESS_TOKEN.equals(tokenType)) {
+            acceptsAccessTokens = true;
+            profiles = Caffeine.newBuilder()
+                    .maximumSize(profileCacheMaxSize)
+                    .expireAfter(new AccessTokenExpiry())
+                    // the entries expire at the instant LinkedIn gave, so they age on the same clock
+                    .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.millis()))
+                    .buildAsync();
+        } else if (!AUTHORIZATION_CODE.equals(tokenType)) {
+            throw new IllegalStateException(new StringBuilder()
+                    .append("social.login.linkedin.token-type must be either ").append(AUTHORIZATION_CODE)
+                    .append(" or ").append(ACCESS_TOKEN).append(", not ").append(tokenType)
                     .toString());
-        } catch (RuntimeException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new RuntimeException("Unexpected exception", e);
+        } else if (redirectUri == null) {
+            throw new IllegalStateException("social.login.linkedin.redirect-uri must be set to exchange authorization codes.");
         }
     }
 
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private static class LinkedInAuthCode {
-        @JsonProperty("access_token")
-        private String accessToken;
-
-        @JsonProperty("expires_in")
-        private long exipresIn;
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
 
-        public String getAccessToken() {
-            return accessToken;
-        }
+    @Override
+    public Set<String> getTypes() {
+        return Set.of(TYPE_NAME);
+    }
 
-        public void setAccessToken(String accessToken) {
-            this.accessToken = accessToken;
-        }
+    @Override
+    public boolean mayAccept(String type, String token) {
+        return TokenPrescreen.isOpaqueToken(token, MIN_TOKEN_LENGTH, MAX_TOKEN_LENGTH);
+    }
 
-        public long getExipresIn() {
-            return exipresIn;
-        }
+    @Override
+    public boolean isCacheable(String type) {
+        // an authorization code can be exchanged only once
+        return acceptsAccessTokens;
+    }
 
-        public void setExipresIn(long exipresIn) {
-            this.exipresIn = exipresIn;
-        }
+    @Override
+    public CompletionStage<Void> warmUp() {
+        // turned down for want of a user token, but they open the connections and run the decoding
+        var profile = httpClient.send("warm_up", httpClient.newRequest(apiUrl + PROFILE_PATH).GET().build())
+                .thenAccept(PROFILE_FIELDS::read);
+        var auth = acceptsAccessTokens
+                // an empty token is merely inactive, and the client credentials get checked on the way
+                ? httpClient.send("warm_up", introspectionRequest("")).thenAccept(INTROSPECTION_FIELDS::read)
+                : httpClient.send("warm_up", httpClient.newRequest(authUrl + ACCESS_TOKEN_PATH).GET().build()).thenAccept(ACCESS_TOKEN_FIELDS::read);
+        return CompletableFuture.allOf(profile, auth);
     }
 
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private static class LinkedInAuthCodeError {
-        private String error;
+    @Override
+    public SocialLoginAuthenticationToken validateLogin(String token) {
+        return Futures.join(validateLoginAsync(token));
+    }
 
-        @JsonProperty("error_description")
-        private String errorDescription;
+    @Override
+    public CompletionStage<SocialLoginAuthenticationToken> validateLoginAsync(String token) {
+        return validate(token).thenApply(ValidationResult::orElseThrow);
+    }
 
-        public String getError() {
-            return error;
+    @Override
+    public CompletionStage<ValidationResult> validate(String token) {
+        if (acceptsAccessTokens) {
+            return validateAccessToken(token);
         }
+        var accessTokenURI = new StringBuilder()
+                .append(authUrl).append(ACCESS_TOKEN_PATH)
+                .append("?redirect_uri=").append(encode(redirectUri))
+                .append("&client_id=").append(encode(clientId))
+                .append("&client_secret=").append(encode(clientSecret))
+                .append("&grant_type=authorization_code")
+                .append("&code=").append(encode(token))
+                .toString();
+        var accessTokenRequest = httpClient.newRequest(accessTokenURI)
+                .GET()
+                .build();
+        // the code can be exchanged only once, so this request must never be hedged
+        return httpClient.send("access_token", accessTokenRequest)
+                .thenApply(this::readAuthCode)
+                .thenCompose(authCode -> {
+                    if (authCode == null) {
+                        return CompletableFuture.completedFuture(ValidationResult.INVALID_TOKEN);
+                    }
+                    var expiresAt = authCode.getLong("expires_in") > 0 ? clock.instant().plusSeconds(authCode.getLong("expires_in")) : null;
+                    return fetchProfileId(authCode.get("access_token")).thenApply(profileId -> toValidationResult(profileId, expiresAt));
+                });
+    }
 
-        public void setError(String error) {
-            this.error = error;
-        }
+    private CompletionStage<ValidationResult> validateAccessToken(String accessToken) {
+        // concurrent logins with the same access token share one validation; rejected and failed ones are not kept
+        // every caller gets its own copy, so that one of them giving up does not cancel the others
+        return profiles.get(TokenKey.of(TYPE_NAME, accessToken), (key, executor) -> introspect(accessToken)).copy();
+    }
 
-        public String getErrorDescription() {
-            return errorDescription;
-        }
+    private CompletableFuture<ValidationResult> introspect(String accessToken) {
+        // a plain read, so it may be hedged; /v2/me alone would accept a token issued to any other app
+        var introspection = httpClient.sendIdempotent("introspect", introspectionRequest(accessToken)).thenApply(this::readIntrospection);
+        // the profile is asked for at the same time, so that a login waits for one round trip rather than two
+        return introspection.thenCombine(fetchProfileId(accessToken), this::toAccessTokenResult);
+    }
 
-        public void setErrorDescription(String errorDescription) {
-            this.errorDescription = errorDescription;
+    private ValidationResult toAccessTokenResult(JsonFields.Values introspection, String profileId) {
+        if (!introspection.getBoolean("active")) {
+            return ValidationResult.INVALID_TOKEN;
         }
-
-        @Override
-        public String toString() {
-            return new StringBuilder()
-                    .append("Error: ").append(error)
-                    .append("\nDescription: ").append(errorDescription)
-                    .toString();
+        if (!clientId.equals(introspection.get("client_id"))) {
+            // issued to another app, which must not sign its users in here
+            return ValidationResult.INVALID_CLAIMS;
         }
-    }
-
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private static class LinkedInProfile {
-        private String id;
-        private String localizedLastName;
-        private String localizedFirstName;
-
-        public String getId() {
-            return id;
+        // the expiry bounds how long the validation may be cached, so a token without one is not accepted
+        if (!introspection.has("expires_at")) {
+            return ValidationResult.INVALID_TOKEN;
         }
-
-        public void setId(String id) {
-            this.id = id;
+        var expiresAt = Instant.ofEpochSecond(introspection.getLong("expires_at"));
+        if (!expiresAt.isAfter(clock.instant())) {
+            return ValidationResult.EXPIRED;
         }
+        return toValidationResult(profileId, expiresAt);
+    }
 
-        public String getLocalizedLastName() {
-            return localizedLastName;
-        }
+    private HttpRequest introspectionRequest(String accessToken) {
+        var form = new StringBuilder()
+                .append("client_id=").append(encode(clientId))
+                .append("&client_secret=").append(encode(clientSecret))
+                .append("&token=").append(encode(accessToken))
+                .toString();
+        return httpClient.newRequest(authUrl + INTROSPECT_TOKEN_PATH)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+    }
 
-        public void setLocalizedLastName(String localizedLastName) {
-            this.localizedLastName = localizedLastName;
+    /**
+     * What LinkedIn knows of the access token; bad client credentials and outages fail rather than reject the token.
+     */
+    private JsonFields.Values readIntrospection(ProviderResponse response) {
+        var introspection = INTROSPECTION_FIELDS.read(response);
+        if (response.statusCode() == HttpStatus.OK.value()) {
+            return introspection;
         }
+        throw new RuntimeException(new StringBuilder()
+                .append("The token could not be introspected. Details: \n")
+                .append("Status: ").append(response.statusCode())
+                .append("\nError: ").append(introspection.get("error"))
+                .append("\nDescription: ").append(introspection.get("error_description"))
+                .toString());
+    }
 
-        public String getLocalizedFirstName() {
-            return localizedFirstName;
+    /**
+     * The access token the code was exchanged for, or null if LinkedIn turned the code down.
+     */
+    private JsonFields.Values readAuthCode(ProviderResponse accessTokenResponse) {
+        var authCode = ACCESS_TOKEN_FIELDS.read(accessTokenResponse);
+        if (accessTokenResponse.statusCode() == HttpStatus.OK.value()) {
+            return authCode;
         }
-
-        public void setLocalizedFirstName(String localizedFirstName) {
-            this.localizedFirstName = localizedFirstName;
+        // only these mean the code was rejected; throttling, bad client credentials and outages must not reject logins
+        if (accessTokenResponse.statusCode() == HttpStatus.BAD_REQUEST.value()
+                && REJECTED_CODE_ERRORS.contains(authCode.get("error"))) {
+            return null;
         }
+        throw new RuntimeException(new StringBuilder()
+                .append("The token could not be validated. Details: \n")
+                .append("Status: ").append(accessTokenResponse.statusCode())
+                .append("\nError: ").append(authCode.get("error"))
+                .append("\nDescription: ").append(authCode.get("error_description"))
+                .toString());
     }
 
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private static class LinkedInErrorMessage {
-        private String message;
-        private int serviceErrorCode;
-        private int status;
+    private CompletableFuture<String> fetchProfileId(String accessToken) {
+        var profileRequest = httpClient.newRequest(apiUrl + PROFILE_PATH)
+                .header(HttpHeaders.AUTHORIZATION, new StringBuilder()
+                        .append("Bearer ")
+                        .append(accessToken)
+                        .toString())
+                .GET()
+                .build();
+        return httpClient.sendIdempotent("me", profileRequest).thenApply(this::readProfileId);
+    }
 
-        public String getMessage() {
-            return message;
+    /**
+     * The profile id, or null if LinkedIn turned the access token down.
+     */
+    private String readProfileId(ProviderResponse response) {
+        var profile = PROFILE_FIELDS.read(response);
+        if (response.statusCode() == HttpStatus.OK.value()) {
+            return profile.get("id");
         }
-
-        public void setMessage(String message) {
-            this.message = message;
+        if (response.statusCode() == HttpStatus.UNAUTHORIZED.value()) {
+            // the access token is expired or revoked
+            return null;
         }
-
-        public int getServiceErrorCode() {
-            return serviceErrorCode;
+        var details = new StringBuilder()
+                .append("Status: ").append(profile.get("status"))
+                .append("\nService error code: ").append(profile.get("serviceErrorCode"))
+                .append("\nMessage: ").append(profile.get("message"))
+                .toString();
+        if (response.statusCode() >= HttpStatus.BAD_REQUEST.value()) {
+            // either a client or a server error
+            throw new RuntimeException("An error has occurred. Details: \n" + details);
         }
+        // the body is profile data, which is left out of the message
+        throw new RuntimeException("Unexpected response with status " + response.statusCode() + " and no profile id.");
+    }
 
-        public void setServiceErrorCode(int serviceErrorCode) {
-            this.serviceErrorCode = serviceErrorCode;
+    private static ValidationResult toValidationResult(String profileId, Instant expiresAt) {
+        if (profileId == null) {
+            return ValidationResult.INVALID_TOKEN;
         }
+        var authenticationToken = new SocialLoginAuthenticationToken(profileId, expiresAt);
+        authenticationToken.setAuthenticated(true);
+        return ValidationResult.success(authenticationToken);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Keeps a valid access token until it expires, and a rejected one not at all.
+     */
+    private class AccessTokenExpiry implements Expiry<TokenKey, ValidationResult> {
 
-        public int getStatus() {
-            return status;
+        @Override
+        public long expireAfterCreate(TokenKey key, ValidationResult result, long currentTime) {
+            if (!result.isSuccess()) {
+                return 0;
+            }
+            return Math.max(0, Duration.between(clock.instant(), result.getAuthenticationToken().getExpiresAt()).toNanos());
         }
 
-        public void setStatus(int status) {
-            this.status = status;
+        @Override
+        public long expireAfterUpdate(TokenKey key, ValidationResult result, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, result, currentTime);
         }
 
         @Override
-        public String toString() {
-            return new StringBuilder()
-                    .append("Status: ")
-                    .append(status)
-                    .append("\nService error code: ")
-                    .append(serviceErrorCode)
-                    .append("\nMessage: ")
-                    .append(message)
-                    .toString();
+        public long expireAfterRead(TokenKey key, ValidationResult result, long currentTime, long currentDuration) {
+            return currentDuration;
         }
     }
 }
@@ -0,0 +1,93 @@
+package com.vladcarcu.sociallogin.adapters;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vladcarcu.sociallogin.Futures;
+import com.vladcarcu.sociallogin.SocialLoginAdapter;
+import com.vladcarcu.sociallogin.SocialLoginAuthenticationToken;
+import com.vladcarcu.sociallogin.ValidationResult;
+import com.vladcarcu.sociallogin.http.ProviderHttpClients;
+import com.vladcarcu.sociallogin.jwt.JwksKeyStore;
+import com.vladcarcu.sociallogin.jwt.JwtVerifier;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Validates ID tokens of any OpenID Connect issuer declared under <code>social.login.oidc.&lt;name&gt;.*</code>.
+ * The name is the type clients send. Tokens are verified in process against the issuer's cached key set.
+ */
+public class OidcAdapter implements SocialLoginAdapter {
+
+    private final String name;
+
+    private final OidcSettings settings;
+
+    @Autowired
+    private ProviderHttpClients httpClients;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private JwksKeyStore keyStore;
+
+    private JwtVerifier verifier;
+
+    public OidcAdapter(String name, OidcSettings settings) {
+        this.name = name;
+        this.settings = settings;
+    }
+
+    @PostConstruct
+    public void init() {
+        keyStore = new JwksKeyStore(settings.getJwksUri(), httpClients.forProvider(name), objectMapper);
+        verifier = new JwtVerifier(settings.getIssuer(), Set.copyOf(settings.getAudiences()), Set.copyOf(settings.getAlgorithms()),
+                settings.getClockSkew(), keyStore, objectMapper);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        keyStore.close();
+    }
+
+    @Override
+    public Set<String> getTypes() {
+        return Set.of(name);
+    }
+
+    @Override
+    public boolean mayAccept(String type, String token) {
+        return TokenPrescreen.isIdToken(token, objectMapper);
+    }
+
+    @Override
+    public CompletionStage<Void> warmUp() {
+        return keyStore.refresh().thenCompose(keySet -> {
+            var keyId = keySet.getKeys().keySet().stream().findFirst().orElse(null);
+            if (keyId == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            // parsed, checked and rejected on its signature, which loads the JSON and signature classes on the way
+            var token = SampleTokens.idToken(settings.getIssuer(), settings.getAudiences().get(0), keyId, settings.getAlgorithms().get(0));
+            mayAccept(name, token);
+            return validate(token).handle((result, e) -> null);
+        });
+    }
+
+    @Override
+    public SocialLoginAuthenticationToken validateLogin(String token) {
+        return Futures.join(validateLoginAsync(token));
+    }
+
+    @Override
+    public CompletionStage<SocialLoginAuthenticationToken> validateLoginAsync(String token) {
+        return validate(token).thenApply(ValidationResult::orElseThrow);
+    }
+
+    @Override
+    public CompletionStage<ValidationResult> validate(String token) {
+        return verifier.verify(token);
+    }
+}
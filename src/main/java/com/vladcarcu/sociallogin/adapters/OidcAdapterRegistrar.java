@@ -0,0 +1,49 @@
+package com.vladcarcu.sociallogin.adapters;
+
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.AnnotationMetadata;
+
+import java.util.Map;
+
+import static org.springframework.util.ObjectUtils.isEmpty;
+
+/**
+ * Registers one {@link OidcAdapter} per issuer declared under <code>social.login.oidc.&lt;name&gt;.*</code>.
+ */
+public class OidcAdapterRegistrar implements ImportBeanDefinitionRegistrar, EnvironmentAware {
+
+    private static final String PREFIX = "social.login.oidc";
+
+    private Environment environment;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void registerBeanDefinitions(AnnotationMetadata importingClassMetadata, BeanDefinitionRegistry registry) {
+        Map<String, OidcSettings> issuers = Binder.get(environment)
+                .bind(PREFIX, Bindable.mapOf(String.class, OidcSettings.class))
+                .orElseGet(Map::of);
+        issuers.forEach((name, settings) -> {
+            if (isEmpty(settings.getIssuer()) || isEmpty(settings.getJwksUri()) || settings.getAudiences().isEmpty()) {
+                throw new IllegalStateException(new StringBuilder()
+                        .append(PREFIX).append('.').append(name)
+                        .append(" needs an issuer, a jwks-uri and at least one audience.")
+                        .toString());
+            }
+            var definition = BeanDefinitionBuilder.genericBeanDefinition(OidcAdapter.class)
+                    .addConstructorArgValue(name)
+                    .addConstructorArgValue(settings)
+                    .getBeanDefinition();
+            registry.registerBeanDefinition("oidcAdapter." + name, definition);
+        });
+    }
+}
@@ -0,0 +1,61 @@
+package com.vladcarcu.sociallogin.adapters;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings of one OIDC issuer, bound from <code>social.login.oidc.&lt;name&gt;.*</code>.
+ */
+public class OidcSettings {
+
+    private String issuer;
+
+    private String jwksUri;
+
+    private List<String> audiences = new ArrayList<>();
+
+    private List<String> algorithms = new ArrayList<>(List.of("RS256"));
+
+    private Duration clockSkew = Duration.ofSeconds(60);
+
+    public String getIssuer() {
+        return issuer;
+    }
+
+    public void setIssuer(String issuer) {
+        this.issuer = issuer;
+    }
+
+    public String getJwksUri() {
+        return jwksUri;
+    }
+
+    public void setJwksUri(String jwksUri) {
+        this.jwksUri = jwksUri;
+    }
+
+    public List<String> getAudiences() {
+        return audiences;
+    }
+
+    public void setAudiences(List<String> audiences) {
+        this.audiences = audiences;
+    }
+
+    public List<String> getAlgorithms() {
+        return algorithms;
+    }
+
+    public void setAlgorithms(List<String> algorithms) {
+        this.algorithms = algorithms;
+    }
+
+    public Duration getClockSkew() {
+        return clockSkew;
+    }
+
+    public void setClockSkew(Duration clockSkew) {
+        this.clockSkew = clockSkew;
+    }
+}
@@ -0,0 +1,46 @@
+package com.vladcarcu.sociallogin.adapters;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Tokens made up for the warm-up, which go through all of the decoding and checking but are never accepted.
+ */
+final class SampleTokens {
+
+    private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+    // as long as an RS256 signature, so that the verification runs to the end before it fails
+    private static final String SIGNATURE = BASE64.encodeToString(new byte[256]);
+
+    private SampleTokens() {
+    }
+
+    /**
+     * An unexpired ID token with the given claims and a signature of zeros, so that only the signature check rejects it.
+     * Values are expected to need no escaping in JSON.
+     */
+    static String idToken(String issuer, String audience, String keyId, String algorithm) {
+        var header = new StringBuilder()
+                .append("{\"alg\":\"").append(algorithm)
+                .append("\",\"kid\":\"").append(keyId)
+                .append("\",\"typ\":\"JWT\"}")
+                .toString();
+        var payload = new StringBuilder()
+                .append("{\"iss\":\"").append(issuer)
+                .append("\",\"aud\":\"").append(audience)
+                .append("\",\"sub\":\"warm-up\",\"iat\":").append(Instant.now().getEpochSecond())
+                .append(",\"exp\":").append(Instant.now().plusSeconds(3600).getEpochSecond())
+                .append('}')
+                .toString();
+        return new StringBuilder()
+                .append(encode(header)).append('.')
+                .append(encode(payload)).append('.')
+                .append(SIGNATURE)
+                .toString();
+    }
+
+    private static String encode(String json) {
+        return BASE64.encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,73 @@
+package com.vladcarcu.sociallogin.adapters;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * Local checks of what a provider token can possibly look like. They take microseconds and never reach the
+ * provider, so garbage is turned away before it costs a thread, a connection or a share of the provider's quota.
+ */
+final class TokenPrescreen {
+
+    private static final int MIN_ID_TOKEN_LENGTH = 64;
+    private static final int MAX_ID_TOKEN_LENGTH = 8192;
+
+    private TokenPrescreen() {
+    }
+
+    /**
+     * An access token or authorization code: an RFC 6750 b64token, but without dots, which only ID tokens have.
+     */
+    static boolean isOpaqueToken(String token, int minLength, int maxLength) {
+        var length = token.length();
+        if (length < minLength || length > maxLength) {
+            return false;
+        }
+        var padding = false;
+        for (var i = 0; i < length; i++) {
+            var c = token.charAt(i);
+            if (c == '=' && i > 0) {
+                padding = true;
+            } else if (padding || !(isBase64Url(c) || c == '~' || c == '+' || c == '/')) {
+                // padding may only come last
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * An ID token, or any other JWT: three base64url segments, the first a JSON header naming its algorithm.
+     * The claims are left to the verifier, which tells an expired token or one for another audience from a malformed one.
+     */
+    static boolean isIdToken(String token, ObjectMapper objectMapper) {
+        var length = token.length();
+        if (length < MIN_ID_TOKEN_LENGTH || length > MAX_ID_TOKEN_LENGTH) {
+            return false;
+        }
+        var dots = 0;
+        for (var i = 0; i < length; i++) {
+            var c = token.charAt(i);
+            if (c == '.') {
+                dots++;
+            } else if (!isBase64Url(c)) {
+                return false;
+            }
+        }
+        if (dots != 2) {
+            return false;
+        }
+        try {
+            var header = objectMapper.readTree(Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.'))));
+            return header != null && header.isObject() && header.path("alg").isTextual();
+        } catch (IOException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean isBase64Url(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_';
+    }
+}
@@ -0,0 +1,121 @@
+package com.vladcarcu.sociallogin.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.vladcarcu.sociallogin.SocialUserResolver;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps the users of the latest logins, so that a returning user signs in without a lookup. Concurrent logins
+ * of the same user share one lookup, and subjects without a local user are not cached, so that they are found
+ * as soon as their account is created. Whoever changes an account or its authorities should invalidate it;
+ * otherwise the change shows once the entry expires.
+ */
+public class CachingSocialUserResolver implements SocialUserResolver {
+
+    private final SocialUserResolver delegate;
+    private final Cache<UserKey, UserDetails> cache;
+
+    public CachingSocialUserResolver(SocialUserResolver delegate, SocialUserCacheSettings settings) {
+        this.delegate = delegate;
+        // Caffeine evicts with W-TinyLFU once the maximum size is reached
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(settings.getMaxSize())
+                .expireAfterWrite(settings.getTtl())
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public UserDetails resolve(String type, String subject) {
+        return cache.get(new UserKey(type, subject), key -> delegate.resolve(type, subject));
+    }
+
+    @Override
+    public Map<String, UserDetails> resolveAll(String type, Collection<String> subjects) {
+        var users = new HashMap<String, UserDetails>();
+        var missing = new ArrayList<String>();
+        for (var subject : subjects) {
+            var user = cache.getIfPresent(new UserKey(type, subject));
+            if (user != null) {
+                users.put(subject, user);
+            } else {
+                missing.add(subject);
+            }
+        }
+        if (!missing.isEmpty()) {
+            var loaded = delegate.resolveAll(type, missing);
+            loaded.forEach((subject, user) -> cache.put(new UserKey(type, subject), user));
+            users.putAll(loaded);
+        }
+        return users;
+    }
+
+    /**
+     * Looks up the users of the given subjects that are not cached yet, in one call of the delegate, e.g. the most
+     * active users at startup, so that their first logins don't all reach the database at once.
+     */
+    public void preload(String type, Collection<String> subjects) {
+        resolveAll(type, subjects);
+    }
+
+    /**
+     * Caches users looked up elsewhere, keyed by subject.
+     */
+    public void preload(String type, Map<String, ? extends UserDetails> users) {
+        users.forEach((subject, user) -> cache.put(new UserKey(type, subject), user));
+    }
+
+    /**
+     * To be called when the account of the subject, or its authorities, changed or went away.
+     */
+    public void invalidate(String type, String subject) {
+        cache.invalidate(new UserKey(type, subject));
+    }
+
+    /**
+     * To be called when an account changed whose subjects are not known, e.g. after an account was merged.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    private static final class UserKey {
+
+        private final String type;
+        private final String subject;
+
+        private UserKey(String type, String subject) {
+            this.type = type;
+            this.subject = subject;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof UserKey)) {
+                return false;
+            }
+            var other = (UserKey) o;
+            return type.equals(other.type) && subject.equals(other.subject);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, subject);
+        }
+    }
+}
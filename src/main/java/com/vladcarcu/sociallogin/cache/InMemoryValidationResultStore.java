@@ -0,0 +1,66 @@
+package com.vladcarcu.sociallogin.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.vladcarcu.sociallogin.SocialLoginAuthenticationToken;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A {@link ValidationResultStore} held in this JVM, for a single node or for trying the shared store out.
+ */
+public class InMemoryValidationResultStore implements ValidationResultStore {
+
+    private final Cache<TokenKey, Entry> entries;
+
+    public InMemoryValidationResultStore(long maxSize) {
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new EntryExpiry())
+                .build();
+    }
+
+    @Override
+    public CompletionStage<SocialLoginAuthenticationToken> get(TokenKey key) {
+        var entry = entries.getIfPresent(key);
+        return CompletableFuture.completedFuture(entry != null ? entry.authToken : null);
+    }
+
+    @Override
+    public CompletionStage<Void> put(TokenKey key, SocialLoginAuthenticationToken authToken, Duration ttl) {
+        entries.put(key, new Entry(authToken, ttl));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static final class Entry {
+
+        private final SocialLoginAuthenticationToken authToken;
+        private final Duration ttl;
+
+        private Entry(SocialLoginAuthenticationToken authToken, Duration ttl) {
+            this.authToken = authToken;
+            this.ttl = ttl;
+        }
+    }
+
+    private static class EntryExpiry implements Expiry<TokenKey, Entry> {
+
+        @Override
+        public long expireAfterCreate(TokenKey key, Entry value, long currentTime) {
+            return value.ttl.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(TokenKey key, Entry value, long currentTime, long currentDuration) {
+            return value.ttl.toNanos();
+        }
+
+        @Override
+        public long expireAfterRead(TokenKey key, Entry value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.vladcarcu.sociallogin.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A blocking connection speaking just enough of the Redis protocol (RESP) for the validation store:
+ * commands go out as arrays of bulk strings, and simple string, error, integer and bulk string replies come back.
+ */
+class RedisConnection implements Closeable {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+
+    RedisConnection(RedisSettings settings) throws IOException {
+        var timeout = (int) settings.getTimeout().toMillis();
+        this.socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(settings.getHost(), settings.getPort()), timeout);
+            socket.setSoTimeout(timeout);
+            socket.setTcpNoDelay(true);
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+            if (settings.getPassword() != null) {
+                execute("AUTH", settings.getPassword());
+            }
+            if (settings.getDatabase() != 0) {
+                execute("SELECT", Integer.toString(settings.getDatabase()));
+            }
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends the command and waits for its reply: a String for simple and bulk strings, a Long for integers,
+     * null for a missing value. Error replies are thrown.
+     */
+    Object execute(String... command) throws IOException {
+        out.write('*');
+        writeLine(Integer.toString(command.length));
+        for (var argument : command) {
+            var bytes = argument.getBytes(StandardCharsets.UTF_8);
+            out.write('$');
+            writeLine(Integer.toString(bytes.length));
+            out.write(bytes);
+            out.write(CRLF);
+        }
+        out.flush();
+        return readReply();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private Object readReply() throws IOException {
+        var type = in.read();
+        var line = readLine();
+        switch (type) {
+            case '+':
+                return line;
+            case '-':
+                throw new IOException("Redis answered with an error: " + line);
+            case ':':
+                return Long.parseLong(line);
+            case '$':
+                var length = Integer.parseInt(line);
+                if (length < 0) {
+                    return null;
+                }
+                var bytes = in.readNBytes(length);
+                if (bytes.length < length || in.read() != '\r' || in.read() != '\n') {
+                    throw new IOException("Redis closed the connection in the middle of a reply.");
+                }
+                return new String(bytes, StandardCharsets.UTF_8);
+            case -1:
+                throw new IOException("Redis closed the connection.");
+            default:
+                throw new IOException("Unexpected Redis reply type: " + (char) type);
+        }
+    }
+
+    private String readLine() throws IOException {
+        var line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b == -1) {
+                throw new IOException("Redis closed the connection in the middle of a reply.");
+            }
+            line.write(b);
+        }
+        if (in.read() != '\n') {
+            throw new IOException("Malformed Redis reply.");
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private void writeLine(String line) throws IOException {
+        out.write(line.getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+    }
+}
@@ -0,0 +1,92 @@
+package com.vladcarcu.sociallogin.cache;
+
+import java.time.Duration;
+
+/**
+ * Settings of the Redis validation store, bound from <code>social.login.validation-store.redis.*</code>.
+ */
+public class RedisSettings {
+
+    private String host = "localhost";
+
+    private int port = 6379;
+
+    private String password;
+
+    private int database = 0;
+
+    // connect and read timeout of every connection
+    private Duration timeout = Duration.ofMillis(100);
+
+    // the most connections open at once, each used by one command at a time
+    private int poolSize = 8;
+
+    // commands waiting for a connection; the ones past it are treated as misses
+    private int queueCapacity = 1000;
+
+    private String keyPrefix = "social-login:";
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public int getDatabase() {
+        return database;
+    }
+
+    public void setDatabase(int database) {
+        this.database = database;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    public void setKeyPrefix(String keyPrefix) {
+        this.keyPrefix = keyPrefix;
+    }
+}
@@ -0,0 +1,125 @@
+package com.vladcarcu.sociallogin.cache;
+
+import com.vladcarcu.sociallogin.SocialLoginAuthenticationToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ValidationResultStore} kept in Redis, or anything else that speaks its protocol. Entries are plain strings
+ * under the key prefix followed by the hex digest of the type and token, written with <code>SET ... PX</code>
+ * so that Redis drops them once they expire. The raw token never leaves the node.
+ * <p>
+ * Every command runs on one of a few threads, each holding a connection of its own.
+ */
+public class RedisValidationResultStore implements ValidationResultStore, Closeable {
+
+    // version, expiry in epoch millis or nothing, and the username, which may hold anything, last
+    private static final String FORMAT_VERSION = "1";
+    private static final char SEPARATOR = '\n';
+
+    private final RedisSettings settings;
+    private final ThreadPoolExecutor executor;
+    private final BlockingQueue<RedisConnection> idle;
+
+    public RedisValidationResultStore(RedisSettings settings) {
+        this.settings = settings;
+        this.idle = new ArrayBlockingQueue<>(settings.getPoolSize());
+        var threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(settings.getPoolSize(), settings.getPoolSize(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(settings.getQueueCapacity()), runnable -> {
+            var thread = new Thread(runnable, "social-login-redis-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletionStage<SocialLoginAuthenticationToken> get(TokenKey key) {
+        return CompletableFuture.supplyAsync(() -> decode((String) execute("GET", keyOf(key))), executor);
+    }
+
+    @Override
+    public CompletionStage<Void> put(TokenKey key, SocialLoginAuthenticationToken authToken, Duration ttl) {
+        return CompletableFuture.runAsync(() -> execute("SET", keyOf(key), encode(authToken), "PX", Long.toString(Math.max(1, ttl.toMillis()))), executor);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        RedisConnection connection;
+        while ((connection = idle.poll()) != null) {
+            closeQuietly(connection);
+        }
+    }
+
+    private String keyOf(TokenKey key) {
+        // the digest covers the type as well as the token
+        return settings.getKeyPrefix() + key.toHex();
+    }
+
+    private Object execute(String... command) {
+        var connection = idle.poll();
+        try {
+            if (connection == null) {
+                connection = new RedisConnection(settings);
+            }
+            var reply = connection.execute(command);
+            if (!idle.offer(connection)) {
+                closeQuietly(connection);
+            }
+            return reply;
+        } catch (IOException e) {
+            // a connection that failed mid-command may have a reply still on its way, so it is not reused
+            if (connection != null) {
+                closeQuietly(connection);
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String encode(SocialLoginAuthenticationToken authToken) {
+        var value = new StringBuilder(FORMAT_VERSION).append(SEPARATOR);
+        if (authToken.getExpiresAt() != null) {
+            value.append(authToken.getExpiresAt().toEpochMilli());
+        }
+        return value.append(SEPARATOR)
+                .append(authToken.getPrincipal())
+                .toString();
+    }
+
+    private static SocialLoginAuthenticationToken decode(String value) {
+        if (value == null) {
+            return null;
+        }
+        var versionEnd = value.indexOf(SEPARATOR);
+        var expiryEnd = value.indexOf(SEPARATOR, versionEnd + 1);
+        if (versionEnd < 0 || expiryEnd < 0 || !FORMAT_VERSION.equals(value.substring(0, versionEnd))) {
+            // written by another version, so validated again and overwritten
+            return null;
+        }
+        var expiry = value.substring(versionEnd + 1, expiryEnd);
+        var expiresAt = expiry.isEmpty() ? null : Instant.ofEpochMilli(Long.parseLong(expiry));
+        var authToken = new SocialLoginAuthenticationToken(value.substring(expiryEnd + 1), expiresAt);
+        authToken.setAuthenticated(true);
+        return authToken;
+    }
+
+    private static void closeQuietly(RedisConnection connection) {
+        try {
+            connection.close();
+        } catch (IOException e) {
+            // nothing left to do with it
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.vladcarcu.sociallogin.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers the tokens rejected lately, in fixed memory, so that the same bad token replayed over and over
+ * is turned away without reaching the provider again.
+ * <p>
+ * Every token is kept as a 48-bit fingerprint of its key, stamped with the time slice it was last rejected in,
+ * in one of the four slots of its bucket. Unlike a Bloom filter, a lookup only matches a token whose own fingerprint
+ * was stored, so a token that was never rejected is mistaken for one with a chance of about one in 2^45.
+ * When a bucket is full the stalest entry makes room, which only means that token gets validated again.
+ * Lookups and updates are lock-free; two updates racing for a slot may lose one of them, with the same consequence.
+ * <p>
+ * Stamps are the low 16 bits of the slice number, so an entry left alone for 2^16 slices would look fresh again.
+ * To keep that from happening, the first call of every epoch of 2^15 slices sweeps out the entries past their window,
+ * which leaves none older than two epochs to be misread.
+ */
+public class RejectedTokenFilter {
+
+    private static final int WAYS = 4;
+    // the window is cut into this many slices, and an entry lives until the slice it was stamped in is this old
+    private static final int SLICES = 16;
+    private static final int STAMP_BITS = 16;
+    private static final long STAMP_MASK = (1L << STAMP_BITS) - 1;
+    private static final long EPOCH_SLICES = 1L << (STAMP_BITS - 1);
+
+    private final AtomicLongArray slots;
+    private final int bucketMask;
+    private final long sliceNanos;
+    private final LongSupplier nanoTime;
+    private final long originNanos;
+    // the epoch swept last
+    private volatile long epoch;
+
+    public RejectedTokenFilter(RejectedTokenFilterSettings settings) {
+        this(settings, System::nanoTime);
+    }
+
+    RejectedTokenFilter(RejectedTokenFilterSettings settings, LongSupplier nanoTime) {
+        var buckets = Integer.highestOneBit(Math.max(1, settings.getCapacity() / WAYS));
+        this.slots = new AtomicLongArray(buckets * WAYS);
+        this.bucketMask = buckets - 1;
+        this.sliceNanos = Math.max(1, settings.getWindow().toNanos() / SLICES);
+        this.nanoTime = nanoTime;
+        this.originNanos = nanoTime.getAsLong();
+    }
+
+    public boolean mightContain(TokenKey key) {
+        var fingerprint = fingerprint(key);
+        var stamp = currentStamp();
+        var first = firstSlot(key);
+        for (var i = first; i < first + WAYS; i++) {
+            var slot = slots.get(i);
+            if ((slot & ~STAMP_MASK) == fingerprint && age(slot, stamp) < SLICES) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void add(TokenKey key) {
+        var fingerprint = fingerprint(key);
+        var stamp = currentStamp();
+        var first = firstSlot(key);
+        var victim = first;
+        var victimAge = -1L;
+        for (var i = first; i < first + WAYS; i++) {
+            var slot = slots.get(i);
+            if ((slot & ~STAMP_MASK) == fingerprint) {
+                // seen again, so remembered for another window
+                victim = i;
+                break;
+            }
+            var age = slot == 0 ? Long.MAX_VALUE : age(slot, stamp);
+            if (age > victimAge) {
+                victim = i;
+                victimAge = age;
+            }
+        }
+        slots.set(victim, fingerprint | stamp);
+    }
+
+    private int firstSlot(TokenKey key) {
+        return ((int) key.getBits(0) & bucketMask) * WAYS;
+    }
+
+    private static long fingerprint(TokenKey key) {
+        // from other bits of the digest than the bucket, and never 0, which marks an empty slot
+        return (key.getBits(8) & ~STAMP_MASK) | (1L << STAMP_BITS);
+    }
+
+    private long currentStamp() {
+        var slice = (nanoTime.getAsLong() - originNanos) / sliceNanos;
+        if (slice / EPOCH_SLICES > epoch) {
+            sweep(slice / EPOCH_SLICES);
+        }
+        return slice & STAMP_MASK;
+    }
+
+    private synchronized void sweep(long next) {
+        if (next <= epoch) {
+            return;
+        }
+        // after an idle epoch or more, even the newest entries may be old enough for their stamps to have wrapped
+        var clearAll = next > epoch + 1;
+        var stamp = (next * EPOCH_SLICES) & STAMP_MASK;
+        for (var i = 0; i < slots.length(); i++) {
+            var slot = slots.get(i);
+            if (slot != 0 && (clearAll || age(slot, stamp) >= SLICES)) {
+                // unless it was just stamped again
+                slots.compareAndSet(i, slot, 0);
+            }
+        }
+        epoch = next;
+    }
+
+    private static long age(long slot, long stamp) {
+        return (stamp - (slot & STAMP_MASK)) & STAMP_MASK;
+    }
+}
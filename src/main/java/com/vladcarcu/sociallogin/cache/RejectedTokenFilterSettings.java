@@ -0,0 +1,41 @@
+package com.vladcarcu.sociallogin.cache;
+
+import java.time.Duration;
+
+/**
+ * Settings of the filter of recently rejected tokens, bound from <code>social.login.rejected-token-filter.*</code>.
+ */
+public class RejectedTokenFilterSettings {
+
+    private boolean enabled;
+
+    // tokens remembered at most; every one of them takes 8 bytes, whether it is used or not
+    private int capacity = 65_536;
+
+    // how long a rejected token is remembered, unless it is pushed out by newer ones
+    private Duration window = Duration.ofMinutes(10);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public Duration getWindow() {
+        return window;
+    }
+
+    public void setWindow(Duration window) {
+        this.window = window;
+    }
+}
@@ -0,0 +1,41 @@
+package com.vladcarcu.sociallogin.cache;
+
+import com.vladcarcu.sociallogin.Futures;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Lets only one call run for a given key at a time. Callers asking for the same key while the call
+ * is running get the same result, or the same failure, without starting a call of their own.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    public CompletableFuture<V> execute(K key, Supplier<? extends CompletionStage<V>> call) {
+        var future = new CompletableFuture<V>();
+        var existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            // every caller gets its own copy, so that one of them giving up does not cancel the others
+            return existing.copy();
+        }
+        try {
+            call.get().whenComplete((result, e) -> {
+                inFlight.remove(key, future);
+                if (e != null) {
+                    future.completeExceptionally(Futures.unwrap(e));
+                } else {
+                    future.complete(result);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future.copy();
+    }
+}
@@ -0,0 +1,40 @@
+package com.vladcarcu.sociallogin.cache;
+
+import java.time.Duration;
+
+/**
+ * Settings of the cache in front of the {@link com.vladcarcu.sociallogin.SocialUserResolver}, bound from <code>social.login.user-cache.*</code>.
+ */
+public class SocialUserCacheSettings {
+
+    private boolean enabled = true;
+
+    private long maxSize = 10_000;
+
+    // how stale the authorities of a user may get when no one invalidates them
+    private Duration ttl = Duration.ofMinutes(10);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+}
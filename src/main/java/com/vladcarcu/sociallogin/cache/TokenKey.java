@@ -0,0 +1,79 @@
+package com.vladcarcu.sociallogin.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * SHA-256 digest of a (type, token) pair, so that provider tokens are never kept in memory as keys.
+ */
+public final class TokenKey {
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    });
+
+    private final byte[] digest;
+    private final int hashCode;
+
+    private TokenKey(byte[] digest) {
+        this.digest = digest;
+        this.hashCode = Arrays.hashCode(digest);
+    }
+
+    public static TokenKey of(String type, String token) {
+        var messageDigest = DIGEST.get();
+        messageDigest.update(type.getBytes(StandardCharsets.UTF_8));
+        // the separator keeps ("ab", "c") and ("a", "bc") apart
+        messageDigest.update((byte) 0);
+        messageDigest.update(token.getBytes(StandardCharsets.UTF_8));
+        return new TokenKey(messageDigest.digest());
+    }
+
+    public byte[] getDigest() {
+        return digest.clone();
+    }
+
+    /**
+     * The digest in lowercase hex, e.g. to name the entry in an external store.
+     */
+    public String toHex() {
+        var hex = new StringBuilder(digest.length * 2);
+        for (var b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Eight bytes of the digest, starting at the given one, as a long; as random as the digest itself.
+     */
+    long getBits(int offset) {
+        var bits = 0L;
+        for (var i = offset; i < offset + Long.BYTES; i++) {
+            bits = (bits << 8) | (digest[i] & 0xFF);
+        }
+        return bits;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TokenKey)) {
+            return false;
+        }
+        return Arrays.equals(digest, ((TokenKey) o).digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
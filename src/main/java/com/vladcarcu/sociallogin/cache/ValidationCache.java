@@ -0,0 +1,184 @@
+package com.vladcarcu.sociallogin.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.vladcarcu.sociallogin.SocialLoginAuthenticationToken;
+import com.vladcarcu.sociallogin.ValidationResult;
+import com.vladcarcu.sociallogin.trace.GrantTrace;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Remembers successfully validated tokens, so that re-exchanging the same provider token does not
+ * validate it upstream again. Every provider type gets its own size-bounded cache, and an entry never
+ * outlives the provider token it was created from.
+ * <p>
+ * With a {@link ValidationResultStore}, these caches become the near tier in front of it: a miss here is looked up
+ * in the store before the token is validated, and a fresh validation is written to both.
+ */
+public class ValidationCache {
+
+    private final Map<String, Cache<TokenKey, SocialLoginAuthenticationToken>> caches;
+    private final Map<String, Duration> ttls;
+    private final ValidationResultStore store;
+    private final Duration storeTimeout;
+    // tells how long the provider tokens have left, and moves the caches' expiry
+    private final Clock clock;
+
+    public ValidationCache(Set<String> types, Function<String, ValidationCacheSettings> settingsResolver) {
+        this(types, settingsResolver, null, null);
+    }
+
+    public ValidationCache(Set<String> types, Function<String, ValidationCacheSettings> settingsResolver, ValidationResultStore store, Duration storeTimeout) {
+        this(types, settingsResolver, store, storeTimeout, Clock.systemUTC());
+    }
+
+    ValidationCache(Set<String> types, Function<String, ValidationCacheSettings> settingsResolver, ValidationResultStore store, Duration storeTimeout, Clock clock) {
+        this.clock = clock;
+        var enabled = new HashMap<String, Cache<TokenKey, SocialLoginAuthenticationToken>>();
+        var enabledTtls = new HashMap<String, Duration>();
+        for (var type : types) {
+            var settings = settingsResolver.apply(type);
+            if (settings.isEnabled()) {
+                enabled.put(type, createCache(settings));
+                enabledTtls.put(type, settings.getTtl());
+            }
+        }
+        this.caches = Map.copyOf(enabled);
+        this.ttls = Map.copyOf(enabledTtls);
+        this.store = store;
+        this.storeTimeout = storeTimeout;
+    }
+
+    public CompletionStage<ValidationResult> get(String type, TokenKey key, Supplier<CompletionStage<ValidationResult>> validation) {
+        var cache = caches.get(type);
+        if (cache == null) {
+            return validation.get();
+        }
+        var cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(ValidationResult.success(cached));
+        }
+        if (store == null) {
+            return validate(type, cache, key, validation);
+        }
+        var trace = GrantTrace.current();
+        var start = System.nanoTime();
+        return lookup(key).thenCompose(stored -> {
+            if (trace != null) {
+                trace.addStage("shared_store", start);
+            }
+            if (stored != null) {
+                cache.put(key, stored);
+                return CompletableFuture.completedFuture(ValidationResult.success(stored));
+            }
+            // the store may answer on a thread of its own, which doesn't carry the trace
+            var previousTrace = trace != null ? GrantTrace.attach(trace) : null;
+            try {
+                return validate(type, cache, key, validation);
+            } finally {
+                if (trace != null) {
+                    GrantTrace.restore(previousTrace);
+                }
+            }
+        });
+    }
+
+    private CompletionStage<ValidationResult> validate(String type, Cache<TokenKey, SocialLoginAuthenticationToken> cache, TokenKey key,
+                                                       Supplier<CompletionStage<ValidationResult>> validation) {
+        return validation.get().thenApply(result -> {
+            if (result.isSuccess()) {
+                var authToken = result.getAuthenticationToken();
+                cache.put(key, authToken);
+                if (store != null) {
+                    share(key, authToken, ttlOf(ttls.get(type), authToken));
+                }
+            }
+            return result;
+        });
+    }
+
+    private CompletableFuture<SocialLoginAuthenticationToken> lookup(TokenKey key) {
+        try {
+            // a store that is down or slow costs a validation, never a login
+            return store.get(key).toCompletableFuture()
+                    .exceptionally(e -> null)
+                    .completeOnTimeout(null, storeTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private void share(TokenKey key, SocialLoginAuthenticationToken authToken, long ttlNanos) {
+        if (ttlNanos <= 0) {
+            return;
+        }
+        try {
+            store.put(key, authToken, Duration.ofNanos(ttlNanos));
+        } catch (RuntimeException e) {
+            // the other nodes will validate the token themselves
+        }
+    }
+
+    /**
+     * Hit, miss and eviction counts of every provider type that has caching enabled.
+     */
+    public Map<String, CacheStats> getStats() {
+        return caches.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().stats()));
+    }
+
+    private Cache<TokenKey, SocialLoginAuthenticationToken> createCache(ValidationCacheSettings settings) {
+        // Caffeine evicts with W-TinyLFU once the maximum size is reached
+        return Caffeine.newBuilder()
+                .maximumSize(settings.getMaxSize())
+                .expireAfter(new TokenExpiry(settings.getTtl()))
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.millis()))
+                .recordStats()
+                .build();
+    }
+
+    private long ttlOf(Duration ttl, SocialLoginAuthenticationToken authToken) {
+        if (authToken.getExpiresAt() == null) {
+            return ttl.toNanos();
+        }
+        var remaining = Duration.between(clock.instant(), authToken.getExpiresAt());
+        return Math.max(0, Math.min(ttl.toNanos(), remaining.toNanos()));
+    }
+
+    private class TokenExpiry implements Expiry<TokenKey, SocialLoginAuthenticationToken> {
+
+        private final Duration ttl;
+
+        private TokenExpiry(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        @Override
+        public long expireAfterCreate(TokenKey key, SocialLoginAuthenticationToken value, long currentTime) {
+            return ttlOf(ttl, value);
+        }
+
+        @Override
+        public long expireAfterUpdate(TokenKey key, SocialLoginAuthenticationToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(TokenKey key, SocialLoginAuthenticationToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.vladcarcu.sociallogin.cache;
+
+import java.time.Duration;
+
+/**
+ * Per-provider settings, bound from <code>social.login.&lt;type&gt;.cache.*</code>.
+ */
+public class ValidationCacheSettings {
+
+    private boolean enabled = false;
+
+    private long maxSize = 10_000;
+
+    private Duration ttl = Duration.ofMinutes(5);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+}
@@ -0,0 +1,26 @@
+package com.vladcarcu.sociallogin.cache;
+
+import com.vladcarcu.sociallogin.SocialLoginAuthenticationToken;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A store of validated tokens shared by all the nodes of a cluster, so that a token validated on one node
+ * is not validated upstream again when the client retries on another. Every node keeps a near cache in front of it,
+ * see {@link ValidationCache}. Declare a bean of this type to plug in a store of your own.
+ * <p>
+ * Implementations should fail fast rather than wait: a failed or slow lookup is treated as a miss, and a failed write is ignored.
+ */
+public interface ValidationResultStore {
+
+    /**
+     * Completes with the stored validation, or with null if there is none.
+     */
+    CompletionStage<SocialLoginAuthenticationToken> get(TokenKey key);
+
+    /**
+     * Stores an authenticated validation for the given time, which never outlasts the provider token.
+     */
+    CompletionStage<Void> put(TokenKey key, SocialLoginAuthenticationToken authToken, Duration ttl);
+}
@@ -0,0 +1,52 @@
+package com.vladcarcu.sociallogin.cache;
+
+import java.time.Duration;
+
+/**
+ * Settings of the shared validation store, bound from <code>social.login.validation-store.*</code>.
+ */
+public class ValidationStoreSettings {
+
+    // memory or redis; none unless set, or unless a ValidationResultStore bean is declared
+    private String type;
+
+    // how long a lookup may take before the token is validated anyway
+    private Duration timeout = Duration.ofMillis(50);
+
+    // for the memory store
+    private long maxSize = 100_000;
+
+    private RedisSettings redis = new RedisSettings();
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public RedisSettings getRedis() {
+        return redis;
+    }
+
+    public void setRedis(RedisSettings redis) {
+        this.redis = redis;
+    }
+}
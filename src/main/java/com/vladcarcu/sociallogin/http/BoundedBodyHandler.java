@@ -0,0 +1,128 @@
+package com.vladcarcu.sociallogin.http;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Reads the body of a single exchange into a byte array, like {@link HttpResponse.BodyHandlers#ofByteArray()}, but
+ * fails the exchange once the body grows past the given size, and can be aborted by a caller that stopped waiting.
+ * Aborting cancels the subscription to the body, which stops the read even where cancelling the future returned by
+ * {@link java.net.http.HttpClient#sendAsync} does not stop the exchange (JDK 11 to 15).
+ */
+final class BoundedBodyHandler implements HttpResponse.BodyHandler<byte[]> {
+
+    private final String provider;
+    private final long maxSize;
+
+    private volatile boolean aborted;
+    private volatile BoundedBodySubscriber subscriber;
+
+    BoundedBodyHandler(String provider, long maxSize) {
+        this.provider = provider;
+        // read into a single array
+        this.maxSize = Math.min(maxSize, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<byte[]> apply(HttpResponse.ResponseInfo responseInfo) {
+        var created = new BoundedBodySubscriber();
+        subscriber = created;
+        // the caller may have stopped waiting before the headers came in
+        if (aborted) {
+            created.abort();
+        }
+        return created;
+    }
+
+    /**
+     * Stops reading the body, now or as soon as the headers come in.
+     */
+    void abort() {
+        aborted = true;
+        var current = subscriber;
+        if (current != null) {
+            current.abort();
+        }
+    }
+
+    private final class BoundedBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+
+        private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+        // only touched by the client's signals, which never overlap
+        private final List<ByteBuffer> received = new ArrayList<>();
+        private long size;
+
+        private volatile boolean aborted;
+        private volatile Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (aborted) {
+                subscription.cancel();
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (body.isDone()) {
+                return;
+            }
+            for (var item : items) {
+                size += item.remaining();
+            }
+            if (size > maxSize) {
+                subscription.cancel();
+                body.completeExceptionally(new IOException(new StringBuilder()
+                        .append("The response of ").append(provider)
+                        .append(" is larger than ").append(maxSize).append(" bytes")
+                        .toString()));
+                return;
+            }
+            received.addAll(items);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (body.isDone()) {
+                return;
+            }
+            var bytes = new byte[(int) size];
+            var offset = 0;
+            for (var buffer : received) {
+                var length = buffer.remaining();
+                buffer.get(bytes, offset, length);
+                offset += length;
+            }
+            body.complete(bytes);
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return body;
+        }
+
+        private void abort() {
+            aborted = true;
+            // whichever of this and onSubscribe runs last sees the other's write and cancels
+            var current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+            body.completeExceptionally(new IOException("The caller stopped waiting for the response of " + provider));
+        }
+    }
+}
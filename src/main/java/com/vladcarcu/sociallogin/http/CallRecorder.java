@@ -0,0 +1,15 @@
+package com.vladcarcu.sociallogin.http;
+
+/**
+ * Told about every call a {@link ProviderHttpClient} completes, and every hedge it sends.
+ */
+interface CallRecorder {
+
+    /**
+     * @param response null if the call failed
+     * @param failure  null if a response came, whatever its status
+     */
+    void record(String call, ProviderResponse response, Throwable failure, long durationNanos);
+
+    void recordHedge(String call);
+}
@@ -0,0 +1,108 @@
+package com.vladcarcu.sociallogin.http;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Sends a second copy of an idempotent request when the first one takes longer than most responses of the same call
+ * usually do, and uses whichever response arrives first. This trims the latency tail of a provider at the cost of
+ * a few extra requests, which are capped by a budget: every request earns a fraction of a hedge, up to a small burst.
+ */
+class Hedging {
+
+    private static final long HEDGE_COST = 100;
+    private static final long MAX_CREDITS = 10 * HEDGE_COST;
+
+    /**
+     * Runs a task once the delay, in nanoseconds, has passed.
+     */
+    interface Scheduler {
+
+        void schedule(Runnable task, long delayNanos);
+    }
+
+    private final HedgingSettings settings;
+    private final LongSupplier nanoTime;
+    private final Scheduler scheduler;
+    private final Map<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+    // in hundredths of a hedge, so that the budget can be earned in whole percents
+    private final AtomicLong credits = new AtomicLong(MAX_CREDITS);
+
+    Hedging(HedgingSettings settings) {
+        this(settings, System::nanoTime, (task, delayNanos) -> CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS).execute(task));
+    }
+
+    Hedging(HedgingSettings settings, LongSupplier nanoTime, Scheduler scheduler) {
+        this.settings = settings;
+        this.nanoTime = nanoTime;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Starts the exchange and, if it is slow and the budget allows, a second one after it.
+     * The hedge callback is told about every second exchange that is sent.
+     */
+    CompletableFuture<ProviderResponse> send(String call, Supplier<CompletableFuture<ProviderResponse>> exchange,
+                                             Supplier<CompletableFuture<ProviderResponse>> secondExchange, Runnable onHedge) {
+        var window = windows.computeIfAbsent(call, key -> new LatencyWindow(settings.getWindowSize(), settings.getPercentile()));
+        credits.getAndUpdate(current -> Math.min(MAX_CREDITS, current + settings.getBudget()));
+        var first = timed(window, exchange);
+        var delay = window.getPercentileNanos();
+        if (delay < 0) {
+            // nothing to go by yet
+            return first;
+        }
+        var result = new CompletableFuture<ProviderResponse>();
+        var second = new AtomicReference<CompletableFuture<ProviderResponse>>();
+        // the exchanges that may still answer; the result fails only when none of them can
+        var pending = new AtomicInteger(1);
+        first.whenComplete((response, e) -> complete(result, pending, response, e));
+        scheduler.schedule(() -> {
+            if (result.isDone() || !tryWithdraw() || pending.getAndUpdate(count -> count == 0 ? 0 : count + 1) == 0) {
+                return;
+            }
+            onHedge.run();
+            var hedge = timed(window, secondExchange);
+            second.set(hedge);
+            hedge.whenComplete((response, e) -> complete(result, pending, response, e));
+            if (result.isDone()) {
+                hedge.cancel(false);
+            }
+        }, Math.max(delay, settings.getMinDelay().toNanos()));
+        result.whenComplete((response, e) -> {
+            // a queued loser is dropped before it is sent, and one already sent is aborted to free its connection slot
+            first.cancel(false);
+            var hedge = second.get();
+            if (hedge != null) {
+                hedge.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    private boolean tryWithdraw() {
+        return credits.getAndUpdate(current -> current >= HEDGE_COST ? current - HEDGE_COST : current) >= HEDGE_COST;
+    }
+
+    private static void complete(CompletableFuture<ProviderResponse> result, AtomicInteger pending, ProviderResponse response, Throwable failure) {
+        if (failure == null) {
+            result.complete(response);
+        } else if (pending.decrementAndGet() == 0) {
+            result.completeExceptionally(failure);
+        }
+    }
+
+    private CompletableFuture<ProviderResponse> timed(LatencyWindow window, Supplier<CompletableFuture<ProviderResponse>> exchange) {
+        var start = nanoTime.getAsLong();
+        var started = exchange.get();
+        started.thenRun(() -> window.record(nanoTime.getAsLong() - start));
+        return started;
+    }
+}
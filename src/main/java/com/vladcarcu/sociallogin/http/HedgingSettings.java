@@ -0,0 +1,63 @@
+package com.vladcarcu.sociallogin.http;
+
+import java.time.Duration;
+
+/**
+ * Per-provider settings, bound from <code>social.login.&lt;provider&gt;.http.hedging.*</code>.
+ */
+public class HedgingSettings {
+
+    private boolean enabled;
+
+    // a second request is sent once the first has taken longer than this percentile of the recent responses
+    private double percentile = 95;
+
+    // never hedged sooner than this, however fast the provider has been
+    private Duration minDelay = Duration.ofMillis(10);
+
+    // the most second requests that may be sent, in percent of all the requests
+    private int budget = 10;
+
+    // how many of the latest response times the percentile is taken from, per call
+    private int windowSize = 200;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    public Duration getMinDelay() {
+        return minDelay;
+    }
+
+    public void setMinDelay(Duration minDelay) {
+        this.minDelay = minDelay;
+    }
+
+    public int getBudget() {
+        return budget;
+    }
+
+    public void setBudget(int budget) {
+        this.budget = budget;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+}
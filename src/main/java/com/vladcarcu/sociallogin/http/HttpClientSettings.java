@@ -0,0 +1,95 @@
+package com.vladcarcu.sociallogin.http;
+
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Per-provider settings, bound from <code>social.login.&lt;provider&gt;.http.*</code>.
+ */
+public class HttpClientSettings {
+
+    // how many requests may be in flight to the provider at once; the rest wait for a free slot
+    private int maxConnections = 50;
+
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    // how long to wait for the response once the request has been sent
+    private Duration readTimeout = Duration.ofSeconds(5);
+
+    // upper bound for the whole exchange, including the time spent waiting for a free slot
+    private Duration totalTimeout = Duration.ofSeconds(10);
+
+    // a larger response fails the exchange instead of being read into memory
+    private DataSize maxResponseSize = DataSize.ofMegabytes(1);
+
+    private boolean gzip = true;
+
+    private boolean http2 = true;
+
+    private HedgingSettings hedging = new HedgingSettings();
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public Duration getTotalTimeout() {
+        return totalTimeout;
+    }
+
+    public void setTotalTimeout(Duration totalTimeout) {
+        this.totalTimeout = totalTimeout;
+    }
+
+    public DataSize getMaxResponseSize() {
+        return maxResponseSize;
+    }
+
+    public void setMaxResponseSize(DataSize maxResponseSize) {
+        this.maxResponseSize = maxResponseSize;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    public HedgingSettings getHedging() {
+        return hedging;
+    }
+
+    public void setHedging(HedgingSettings hedging) {
+        this.hedging = hedging;
+    }
+}
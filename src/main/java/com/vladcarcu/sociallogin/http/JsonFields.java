@@ -0,0 +1,208 @@
+package com.vladcarcu.sociallogin.http;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.vladcarcu.sociallogin.trace.GrantTrace;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pulls a fixed set of fields out of a JSON body with Jackson's streaming parser, skipping everything else.
+ * Fields are named by their dotted path (e.g. <code>data.error.code</code>), so success and error fields can
+ * be read in the same pass without binding the body to objects first.
+ */
+public final class JsonFields {
+
+    // provider responses hold tokens and profile data, so they are not quoted in parse errors, which end up in logs
+    private static final JsonFactory JSON_FACTORY = new JsonFactory().disable(JsonParser.Feature.INCLUDE_SOURCE_IN_LOCATION);
+
+    private final Node root = new Node();
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    private JsonFields(String... paths) {
+        for (var path : paths) {
+            var node = root;
+            for (var name : path.split("\\.")) {
+                node = node.children.computeIfAbsent(name, key -> new Node());
+            }
+            node.index = indexes.size();
+            indexes.put(path, node.index);
+        }
+    }
+
+    public static JsonFields of(String... paths) {
+        return new JsonFields(paths);
+    }
+
+    public Values read(ProviderResponse response) {
+        var trace = GrantTrace.current();
+        var start = trace != null ? System.nanoTime() : 0;
+        try (var parser = createParser(response)) {
+            return read(parser);
+        } catch (IOException e) {
+            throw new UncheckedIOException(couldNotDecode(response), e);
+        } finally {
+            if (trace != null) {
+                trace.addStage("decode", start);
+            }
+        }
+    }
+
+    /**
+     * Reads a body holding an array of objects, such as the answer to a batch request, in a single pass.
+     * JSON nulls in the array are returned as null.
+     */
+    public List<Values> readArray(ProviderResponse response) {
+        var trace = GrantTrace.current();
+        var start = trace != null ? System.nanoTime() : 0;
+        try (var parser = createParser(response)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array.");
+            }
+            var elements = new ArrayList<Values>();
+            for (var token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                if (token == JsonToken.VALUE_NULL) {
+                    elements.add(null);
+                } else if (token == JsonToken.START_OBJECT) {
+                    var values = new Object[indexes.size()];
+                    readObject(parser, root, values);
+                    elements.add(new Values(values));
+                } else {
+                    throw new IOException("Expected JSON objects in the array.");
+                }
+            }
+            return elements;
+        } catch (IOException e) {
+            throw new UncheckedIOException(couldNotDecode(response), e);
+        } finally {
+            if (trace != null) {
+                trace.addStage("decode", start);
+            }
+        }
+    }
+
+    public Values read(String json) {
+        try (var parser = JSON_FACTORY.createParser(json)) {
+            return read(parser);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not decode a body of " + json.length() + " characters.", e);
+        }
+    }
+
+    private static String couldNotDecode(ProviderResponse response) {
+        return new StringBuilder()
+                .append("Could not decode a response with status ").append(response.statusCode())
+                .append(" and a body of ").append(response.body().length).append(" bytes.")
+                .toString();
+    }
+
+    private static JsonParser createParser(ProviderResponse response) throws IOException {
+        return response.isCompressed()
+                ? JSON_FACTORY.createParser(response.bodyStream())
+                : JSON_FACTORY.createParser(response.body());
+    }
+
+    private Values read(JsonParser parser) throws IOException {
+        var values = new Object[indexes.size()];
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a JSON object.");
+        }
+        readObject(parser, root, values);
+        return new Values(values);
+    }
+
+    private static void readObject(JsonParser parser, Node node, Object[] values) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var child = node.children.get(parser.getCurrentName());
+            var token = parser.nextToken();
+            if (child == null) {
+                parser.skipChildren();
+            } else if (token.isScalarValue()) {
+                if (child.index >= 0) {
+                    values[child.index] = readScalar(parser, token);
+                }
+            } else if (token == JsonToken.START_OBJECT && !child.children.isEmpty()) {
+                readObject(parser, child, values);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static Object readScalar(JsonParser parser, JsonToken token) throws IOException {
+        // numbers are kept as the parser read them, so that e.g. "expires_in":5183999.0 is still a number of seconds
+        switch (token) {
+            case VALUE_NUMBER_INT:
+                return parser.getNumberValue();
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDecimalValue();
+            default:
+                return parser.getValueAsString();
+        }
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private int index = -1;
+    }
+
+    /**
+     * The values found in one body; absent fields and JSON nulls are returned as null.
+     */
+    public final class Values {
+
+        private final Object[] values;
+
+        private Values(Object[] values) {
+            this.values = values;
+        }
+
+        public String get(String path) {
+            var value = values[indexOf(path)];
+            return value != null ? value.toString() : null;
+        }
+
+        /**
+         * Reads a JSON number, or a number sent as a string, dropping any fraction; absent fields, and strings that
+         * are not numbers (e.g. <code>""</code>), read as 0.
+         */
+        public long getLong(String path) {
+            var value = values[indexOf(path)];
+            if (value instanceof Number) {
+                return ((Number) value).longValue();
+            }
+            if (value == null) {
+                return 0;
+            }
+            try {
+                // a string such as "3600.0" is read like the number would be
+                return new BigDecimal(((String) value).trim()).longValue();
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        public boolean getBoolean(String path) {
+            return Boolean.parseBoolean(get(path));
+        }
+
+        public boolean has(String path) {
+            return get(path) != null;
+        }
+
+        private int indexOf(String path) {
+            var index = indexes.get(path);
+            if (index == null) {
+                throw new IllegalArgumentException("Not a selected field: " + path);
+            }
+            return index;
+        }
+    }
+}
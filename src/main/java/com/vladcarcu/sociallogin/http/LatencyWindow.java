@@ -0,0 +1,53 @@
+package com.vladcarcu.sociallogin.http;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The latest response times of one call, and a percentile of them. Recording is lock-free; the percentile
+ * is recomputed every tenth of the window by the recording thread, so reading it costs a volatile read.
+ */
+class LatencyWindow {
+
+    private static final int MIN_SAMPLES = 20;
+
+    private final AtomicLongArray samples;
+    private final AtomicLong recorded = new AtomicLong();
+    private final double percentile;
+    private final int refreshEvery;
+
+    // -1 until there are enough samples
+    private volatile long percentileNanos = -1;
+
+    LatencyWindow(int size, double percentile) {
+        this.samples = new AtomicLongArray(size);
+        this.percentile = percentile;
+        this.refreshEvery = Math.max(1, size / 10);
+    }
+
+    void record(long nanos) {
+        var count = recorded.incrementAndGet();
+        samples.set((int) ((count - 1) % samples.length()), nanos);
+        if (count >= Math.min(MIN_SAMPLES, samples.length()) && count % refreshEvery == 0) {
+            refresh((int) Math.min(count, samples.length()));
+        }
+    }
+
+    /**
+     * The percentile of the latest response times, or -1 if too few responses have been seen yet.
+     */
+    long getPercentileNanos() {
+        return percentileNanos;
+    }
+
+    private void refresh(int count) {
+        var sorted = new long[count];
+        for (var i = 0; i < count; i++) {
+            sorted[i] = samples.get(i);
+        }
+        Arrays.sort(sorted);
+        var rank = (int) Math.ceil(percentile / 100 * count);
+        percentileNanos = sorted[Math.max(0, Math.min(count, rank) - 1)];
+    }
+}
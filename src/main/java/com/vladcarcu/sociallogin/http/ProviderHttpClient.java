@@ -0,0 +1,216 @@
+package com.vladcarcu.sociallogin.http;
+
+import com.vladcarcu.sociallogin.trace.GrantTrace;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The HTTP client of a single provider. It has its own connection pool, which keeps connections alive
+ * between logins and multiplexes requests over HTTP/2 where the provider supports it, and it caps the
+ * number of exchanges in flight so that a slow provider cannot pile up an unbounded backlog.
+ * <p>
+ * A slot is only given back once the exchange is over, not when the caller stops waiting: before JDK 16, cancelling
+ * the future of {@link HttpClient#sendAsync} leaves the exchange running. A caller giving up stops the read of the
+ * body; one giving up before the headers came in keeps the slot until the provider answers or the read timeout passes.
+ */
+public class ProviderHttpClient {
+
+    private final String provider;
+    private final HttpClientSettings settings;
+    private final HttpClient httpClient;
+
+    private final Semaphore permits;
+    private final Queue<QueuedExchange> waiting = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger active = new AtomicInteger();
+
+    // null unless hedging is enabled for the provider
+    private final Hedging hedging;
+
+    // only set once a meter registry is bound
+    private volatile CallRecorder recorder;
+
+    ProviderHttpClient(String provider, HttpClientSettings settings) {
+        this.provider = provider;
+        this.settings = settings;
+        this.httpClient = HttpClient.newBuilder()
+                .version(settings.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(settings.getConnectTimeout())
+                .build();
+        this.permits = new Semaphore(settings.getMaxConnections());
+        this.hedging = settings.getHedging().isEnabled() ? new Hedging(settings.getHedging()) : null;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    /**
+     * Starts building a request with this provider's read timeout and compression settings already applied.
+     */
+    public HttpRequest.Builder newRequest(String uri) {
+        var builder = HttpRequest.newBuilder(URI.create(uri))
+                .timeout(settings.getReadTimeout());
+        if (settings.isGzip()) {
+            builder.header("Accept-Encoding", "gzip");
+        }
+        return builder;
+    }
+
+    /**
+     * Sends the request once a connection slot is free. The call names the kind of request in the metrics,
+     * e.g. <code>debug_token</code>.
+     */
+    public CompletableFuture<ProviderResponse> send(String call, HttpRequest request) {
+        return send(call, request, false);
+    }
+
+    /**
+     * Sends a request that can safely be sent twice. When hedging is enabled and the response is slower than usual,
+     * a second copy is sent and whichever response comes first is used. Never use it for requests with side effects,
+     * such as exchanging a single-use authorization code.
+     */
+    public CompletableFuture<ProviderResponse> sendIdempotent(String call, HttpRequest request) {
+        return send(call, request, hedging != null);
+    }
+
+    private CompletableFuture<ProviderResponse> send(String call, HttpRequest request, boolean hedged) {
+        var start = System.nanoTime();
+        var trace = GrantTrace.current();
+        var result = hedged
+                ? hedging.send(call, () -> exchange(call, request, trace), () -> exchange(call + ".hedge", request, trace), () -> onHedge(call))
+                : exchange(call, request, trace);
+        result.orTimeout(settings.getTotalTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        var currentRecorder = recorder;
+        if (currentRecorder == null) {
+            return result;
+        }
+        return result.whenComplete((response, e) -> currentRecorder.record(call, response, e, System.nanoTime() - start));
+    }
+
+    private CompletableFuture<ProviderResponse> exchange(String stage, HttpRequest request, GrantTrace trace) {
+        var start = System.nanoTime();
+        var result = new CompletableFuture<ProviderResponse>();
+        var body = new BoundedBodyHandler(provider, settings.getMaxResponseSize().toBytes());
+        Runnable exchange = () -> {
+            active.incrementAndGet();
+            CompletableFuture<HttpResponse<byte[]>> call;
+            try {
+                call = httpClient.sendAsync(request, body);
+            } catch (RuntimeException e) {
+                // a request the client refuses outright never completes a future, so the slot is given back here
+                active.decrementAndGet();
+                release();
+                result.completeExceptionally(e);
+                return;
+            }
+            // a caller that stops waiting or times out stops the read, and the slot is given back once the exchange ends
+            result.whenComplete((response, e) -> {
+                if (e != null) {
+                    body.abort();
+                }
+            });
+            call.whenComplete((response, e) -> {
+                active.decrementAndGet();
+                release();
+                // what the caller does with the response is part of the same grant
+                var previousTrace = trace != null ? GrantTrace.attach(trace) : null;
+                try {
+                    if (trace != null) {
+                        trace.addStage(provider + "." + stage, start);
+                    }
+                    if (e != null) {
+                        result.completeExceptionally(e);
+                    } else {
+                        result.complete(new ProviderResponse(response.statusCode(), response.headers(), response.body()));
+                    }
+                } finally {
+                    if (trace != null) {
+                        GrantTrace.restore(previousTrace);
+                    }
+                }
+            });
+        };
+        if (permits.tryAcquire()) {
+            exchange.run();
+        } else {
+            waiting.add(new QueuedExchange(result, exchange));
+            drain();
+        }
+        return result;
+    }
+
+    public int getActiveRequests() {
+        return active.get();
+    }
+
+    public int getQueuedRequests() {
+        return waiting.size();
+    }
+
+    public int getMaxConnections() {
+        return settings.getMaxConnections();
+    }
+
+    void setRecorder(CallRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    private void onHedge(String call) {
+        var currentRecorder = recorder;
+        if (currentRecorder != null) {
+            currentRecorder.recordHedge(call);
+        }
+    }
+
+    private void release() {
+        // hand the slot straight to a waiting request, if there is one
+        var next = pollWaiting();
+        if (next != null) {
+            next.start.run();
+        } else {
+            permits.release();
+            drain();
+        }
+    }
+
+    private void drain() {
+        // a request may have been queued just as the last slot was given back
+        while (!waiting.isEmpty() && permits.tryAcquire()) {
+            var next = pollWaiting();
+            if (next == null) {
+                permits.release();
+                return;
+            }
+            next.start.run();
+        }
+    }
+
+    private QueuedExchange pollWaiting() {
+        var next = waiting.poll();
+        // skipped in a loop, however many callers stopped waiting while their request was queued
+        while (next != null && next.result.isDone()) {
+            next = waiting.poll();
+        }
+        return next;
+    }
+
+    private static final class QueuedExchange {
+
+        private final CompletableFuture<ProviderResponse> result;
+        private final Runnable start;
+
+        private QueuedExchange(CompletableFuture<ProviderResponse> result, Runnable start) {
+            this.result = result;
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.vladcarcu.sociallogin.http;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Registers the pool gauges of every {@link ProviderHttpClient} and times their calls, once Micrometer binds a registry.
+ */
+public class ProviderHttpClientMeters implements MeterBinder {
+
+    private final ProviderHttpClients httpClients;
+
+    public ProviderHttpClientMeters(ProviderHttpClients httpClients) {
+        this.httpClients = httpClients;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        httpClients.instrument(client -> bindTo(registry, client));
+    }
+
+    private static void bindTo(MeterRegistry registry, ProviderHttpClient client) {
+        client.setRecorder(new UpstreamMeters(registry, client.getProvider()));
+        Gauge.builder("social.login.http.pool.active", client, ProviderHttpClient::getActiveRequests)
+                .description("Requests currently in flight to the provider")
+                .tag("provider", client.getProvider())
+                .register(registry);
+        Gauge.builder("social.login.http.pool.queued", client, ProviderHttpClient::getQueuedRequests)
+                .description("Requests waiting for a free connection slot")
+                .tag("provider", client.getProvider())
+                .register(registry);
+        Gauge.builder("social.login.http.pool.max", client, ProviderHttpClient::getMaxConnections)
+                .description("Maximum number of requests in flight to the provider")
+                .tag("provider", client.getProvider())
+                .register(registry);
+    }
+}
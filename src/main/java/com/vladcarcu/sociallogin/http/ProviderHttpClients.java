@@ -0,0 +1,46 @@
+package com.vladcarcu.sociallogin.http;
+
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Creates one {@link ProviderHttpClient} per provider, configured from <code>social.login.&lt;provider&gt;.http.*</code>,
+ * and lets {@link ProviderHttpClientMeters} report the utilisation of their pools and the timings of their calls when Micrometer is in use.
+ */
+@Component
+public class ProviderHttpClients {
+
+    private final Binder binder;
+
+    private final Map<String, ProviderHttpClient> clients = new ConcurrentHashMap<>();
+
+    // applied to every client, those created before it was set and those created after
+    private volatile Consumer<ProviderHttpClient> instrumentation;
+
+    public ProviderHttpClients(Environment environment) {
+        this.binder = Binder.get(environment);
+    }
+
+    public ProviderHttpClient forProvider(String provider) {
+        return clients.computeIfAbsent(provider, name -> {
+            var settings = binder.bind("social.login." + name + ".http", HttpClientSettings.class)
+                    .orElseGet(HttpClientSettings::new);
+            var client = new ProviderHttpClient(name, settings);
+            var currentInstrumentation = instrumentation;
+            if (currentInstrumentation != null) {
+                currentInstrumentation.accept(client);
+            }
+            return client;
+        });
+    }
+
+    void instrument(Consumer<ProviderHttpClient> instrumentation) {
+        this.instrumentation = instrumentation;
+        clients.values().forEach(instrumentation);
+    }
+}
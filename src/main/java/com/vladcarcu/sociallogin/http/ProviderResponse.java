@@ -0,0 +1,68 @@
+package com.vladcarcu.sociallogin.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A fully received provider response. The body is kept as sent and only decompressed when read.
+ */
+public class ProviderResponse {
+
+    private final int statusCode;
+    private final HttpHeaders headers;
+    private final byte[] body;
+
+    ProviderResponse(int statusCode, HttpHeaders headers, byte[] body) {
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    public int statusCode() {
+        return statusCode;
+    }
+
+    public HttpHeaders headers() {
+        return headers;
+    }
+
+    /**
+     * The size of the body as received, before decompression.
+     */
+    public int size() {
+        return body.length;
+    }
+
+    public boolean isCompressed() {
+        return headers.firstValue("Content-Encoding").filter("gzip"::equalsIgnoreCase).isPresent();
+    }
+
+    public InputStream bodyStream() {
+        try {
+            InputStream stream = new ByteArrayInputStream(body);
+            if (isCompressed()) {
+                stream = new GZIPInputStream(stream);
+            }
+            return stream;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    byte[] body() {
+        return body;
+    }
+
+    public String bodyAsString() {
+        try (var stream = bodyStream()) {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
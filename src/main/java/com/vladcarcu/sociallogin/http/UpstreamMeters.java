@@ -0,0 +1,92 @@
+package com.vladcarcu.sociallogin.http;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.net.http.HttpTimeoutException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The timers, response size summaries and hedge counters of one provider's calls, registered the first time each call is made.
+ */
+class UpstreamMeters implements CallRecorder {
+
+    enum Outcome {
+        SUCCESS, CLIENT_ERROR, UPSTREAM_ERROR, TIMEOUT;
+
+        private final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    private final MeterRegistry registry;
+    private final String provider;
+    private final Map<String, CallMeters> calls = new ConcurrentHashMap<>();
+
+    UpstreamMeters(MeterRegistry registry, String provider) {
+        this.registry = registry;
+        this.provider = provider;
+    }
+
+    @Override
+    public void record(String call, ProviderResponse response, Throwable failure, long durationNanos) {
+        var meters = calls.computeIfAbsent(call, CallMeters::new);
+        meters.timers[getOutcome(response, failure).ordinal()].record(durationNanos, TimeUnit.NANOSECONDS);
+        if (response != null) {
+            meters.responseSize.record(response.size());
+        }
+    }
+
+    @Override
+    public void recordHedge(String call) {
+        calls.computeIfAbsent(call, CallMeters::new).hedges.increment();
+    }
+
+    private static Outcome getOutcome(ProviderResponse response, Throwable failure) {
+        if (response != null) {
+            if (response.statusCode() >= 500) {
+                return Outcome.UPSTREAM_ERROR;
+            }
+            return response.statusCode() >= 400 ? Outcome.CLIENT_ERROR : Outcome.SUCCESS;
+        }
+        var cause = failure;
+        while (cause.getCause() != null && !(cause instanceof TimeoutException || cause instanceof HttpTimeoutException)) {
+            cause = cause.getCause();
+        }
+        return cause instanceof TimeoutException || cause instanceof HttpTimeoutException ? Outcome.TIMEOUT : Outcome.UPSTREAM_ERROR;
+    }
+
+    private final class CallMeters {
+
+        private final Timer[] timers = new Timer[Outcome.values().length];
+        private final DistributionSummary responseSize;
+        private final Counter hedges;
+
+        private CallMeters(String call) {
+            for (var outcome : Outcome.values()) {
+                timers[outcome.ordinal()] = Timer.builder("social.login.upstream.requests")
+                        .description("Calls to the provider, from the moment they are sent or queued")
+                        .tag("provider", provider)
+                        .tag("call", call)
+                        .tag("outcome", outcome.tag)
+                        .publishPercentileHistogram()
+                        .register(registry);
+            }
+            responseSize = DistributionSummary.builder("social.login.upstream.response.size")
+                    .description("Size of the provider responses, as received")
+                    .baseUnit("bytes")
+                    .tag("provider", provider)
+                    .tag("call", call)
+                    .register(registry);
+            hedges = Counter.builder("social.login.upstream.hedges")
+                    .description("Second requests sent because the first one was slower than usual")
+                    .tag("provider", provider)
+                    .tag("call", call)
+                    .register(registry);
+        }
+    }
+}
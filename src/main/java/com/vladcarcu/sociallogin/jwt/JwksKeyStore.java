@@ -0,0 +1,257 @@
+package com.vladcarcu.sociallogin.jwt;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vladcarcu.sociallogin.http.ProviderHttpClient;
+import com.vladcarcu.sociallogin.http.ProviderResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the signing keys published at a JWKS endpoint in memory, indexed by key id.
+ * The key set is cached for the Cache-Control max-age sent by the issuer and refreshed in the background
+ * before it expires, so that in steady state looking up a key never goes to the network.
+ */
+public class JwksKeyStore implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JwksKeyStore.class);
+
+    private static final Pattern MAX_AGE = Pattern.compile("max-age\\s*=\\s*(\\d+)");
+    private static final Duration DEFAULT_MAX_AGE = Duration.ofHours(1);
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(30);
+    // an unknown kid can be sent by anyone, so it may only trigger a new fetch this often
+    private static final Duration MIN_REFETCH_INTERVAL = Duration.ofSeconds(30);
+    private static final Map<String, String> CURVES = Map.of("P-256", "secp256r1", "P-384", "secp384r1", "P-521", "secp521r1");
+    // the background refresh starts when this fraction of the max-age has passed
+    private static final double REFRESH_AHEAD_RATIO = 0.8;
+
+    private final String jwksUri;
+    private final ProviderHttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicReference<CompletableFuture<KeySet>> inFlight = new AtomicReference<>();
+    private volatile KeySet keySet = KeySet.EMPTY;
+    // why the last fetch failed, until one succeeds; meanwhile only the scheduled retries reach the issuer
+    private volatile Throwable fetchFailure;
+    // the one pending background refresh, replaced whenever a fetch completes, whatever triggered it
+    private ScheduledFuture<?> scheduledRefresh;
+
+    public JwksKeyStore(String jwksUri, ProviderHttpClient httpClient, ObjectMapper objectMapper) {
+        this(jwksUri, httpClient, objectMapper, Clock.systemUTC());
+    }
+
+    JwksKeyStore(String jwksUri, ProviderHttpClient httpClient, ObjectMapper objectMapper, Clock clock) {
+        this.jwksUri = jwksUri;
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "jwks-refresh-" + httpClient.getProvider());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the key with the given id, or null if the issuer does not publish such a key.
+     */
+    public PublicKey getKey(String keyId) {
+        return getKeyAsync(keyId).join();
+    }
+
+    /**
+     * Completes immediately, unless no key set was fetched yet or it has expired, or the key id is unknown and the key set
+     * was not re-fetched recently. A null key may thus be one rotated in since the last fetch, which is not a reason
+     * to distrust the token for longer than that. While fetching fails, the last key set is served even once expired,
+     * and only the retries scheduled every 30 seconds reach the issuer; without any key set, lookups fail.
+     */
+    public CompletableFuture<PublicKey> getKeyAsync(String keyId) {
+        if (keyId == null) {
+            // no key is published without an id, so there is nothing to look up or fetch
+            return CompletableFuture.completedFuture(null);
+        }
+        var current = keySet;
+        var failure = fetchFailure;
+        if (failure != null) {
+            // an issuer that is down is not hammered by every login
+            return current == KeySet.EMPTY ? CompletableFuture.failedFuture(failure) : CompletableFuture.completedFuture(current.keys.get(keyId));
+        }
+        if (current.isExpired(clock.instant())) {
+            return refetch(current, keyId);
+        }
+        var key = current.keys.get(keyId);
+        if (key == null && current.fetchedAt.plus(MIN_REFETCH_INTERVAL).isBefore(clock.instant())) {
+            // the issuer may have rotated its keys before our cached set expired
+            return refetch(current, keyId);
+        }
+        return CompletableFuture.completedFuture(key);
+    }
+
+    /**
+     * Fetches the key set, sharing a single request between all concurrent callers.
+     */
+    public CompletableFuture<KeySet> refresh() {
+        var future = new CompletableFuture<KeySet>();
+        var existing = inFlight.compareAndExchange(null, future);
+        if (existing != null) {
+            return existing;
+        }
+        CompletableFuture<KeySet> fetch;
+        try {
+            fetch = fetch();
+        } catch (RuntimeException e) {
+            // e.g. a malformed jwks-uri; the future must still complete, or every lookup would wait on it
+            fetch = CompletableFuture.failedFuture(e);
+        }
+        fetch.whenComplete((fetched, e) -> {
+            inFlight.set(null);
+            if (e != null) {
+                LOGGER.warn("Could not fetch the signing keys from {}.", jwksUri, e);
+                fetchFailure = e;
+                scheduleRefresh(RETRY_DELAY);
+                future.completeExceptionally(e);
+            } else {
+                keySet = fetched;
+                fetchFailure = null;
+                scheduleRefresh(Duration.ofMillis((long) (fetched.maxAge.toMillis() * REFRESH_AHEAD_RATIO)));
+                future.complete(fetched);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private CompletableFuture<PublicKey> refetch(KeySet current, String keyId) {
+        var refreshed = refresh().thenApply(fetched -> fetched.keys.get(keyId));
+        // the keys last published still verify the tokens signed with them while the issuer is down
+        return current == KeySet.EMPTY ? refreshed : refreshed.exceptionally(e -> current.keys.get(keyId));
+    }
+
+    private synchronized void scheduleRefresh(Duration delay) {
+        if (scheduler.isShutdown()) {
+            return;
+        }
+        // a fetch triggered by an unknown kid or by the warm-up moves the next refresh instead of adding one
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+        }
+        scheduledRefresh = scheduler.schedule(this::refresh, delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private CompletableFuture<KeySet> fetch() {
+        var request = httpClient.newRequest(jwksUri)
+                .GET()
+                .build();
+        return httpClient.sendIdempotent("jwks", request)
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException(new StringBuilder()
+                                .append("Unexpected status ").append(response.statusCode())
+                                .append(" from ").append(jwksUri)
+                                .toString());
+                    }
+                    var fetchedAt = clock.instant();
+                    return new KeySet(parseKeys(response), fetchedAt, getMaxAge(response));
+                });
+    }
+
+    private Map<String, PublicKey> parseKeys(ProviderResponse response) {
+        try {
+            var keys = new HashMap<String, PublicKey>();
+            for (JsonNode jwk : objectMapper.readTree(response.bodyStream()).path("keys")) {
+                var keyId = jwk.path("kid").asText(null);
+                if (keyId == null || "enc".equals(jwk.path("use").asText())) {
+                    continue;
+                }
+                if ("RSA".equals(jwk.path("kty").asText())) {
+                    keys.put(keyId, toRsaKey(jwk));
+                } else if ("EC".equals(jwk.path("kty").asText()) && CURVES.containsKey(jwk.path("crv").asText())) {
+                    keys.put(keyId, toEcKey(jwk));
+                }
+            }
+            return keys;
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not parse the key set from " + jwksUri, e);
+        }
+    }
+
+    private static PublicKey toRsaKey(JsonNode jwk) throws Exception {
+        var modulus = new BigInteger(1, Base64.getUrlDecoder().decode(jwk.path("n").asText()));
+        var exponent = new BigInteger(1, Base64.getUrlDecoder().decode(jwk.path("e").asText()));
+        return KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(modulus, exponent));
+    }
+
+    private static PublicKey toEcKey(JsonNode jwk) throws Exception {
+        var parameters = AlgorithmParameters.getInstance("EC");
+        parameters.init(new ECGenParameterSpec(CURVES.get(jwk.path("crv").asText())));
+        var x = new BigInteger(1, Base64.getUrlDecoder().decode(jwk.path("x").asText()));
+        var y = new BigInteger(1, Base64.getUrlDecoder().decode(jwk.path("y").asText()));
+        var spec = new ECPublicKeySpec(new ECPoint(x, y), parameters.getParameterSpec(ECParameterSpec.class));
+        return KeyFactory.getInstance("EC").generatePublic(spec);
+    }
+
+    private static Duration getMaxAge(ProviderResponse response) {
+        var maxAge = response.headers().firstValue("Cache-Control")
+                .map(MAX_AGE::matcher)
+                .filter(Matcher::find)
+                .map(matcher -> Long.parseLong(matcher.group(1)))
+                .orElse(DEFAULT_MAX_AGE.getSeconds());
+        // the response may have already spent part of its lifetime in an intermediate cache
+        var age = response.headers().firstValueAsLong("Age").orElse(0);
+        return Duration.ofSeconds(Math.max(maxAge - age, MIN_REFETCH_INTERVAL.getSeconds()));
+    }
+
+    public static final class KeySet {
+
+        private static final KeySet EMPTY = new KeySet(Map.of(), Instant.EPOCH, Duration.ZERO);
+
+        private final Map<String, PublicKey> keys;
+        private final Instant fetchedAt;
+        private final Duration maxAge;
+
+        private KeySet(Map<String, PublicKey> keys, Instant fetchedAt, Duration maxAge) {
+            this.keys = keys;
+            this.fetchedAt = fetchedAt;
+            this.maxAge = maxAge;
+        }
+
+        public Map<String, PublicKey> getKeys() {
+            return keys;
+        }
+
+        private boolean isExpired(Instant now) {
+            return !fetchedAt.plus(maxAge).isAfter(now);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.vladcarcu.sociallogin.jwt;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * A compact-serialized JSON Web Token, split and decoded but not verified.
+ */
+public final class Jwt {
+
+    private final JsonNode header;
+    private final JsonNode payload;
+    private final byte[] signingInput;
+    private final byte[] signature;
+
+    private Jwt(JsonNode header, JsonNode payload, byte[] signingInput, byte[] signature) {
+        this.header = header;
+        this.payload = payload;
+        this.signingInput = signingInput;
+        this.signature = signature;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token is not made of three base64url encoded segments holding JSON
+     */
+    public static Jwt parse(String token, ObjectMapper objectMapper) {
+        var firstDot = token.indexOf('.');
+        var secondDot = token.indexOf('.', firstDot + 1);
+        if (firstDot < 0 || secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+            throw new IllegalArgumentException("A JWT must have exactly three segments.");
+        }
+        try {
+            var decoder = Base64.getUrlDecoder();
+            var header = objectMapper.readTree(decoder.decode(token.substring(0, firstDot)));
+            var payload = objectMapper.readTree(decoder.decode(token.substring(firstDot + 1, secondDot)));
+            var signature = decoder.decode(token.substring(secondDot + 1));
+            if (!header.isObject() || !payload.isObject()) {
+                throw new IllegalArgumentException("The JWT header and payload must be JSON objects.");
+            }
+            return new Jwt(header, payload, token.substring(0, secondDot).getBytes(StandardCharsets.US_ASCII), signature);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("The JWT segments are not valid JSON.", e);
+        }
+    }
+
+    public String getAlgorithm() {
+        return header.path("alg").asText(null);
+    }
+
+    public String getKeyId() {
+        return header.path("kid").asText(null);
+    }
+
+    public String getIssuer() {
+        return payload.path("iss").asText(null);
+    }
+
+    public String getSubject() {
+        return payload.path("sub").asText(null);
+    }
+
+    /**
+     * The aud claim may be either a single string or an array of strings.
+     */
+    public List<String> getAudiences() {
+        var audience = payload.path("aud");
+        var audiences = new ArrayList<String>();
+        if (audience.isTextual()) {
+            audiences.add(audience.asText());
+        } else if (audience.isArray()) {
+            audience.forEach(value -> audiences.add(value.asText()));
+        }
+        return audiences;
+    }
+
+    public Long getExpiresAt() {
+        return getNumericDate("exp");
+    }
+
+    public Long getNotBefore() {
+        return getNumericDate("nbf");
+    }
+
+    public Long getIssuedAt() {
+        return getNumericDate("iat");
+    }
+
+    public JsonNode getPayload() {
+        return payload;
+    }
+
+    byte[] getSigningInput() {
+        return signingInput;
+    }
+
+    byte[] getSignature() {
+        return signature;
+    }
+
+    private Long getNumericDate(String claim) {
+        var value = payload.path(claim);
+        return value.isNumber() ? value.asLong() : null;
+    }
+}
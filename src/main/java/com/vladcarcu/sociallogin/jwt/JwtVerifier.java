@@ -0,0 +1,134 @@
+package com.vladcarcu.sociallogin.jwt;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vladcarcu.sociallogin.SocialLoginAuthenticationToken;
+import com.vladcarcu.sociallogin.ValidationResult;
+
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Verifies ID tokens entirely in process: the claims against the expected issuer and audiences, and the
+ * signature against the issuer's key set, which is held in memory by a {@link JwksKeyStore}.
+ */
+public class JwtVerifier {
+
+    private static final Map<String, String> SIGNATURE_ALGORITHMS = Map.of(
+            "RS256", "SHA256withRSA",
+            "RS384", "SHA384withRSA",
+            "RS512", "SHA512withRSA",
+            // JWS carries ECDSA signatures as r || s rather than DER
+            "ES256", "SHA256withECDSAinP1363Format",
+            "ES384", "SHA384withECDSAinP1363Format",
+            "ES512", "SHA512withECDSAinP1363Format");
+    // the size in bits of the curve each ECDSA algorithm is defined on: P-256, P-384 and P-521
+    private static final Map<String, Integer> CURVE_SIZES = Map.of("ES256", 256, "ES384", 384, "ES512", 521);
+
+    private final String issuer;
+    private final Collection<String> audiences;
+    private final Set<String> algorithms;
+    private final Duration clockSkew;
+    private final JwksKeyStore keyStore;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+
+    public JwtVerifier(String issuer, Collection<String> audiences, Set<String> algorithms, Duration clockSkew, JwksKeyStore keyStore, ObjectMapper objectMapper) {
+        this(issuer, audiences, algorithms, clockSkew, keyStore, objectMapper, Clock.systemUTC());
+    }
+
+    JwtVerifier(String issuer, Collection<String> audiences, Set<String> algorithms, Duration clockSkew, JwksKeyStore keyStore, ObjectMapper objectMapper, Clock clock) {
+        for (var algorithm : algorithms) {
+            if (!SIGNATURE_ALGORITHMS.containsKey(algorithm)) {
+                throw new IllegalArgumentException("Unsupported JWT algorithm: " + algorithm);
+            }
+        }
+        this.issuer = issuer;
+        this.audiences = audiences;
+        this.algorithms = algorithms;
+        this.clockSkew = clockSkew;
+        this.keyStore = keyStore;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+    }
+
+    /**
+     * Completes with the user the token was issued to, or with the reason it is not acceptable.
+     */
+    public CompletableFuture<ValidationResult> verify(String token) {
+        Jwt jwt;
+        try {
+            jwt = Jwt.parse(token, objectMapper);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ValidationResult.MALFORMED);
+        }
+        // the claims are checked first, as they are cheaper than the signature
+        var rejection = verifyClaims(jwt);
+        if (rejection != null) {
+            return CompletableFuture.completedFuture(rejection);
+        }
+        return keyStore.getKeyAsync(jwt.getKeyId()).thenApply(key -> {
+            if (key == null) {
+                return ValidationResult.UNKNOWN_KEY;
+            }
+            if (!verifySignature(jwt, key)) {
+                return ValidationResult.INVALID_SIGNATURE;
+            }
+            var authToken = new SocialLoginAuthenticationToken(jwt.getSubject(), Instant.ofEpochSecond(jwt.getExpiresAt()));
+            authToken.setAuthenticated(true);
+            return ValidationResult.success(authToken);
+        });
+    }
+
+    private ValidationResult verifyClaims(Jwt jwt) {
+        // the allowed algorithms are an immutable set, which cannot even be asked about a missing one
+        if (jwt.getAlgorithm() == null || !algorithms.contains(jwt.getAlgorithm())) {
+            return ValidationResult.INVALID_SIGNATURE;
+        }
+        if (!issuer.equals(jwt.getIssuer()) || jwt.getAudiences().stream().noneMatch(audiences::contains)) {
+            return ValidationResult.INVALID_CLAIMS;
+        }
+        // without a subject there is no one to sign in
+        if (jwt.getSubject() == null || jwt.getSubject().isBlank()) {
+            return ValidationResult.INVALID_CLAIMS;
+        }
+        var now = clock.instant().getEpochSecond();
+        var skew = clockSkew.getSeconds();
+        if (jwt.getExpiresAt() == null || jwt.getExpiresAt() + skew <= now) {
+            return ValidationResult.EXPIRED;
+        }
+        if ((jwt.getNotBefore() != null && jwt.getNotBefore() - skew > now) || (jwt.getIssuedAt() != null && jwt.getIssuedAt() - skew > now)) {
+            return ValidationResult.INVALID_CLAIMS;
+        }
+        return null;
+    }
+
+    private static boolean verifySignature(Jwt jwt, PublicKey key) {
+        var algorithm = jwt.getAlgorithm();
+        // a key may only be used with the family of algorithms it was made for
+        if (algorithm.startsWith("RS") != key instanceof RSAPublicKey || algorithm.startsWith("ES") != key instanceof ECPublicKey) {
+            return false;
+        }
+        // and an EC key only with the algorithm of its own curve
+        if (key instanceof ECPublicKey && ((ECPublicKey) key).getParams().getCurve().getField().getFieldSize() != CURVE_SIZES.get(algorithm)) {
+            return false;
+        }
+        try {
+            var signature = Signature.getInstance(SIGNATURE_ALGORITHMS.get(algorithm));
+            signature.initVerify(key);
+            signature.update(jwt.getSigningInput());
+            return signature.verify(jwt.getSignature());
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.vladcarcu.sociallogin.resilience;
+
+import com.vladcarcu.sociallogin.Futures;
+import com.vladcarcu.sociallogin.TemporarilyUnavailableException;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.common.exceptions.OAuth2Exception;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Wraps the validations of one provider in a bulkhead, which caps how many of them may be in flight,
+ * and a circuit breaker, which fails them fast while the provider is unhealthy. This way one slow
+ * provider cannot take all the threads of the token endpoint.
+ */
+public class AdapterGuard {
+
+    private final String type;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker circuitBreaker;
+
+    public AdapterGuard(String type, BulkheadSettings bulkheadSettings, CircuitBreakerSettings circuitBreakerSettings) {
+        this.type = type;
+        this.bulkhead = bulkheadSettings.isEnabled() ? new Semaphore(bulkheadSettings.getMaxConcurrent()) : null;
+        this.circuitBreaker = circuitBreakerSettings.isEnabled() ? new CircuitBreaker(circuitBreakerSettings) : null;
+    }
+
+    public <T> CompletionStage<T> call(Supplier<? extends CompletionStage<T>> call) {
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(new ValidationRejectedException("Validation is temporarily unavailable for type: " + type));
+        }
+        if (bulkhead != null && !bulkhead.tryAcquire()) {
+            if (circuitBreaker != null) {
+                // a half-open breaker only lets a few probes through, which must not be spent on calls never made
+                circuitBreaker.release();
+            }
+            return CompletableFuture.failedFuture(new ValidationRejectedException("Too many concurrent validations for type: " + type));
+        }
+        var start = System.nanoTime();
+        CompletionStage<T> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        return result.whenComplete((value, e) -> {
+            releaseBulkhead();
+            if (circuitBreaker != null) {
+                circuitBreaker.onResult(System.nanoTime() - start, e != null && isFailure(Futures.unwrap(e)));
+            }
+        });
+    }
+
+    public CircuitBreaker.State getCircuitBreakerState() {
+        return circuitBreaker != null ? circuitBreaker.getState() : CircuitBreaker.State.CLOSED;
+    }
+
+    public int getAvailableConcurrentCalls() {
+        return bulkhead != null ? bulkhead.availablePermits() : Integer.MAX_VALUE;
+    }
+
+    private void releaseBulkhead() {
+        if (bulkhead != null) {
+            bulkhead.release();
+        }
+    }
+
+    private static boolean isFailure(Throwable e) {
+        // a rejected token says nothing about the health of the provider, but a provider too slow or unavailable to answer does
+        return e instanceof TemporarilyUnavailableException || !(e instanceof AuthenticationException || e instanceof OAuth2Exception);
+    }
+}
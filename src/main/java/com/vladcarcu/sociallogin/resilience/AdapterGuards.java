@@ -0,0 +1,27 @@
+package com.vladcarcu.sociallogin.resilience;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+public class AdapterGuards {
+
+    private final Map<String, AdapterGuard> guards;
+
+    public AdapterGuards(Set<String> types, Function<String, BulkheadSettings> bulkheadSettings, Function<String, CircuitBreakerSettings> circuitBreakerSettings) {
+        var byType = new HashMap<String, AdapterGuard>();
+        for (var type : types) {
+            byType.put(type, new AdapterGuard(type, bulkheadSettings.apply(type), circuitBreakerSettings.apply(type)));
+        }
+        this.guards = Map.copyOf(byType);
+    }
+
+    public AdapterGuard get(String type) {
+        return guards.get(type);
+    }
+
+    public Map<String, AdapterGuard> getGuards() {
+        return guards;
+    }
+}
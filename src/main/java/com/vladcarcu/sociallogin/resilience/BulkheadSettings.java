@@ -0,0 +1,27 @@
+package com.vladcarcu.sociallogin.resilience;
+
+/**
+ * Per-provider settings, bound from <code>social.login.&lt;type&gt;.bulkhead.*</code>.
+ */
+public class BulkheadSettings {
+
+    private boolean enabled = true;
+
+    private int maxConcurrent = 100;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+}
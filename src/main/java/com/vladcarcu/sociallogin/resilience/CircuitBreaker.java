@@ -0,0 +1,132 @@
+package com.vladcarcu.sociallogin.resilience;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calls to a provider once too many of its recent calls failed or were slow, and lets a few
+ * probe calls through after a while to find out whether it recovered.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final byte SUCCESS = 0;
+    private static final byte FAILURE = 1;
+    private static final byte SLOW = 2;
+
+    private final CircuitBreakerSettings settings;
+    private final LongSupplier nanoTime;
+
+    // outcomes of the most recent calls, as a ring buffer
+    private final byte[] window;
+    private int position;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenStarted;
+    private int halfOpenSucceeded;
+
+    public CircuitBreaker(CircuitBreakerSettings settings) {
+        this(settings, System::nanoTime);
+    }
+
+    CircuitBreaker(CircuitBreakerSettings settings, LongSupplier nanoTime) {
+        this.settings = settings;
+        this.nanoTime = nanoTime;
+        this.window = new byte[settings.getWindowSize()];
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (nanoTime.getAsLong() - openedAt < settings.getWaitDurationInOpenState().toNanos()) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            halfOpenStarted = 0;
+            halfOpenSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenStarted >= settings.getPermittedCallsInHalfOpenState()) {
+                return false;
+            }
+            halfOpenStarted++;
+        }
+        return true;
+    }
+
+    /**
+     * Gives back a permission that was acquired for a call which was then not made.
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && halfOpenStarted > 0) {
+            halfOpenStarted--;
+        }
+    }
+
+    public synchronized void onResult(long durationNanos, boolean failed) {
+        var slow = durationNanos > settings.getSlowCallDuration().toNanos();
+        if (state == State.HALF_OPEN) {
+            if (failed || slow) {
+                open();
+            } else if (++halfOpenSucceeded >= settings.getPermittedCallsInHalfOpenState()) {
+                close();
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // a call started before the breaker opened
+            return;
+        }
+        record(failed ? FAILURE : slow ? SLOW : SUCCESS);
+        if (recorded >= settings.getMinimumCalls()
+                && (failures * 100 >= settings.getFailureRateThreshold() * recorded
+                || slowCalls * 100 >= settings.getSlowCallRateThreshold() * recorded)) {
+            open();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(byte outcome) {
+        if (recorded == window.length) {
+            forget(window[position]);
+        } else {
+            recorded++;
+        }
+        window[position] = outcome;
+        if (outcome == FAILURE) {
+            failures++;
+        } else if (outcome == SLOW) {
+            slowCalls++;
+        }
+        position = (position + 1) % window.length;
+    }
+
+    private void forget(byte outcome) {
+        if (outcome == FAILURE) {
+            failures--;
+        } else if (outcome == SLOW) {
+            slowCalls--;
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoTime.getAsLong();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        position = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+}
@@ -0,0 +1,91 @@
+package com.vladcarcu.sociallogin.resilience;
+
+import java.time.Duration;
+
+/**
+ * Per-provider settings, bound from <code>social.login.&lt;type&gt;.circuit-breaker.*</code>.
+ */
+public class CircuitBreakerSettings {
+
+    private boolean enabled = true;
+
+    // the number of most recent validations the rates are computed over
+    private int windowSize = 50;
+
+    // the rates are only looked at once the window holds at least this many validations
+    private int minimumCalls = 20;
+
+    private int failureRateThreshold = 50;
+
+    private Duration slowCallDuration = Duration.ofSeconds(5);
+
+    private int slowCallRateThreshold = 80;
+
+    private Duration waitDurationInOpenState = Duration.ofSeconds(30);
+
+    private int permittedCallsInHalfOpenState = 5;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    public void setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = minimumCalls;
+    }
+
+    public int getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public void setFailureRateThreshold(int failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    public Duration getSlowCallDuration() {
+        return slowCallDuration;
+    }
+
+    public void setSlowCallDuration(Duration slowCallDuration) {
+        this.slowCallDuration = slowCallDuration;
+    }
+
+    public int getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    public void setSlowCallRateThreshold(int slowCallRateThreshold) {
+        this.slowCallRateThreshold = slowCallRateThreshold;
+    }
+
+    public Duration getWaitDurationInOpenState() {
+        return waitDurationInOpenState;
+    }
+
+    public void setWaitDurationInOpenState(Duration waitDurationInOpenState) {
+        this.waitDurationInOpenState = waitDurationInOpenState;
+    }
+
+    public int getPermittedCallsInHalfOpenState() {
+        return permittedCallsInHalfOpenState;
+    }
+
+    public void setPermittedCallsInHalfOpenState(int permittedCallsInHalfOpenState) {
+        this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+    }
+}
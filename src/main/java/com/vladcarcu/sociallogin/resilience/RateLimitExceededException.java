@@ -0,0 +1,24 @@
+package com.vladcarcu.sociallogin.resilience;
+
+import org.springframework.security.oauth2.common.exceptions.OAuth2Exception;
+
+/**
+ * Thrown instead of validating the token when the client or the provider has used up its rate limit.
+ * The token endpoint answers it with a 429.
+ */
+public class RateLimitExceededException extends OAuth2Exception {
+
+    public RateLimitExceededException(String msg) {
+        super(msg);
+    }
+
+    @Override
+    public String getOAuth2ErrorCode() {
+        return "too_many_requests";
+    }
+
+    @Override
+    public int getHttpErrorCode() {
+        return 429;
+    }
+}
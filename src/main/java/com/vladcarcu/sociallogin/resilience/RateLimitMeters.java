@@ -0,0 +1,39 @@
+package com.vladcarcu.sociallogin.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts the decisions of the {@link RateLimiters} once Micrometer binds a registry, registering the counters
+ * of a client or provider the first time it is decided on.
+ */
+public class RateLimitMeters implements MeterBinder {
+
+    private final RateLimiters rateLimiters;
+
+    public RateLimitMeters(RateLimiters rateLimiters) {
+        this.rateLimiters = rateLimiters;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        // indexed by whether the request was admitted
+        var counters = new ConcurrentHashMap<String, Counter[]>();
+        rateLimiters.setListener((limit, name, admitted) -> counters.computeIfAbsent(limit + ":" + name, key -> new Counter[]{
+                register(registry, limit, name, "rejected"),
+                register(registry, limit, name, "admitted")})[admitted ? 1 : 0].increment());
+    }
+
+    private static Counter register(MeterRegistry registry, String limit, String name, String outcome) {
+        return Counter.builder("social.login.rate.limit")
+                .description("Social grants let through or turned away by the rate limits")
+                .tag("limit", limit)
+                .tag("name", name)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
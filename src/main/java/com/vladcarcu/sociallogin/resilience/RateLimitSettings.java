@@ -0,0 +1,40 @@
+package com.vladcarcu.sociallogin.resilience;
+
+/**
+ * Token bucket settings, bound from <code>social.login.client-rate-limit.*</code> for every OAuth client
+ * and from <code>social.login.&lt;type&gt;.rate-limit.*</code> for every provider.
+ */
+public class RateLimitSettings {
+
+    private boolean enabled;
+
+    // tokens earned per second
+    private double rate = 50;
+
+    // the most tokens that can be saved up, i.e. the largest burst let through at once
+    private int burst = 100;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public void setBurst(int burst) {
+        this.burst = burst;
+    }
+}
@@ -0,0 +1,75 @@
+package com.vladcarcu.sociallogin.resilience;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Admission control for social grants: a token bucket per OAuth client, so that one misbehaving client cannot
+ * use up the provider quotas of all the others, and one per provider, kept under the provider's app-level limit.
+ * Whenever a meter registry is bound, every decision is counted by {@link RateLimitMeters}, so that the limits can be tuned.
+ */
+public class RateLimiters {
+
+    private static final String CLIENT_LIMIT = "client";
+    private static final String PROVIDER_LIMIT = "provider";
+
+    /**
+     * Told about every decision, with the limit (<code>client</code> or <code>provider</code>) and the client id or type.
+     */
+    public interface DecisionListener {
+
+        void onDecision(String limit, String name, boolean admitted);
+    }
+
+    private final RateLimitSettings clientSettings;
+    // only the clients that sent a social grant get a bucket; there are as many as the registered clients at most
+    private final Map<String, TokenBucket> clients = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> providers;
+
+    private volatile DecisionListener listener;
+
+    public RateLimiters(Set<String> types, RateLimitSettings clientSettings, Function<String, RateLimitSettings> providerSettings) {
+        this.clientSettings = clientSettings;
+        var byType = new HashMap<String, TokenBucket>();
+        for (var type : types) {
+            var settings = providerSettings.apply(type);
+            if (settings.isEnabled()) {
+                byType.put(type, new TokenBucket(settings));
+            }
+        }
+        this.providers = Map.copyOf(byType);
+    }
+
+    public void setListener(DecisionListener listener) {
+        this.listener = listener;
+    }
+
+    public boolean tryAcquireForClient(String clientId) {
+        if (!clientSettings.isEnabled()) {
+            return true;
+        }
+        return count(CLIENT_LIMIT, clientId, clients.computeIfAbsent(clientId, key -> new TokenBucket(clientSettings)).tryAcquire());
+    }
+
+    /**
+     * Meant to be called right before the provider is, so that cached and shared validations don't use up its quota.
+     */
+    public boolean tryAcquireForProvider(String type) {
+        var bucket = providers.get(type);
+        if (bucket == null) {
+            return true;
+        }
+        return count(PROVIDER_LIMIT, type, bucket.tryAcquire());
+    }
+
+    private boolean count(String limit, String name, boolean admitted) {
+        var currentListener = listener;
+        if (currentListener != null) {
+            currentListener.onDecision(limit, name, admitted);
+        }
+        return admitted;
+    }
+}
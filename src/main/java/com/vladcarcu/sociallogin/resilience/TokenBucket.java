@@ -0,0 +1,42 @@
+package com.vladcarcu.sociallogin.resilience;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket kept as a single timestamp: the moment it would be empty if every token taken so far had been
+ * earned in turn (the generic cell rate algorithm). Taking a token is one compare-and-set, and no thread refills it.
+ */
+public class TokenBucket {
+
+    private final long intervalNanos;
+    private final long capacityNanos;
+    private final AtomicLong emptyUntil;
+    private final LongSupplier nanoTime;
+
+    public TokenBucket(RateLimitSettings settings) {
+        this(settings, System::nanoTime);
+    }
+
+    TokenBucket(RateLimitSettings settings, LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / settings.getRate()));
+        this.capacityNanos = intervalNanos * Math.max(1, settings.getBurst());
+        // starts full
+        this.emptyUntil = new AtomicLong(nanoTime.getAsLong());
+    }
+
+    public boolean tryAcquire() {
+        var now = nanoTime.getAsLong();
+        while (true) {
+            var current = emptyUntil.get();
+            var next = (current - now > 0 ? current : now) + intervalNanos;
+            if (next - now > capacityNanos) {
+                return false;
+            }
+            if (emptyUntil.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+}
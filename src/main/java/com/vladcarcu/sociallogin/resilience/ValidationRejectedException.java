@@ -0,0 +1,13 @@
+package com.vladcarcu.sociallogin.resilience;
+
+import com.vladcarcu.sociallogin.TemporarilyUnavailableException;
+
+/**
+ * Thrown instead of calling the adapter, when the bulkhead is full or the circuit breaker is open.
+ */
+public class ValidationRejectedException extends TemporarilyUnavailableException {
+
+    public ValidationRejectedException(String msg) {
+        super(msg);
+    }
+}
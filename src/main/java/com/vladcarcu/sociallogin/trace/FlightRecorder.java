@@ -0,0 +1,132 @@
+package com.vladcarcu.sociallogin.trace;
+
+import com.vladcarcu.sociallogin.cache.TokenKey;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the traces of the most recent social grants in a ring buffer, and those of the slowest ones in a small
+ * fixed set of slots. Both are updated without locks, so recording never makes a grant wait for another.
+ */
+public class FlightRecorder {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    // bytes of the token digest shown in the traces
+    private static final int FINGERPRINT_BYTES = 6;
+
+    private final AtomicReferenceArray<GrantTrace> recent;
+    private final AtomicLong next = new AtomicLong();
+
+    private final AtomicReferenceArray<GrantTrace> slowest;
+    // the fastest of the slowest grants, once all the slots are taken; anything faster is not even compared
+    private volatile long slowestThreshold;
+
+    public FlightRecorder(FlightRecorderSettings settings) {
+        this.recent = new AtomicReferenceArray<>(settings.getRecent());
+        this.slowest = new AtomicReferenceArray<>(settings.getSlowest());
+        GrantTrace.enable();
+    }
+
+    public GrantTrace start(String type, String client, String token) {
+        return new GrantTrace(type, client, token != null ? fingerprint(type, token) : null);
+    }
+
+    public void record(GrantTrace trace, String outcome) {
+        trace.finish(outcome);
+        if (recent.length() > 0) {
+            recent.set((int) (next.getAndIncrement() % recent.length()), trace);
+        }
+        if (trace.getDurationNanos() > slowestThreshold) {
+            recordSlow(trace);
+        }
+    }
+
+    /**
+     * The latest grants, newest first.
+     */
+    public List<GrantTrace> getRecent() {
+        var traces = snapshot(recent);
+        traces.sort(Comparator.comparingLong(GrantTrace::getStartNanos).reversed());
+        return traces;
+    }
+
+    /**
+     * The slowest grants, slowest first.
+     */
+    public List<GrantTrace> getSlowest() {
+        var traces = snapshot(slowest);
+        traces.sort(Comparator.comparingLong(GrantTrace::getDurationNanos).reversed());
+        return traces;
+    }
+
+    public void resetSlowest() {
+        for (var i = 0; i < slowest.length(); i++) {
+            slowest.set(i, null);
+        }
+        slowestThreshold = 0;
+    }
+
+    private void recordSlow(GrantTrace trace) {
+        while (true) {
+            // replace the fastest of the kept traces, or a free slot
+            var index = -1;
+            GrantTrace fastest = null;
+            for (var i = 0; i < slowest.length(); i++) {
+                var kept = slowest.get(i);
+                if (kept == null) {
+                    index = i;
+                    fastest = null;
+                    break;
+                }
+                if (fastest == null || kept.getDurationNanos() < fastest.getDurationNanos()) {
+                    index = i;
+                    fastest = kept;
+                }
+            }
+            if (index < 0 || (fastest != null && fastest.getDurationNanos() >= trace.getDurationNanos())) {
+                return;
+            }
+            if (slowest.compareAndSet(index, fastest, trace)) {
+                updateThreshold();
+                return;
+            }
+        }
+    }
+
+    private void updateThreshold() {
+        var threshold = Long.MAX_VALUE;
+        for (var i = 0; i < slowest.length(); i++) {
+            var kept = slowest.get(i);
+            if (kept == null) {
+                slowestThreshold = 0;
+                return;
+            }
+            threshold = Math.min(threshold, kept.getDurationNanos());
+        }
+        slowestThreshold = threshold;
+    }
+
+    private static List<GrantTrace> snapshot(AtomicReferenceArray<GrantTrace> traces) {
+        var copy = new ArrayList<GrantTrace>(traces.length());
+        for (var i = 0; i < traces.length(); i++) {
+            var trace = traces.get(i);
+            if (trace != null) {
+                copy.add(trace);
+            }
+        }
+        return copy;
+    }
+
+    private static String fingerprint(String type, String token) {
+        var digest = TokenKey.of(type, token).getDigest();
+        var fingerprint = new StringBuilder("sha256:");
+        for (var i = 0; i < FINGERPRINT_BYTES; i++) {
+            fingerprint.append(HEX[(digest[i] >> 4) & 0xf]).append(HEX[digest[i] & 0xf]);
+        }
+        return fingerprint.toString();
+    }
+}
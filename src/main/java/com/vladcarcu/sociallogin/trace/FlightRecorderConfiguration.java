@@ -0,0 +1,32 @@
+package com.vladcarcu.sociallogin.trace;
+
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+@Configuration
+@ConditionalOnProperty("social.login.flight-recorder.enabled")
+public class FlightRecorderConfiguration {
+
+    @Bean
+    public static FlightRecorder flightRecorder(Environment environment) {
+        return new FlightRecorder(Binder.get(environment).bind("social.login.flight-recorder", FlightRecorderSettings.class)
+                .orElseGet(FlightRecorderSettings::new));
+    }
+
+    @Configuration
+    @ConditionalOnClass(name = {"org.springframework.boot.actuate.endpoint.annotation.Endpoint",
+            "org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint"})
+    static class EndpointConfiguration {
+
+        @Bean
+        @ConditionalOnAvailableEndpoint
+        public SocialGrantsEndpoint socialGrantsEndpoint(FlightRecorder flightRecorder) {
+            return new SocialGrantsEndpoint(flightRecorder);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.vladcarcu.sociallogin.trace;
+
+/**
+ * Bound from <code>social.login.flight-recorder.*</code>.
+ */
+public class FlightRecorderSettings {
+
+    private boolean enabled;
+
+    // how many of the latest grants are kept
+    private int recent = 100;
+
+    // how many of the slowest grants are kept, since startup
+    private int slowest = 20;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getRecent() {
+        return recent;
+    }
+
+    public void setRecent(int recent) {
+        this.recent = recent;
+    }
+
+    public int getSlowest() {
+        return slowest;
+    }
+
+    public void setSlowest(int slowest) {
+        this.slowest = slowest;
+    }
+}
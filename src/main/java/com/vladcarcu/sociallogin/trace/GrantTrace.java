@@ -0,0 +1,181 @@
+package com.vladcarcu.sociallogin.trace;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The timing breakdown of a single social grant. The stages are added by whatever thread runs them:
+ * the trace is attached to the request thread, and the provider clients carry it over to the threads
+ * that complete their calls. Once recorded the trace is frozen: the hedges that lost and the auto-detected
+ * candidates that were cancelled may still be running, but what they add afterwards is dropped.
+ */
+public class GrantTrace {
+
+    private static final ThreadLocal<GrantTrace> CURRENT = new ThreadLocal<>();
+    private static final int MAX_STAGES = 16;
+    // fills the slots that were taken but not yet written when the trace was frozen
+    private static final Stage DROPPED = new Stage(null, 0, 0);
+
+    // set once a recorder exists, so that without one looking up the current trace is a volatile read
+    private static volatile boolean enabled;
+
+    private final String type;
+    private final String client;
+    private final String token;
+    private final Instant startedAt = Instant.now();
+    private final long startNanos = System.nanoTime();
+
+    // written and read by different threads, so published through the array rather than plain fields
+    private final AtomicReferenceArray<Stage> stages = new AtomicReferenceArray<>(MAX_STAGES);
+    private final AtomicInteger stageCount = new AtomicInteger();
+
+    private volatile long durationNanos;
+    private volatile String outcome;
+
+    GrantTrace(String type, String client, String token) {
+        this.type = type;
+        this.client = client;
+        this.token = token;
+    }
+
+    /**
+     * The trace of the grant being handled by this thread, or null.
+     */
+    public static GrantTrace current() {
+        return enabled ? CURRENT.get() : null;
+    }
+
+    /**
+     * Makes the trace current on this thread and returns the one it replaces, to be given back to {@link #restore}.
+     */
+    public static GrantTrace attach(GrantTrace trace) {
+        var previous = CURRENT.get();
+        CURRENT.set(trace);
+        return previous;
+    }
+
+    public static void restore(GrantTrace previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * Adds a stage which started at the given {@link System#nanoTime()} and ended now.
+     * Stages past the first few, and those added once the trace was recorded, are dropped.
+     */
+    public void addStage(String name, long startNanos) {
+        var end = System.nanoTime();
+        var index = stageCount.getAndIncrement();
+        if (index < MAX_STAGES) {
+            // loses to the freeze if it got to the slot first
+            stages.compareAndSet(index, null, new Stage(name, toMillis(startNanos - this.startNanos), toMillis(end - startNanos)));
+        }
+    }
+
+    /**
+     * The {@link System#nanoTime()} at which the grant started.
+     */
+    @JsonIgnore
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    void finish(String outcome) {
+        this.durationNanos = System.nanoTime() - startNanos;
+        // no slot can be taken from now on, and those taken but not written yet are closed
+        var count = Math.min(stageCount.getAndSet(MAX_STAGES), MAX_STAGES);
+        for (var i = 0; i < count; i++) {
+            stages.compareAndSet(i, null, DROPPED);
+        }
+        this.outcome = outcome;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getClient() {
+        return client;
+    }
+
+    /**
+     * A short fingerprint of the provider token, never the token itself.
+     */
+    public String getToken() {
+        return token;
+    }
+
+    public String getStartedAt() {
+        return startedAt.toString();
+    }
+
+    public double getDurationMillis() {
+        return toMillis(durationNanos);
+    }
+
+    long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public String getOutcome() {
+        return outcome;
+    }
+
+    public List<Stage> getStages() {
+        var count = Math.min(stageCount.get(), MAX_STAGES);
+        var added = new ArrayList<Stage>(count);
+        for (var i = 0; i < count; i++) {
+            var stage = stages.get(i);
+            // skips the stages still being added and those dropped by the freeze
+            if (stage != null && stage != DROPPED) {
+                added.add(stage);
+            }
+        }
+        return added;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public static final class Stage {
+
+        private final String name;
+        private final double offsetMillis;
+        private final double durationMillis;
+
+        private Stage(String name, double offsetMillis, double durationMillis) {
+            this.name = name;
+            this.offsetMillis = offsetMillis;
+            this.durationMillis = durationMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * When the stage started, from the start of the grant.
+         */
+        public double getOffsetMillis() {
+            return offsetMillis;
+        }
+
+        public double getDurationMillis() {
+            return durationMillis;
+        }
+    }
+}
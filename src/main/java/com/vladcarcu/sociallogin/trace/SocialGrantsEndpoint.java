@@ -0,0 +1,33 @@
+package com.vladcarcu.sociallogin.trace;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exposes the flight recorder as <code>/actuator/socialgrants</code>. Deleting it forgets the slowest grants seen so far.
+ */
+@Endpoint(id = "socialgrants")
+public class SocialGrantsEndpoint {
+
+    private final FlightRecorder flightRecorder;
+
+    public SocialGrantsEndpoint(FlightRecorder flightRecorder) {
+        this.flightRecorder = flightRecorder;
+    }
+
+    @ReadOperation
+    public Map<String, List<GrantTrace>> grants() {
+        return Map.of(
+                "slowest", flightRecorder.getSlowest(),
+                "recent", flightRecorder.getRecent());
+    }
+
+    @DeleteOperation
+    public void resetSlowest() {
+        flightRecorder.resetSlowest();
+    }
+}
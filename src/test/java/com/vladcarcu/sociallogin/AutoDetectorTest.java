@@ -0,0 +1,282 @@
+package com.vladcarcu.sociallogin;
+
+import com.vladcarcu.sociallogin.resilience.ValidationRejectedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AutoDetectorTest {
+
+    private AutoDetector autoDetector;
+
+    @AfterEach
+    void tearDown() {
+        if (autoDetector != null) {
+            autoDetector.close();
+        }
+    }
+
+    @Test
+    void picksTheTypesThatMayAcceptTheToken() {
+        autoDetector = autoDetector(4, 10);
+
+        assertThat(autoDetector.getCandidates("eyJhbGciOiJSUzI1NiJ9.e30.c2ln")).containsExactlyInAnyOrder("google", "oidc");
+        assertThat(autoDetector.getCandidates("EAAGm0PX4ZCpsBAO")).containsExactly("facebook");
+    }
+
+    @Test
+    void validatesALoneCandidateOnTheCallingThread() {
+        autoDetector = autoDetector(4, 10);
+        var thread = new CompletableFuture<Thread>();
+
+        var result = autoDetector.race(List.of("google"), type -> {
+            thread.complete(Thread.currentThread());
+            return CompletableFuture.completedFuture(success(type));
+        });
+
+        assertThat(result.join().getType()).isEqualTo("google");
+        assertThat(result.join().getResult().getAuthenticationToken().getPrincipal()).isEqualTo("google");
+        assertThat(thread.join()).isSameAs(Thread.currentThread());
+    }
+
+    @Test
+    void theFirstSuccessWinsAndCancelsTheSlowerCandidates() {
+        autoDetector = autoDetector(4, 10);
+        var attempts = new Attempts();
+        var slowStarted = new CompletableFuture<Void>();
+
+        var result = autoDetector.race(List.of("google", "facebook", "oidc"), type -> {
+            if (type.equals("facebook")) {
+                // wins, but only once the others are under way
+                return slowStarted.thenApply(started -> success(type));
+            }
+            var attempt = attempts.start(type);
+            if (attempts.started() == 2) {
+                slowStarted.complete(null);
+            }
+            return attempt;
+        });
+
+        assertThat(join(result).getType()).isEqualTo("facebook");
+        assertThat(join(result).getResult().getAuthenticationToken().getPrincipal()).isEqualTo("facebook");
+        assertThat(attempts.get("google")).isCancelled();
+        assertThat(attempts.get("oidc")).isCancelled();
+    }
+
+    @Test
+    void dropsCandidatesStillQueuedWhenOneWins() {
+        autoDetector = autoDetector(1, 10);
+        var applied = new AtomicInteger();
+
+        var result = autoDetector.race(List.of("google", "facebook", "oidc"), type -> {
+            applied.incrementAndGet();
+            return CompletableFuture.completedFuture(success(type));
+        });
+
+        assertThat(join(result).getType()).isEqualTo("google");
+        assertThat(applied).hasValue(1);
+    }
+
+    @Test
+    void reportsTheFirstRejectionWhenEveryCandidateRejects() {
+        autoDetector = autoDetector(4, 10);
+        var attempts = new Attempts();
+
+        var result = autoDetector.race(List.of("google", "oidc", "facebook"), attempts::start);
+        attempts.awaitSubscribed("google", "oidc", "facebook");
+        attempts.get("oidc").complete(ValidationResult.EXPIRED);
+        attempts.get("facebook").completeExceptionally(new BadCredentialsException("Invalid token"));
+        assertThat(result).isNotDone();
+        attempts.get("google").complete(ValidationResult.INVALID_SIGNATURE);
+
+        assertThat(join(result).getType()).isEqualTo("oidc");
+        assertThat(join(result).getResult()).isSameAs(ValidationResult.EXPIRED);
+    }
+
+    @Test
+    void reportsARejectionThrownTheOldWayAsAnInvalidToken() {
+        autoDetector = autoDetector(4, 10);
+        var attempts = new Attempts();
+
+        var result = autoDetector.race(List.of("google", "facebook"), attempts::start);
+        attempts.awaitSubscribed("google", "facebook");
+        attempts.get("facebook").completeExceptionally(new BadCredentialsException("Invalid token"));
+        attempts.get("google").complete(ValidationResult.EXPIRED);
+
+        assertThat(join(result).getType()).isEqualTo("facebook");
+        assertThat(join(result).getResult()).isSameAs(ValidationResult.INVALID_TOKEN);
+    }
+
+    @Test
+    void failsWithTheUpstreamFailureWhenAnotherCandidateRejects() {
+        autoDetector = autoDetector(4, 10);
+        var attempts = new Attempts();
+        var outage = new IllegalStateException("Facebook answered with status 503");
+
+        var result = autoDetector.race(List.of("google", "facebook"), attempts::start);
+        attempts.awaitSubscribed("google", "facebook");
+        attempts.get("google").complete(ValidationResult.INVALID_SIGNATURE);
+        attempts.get("facebook").completeExceptionally(outage);
+
+        // the token may well be a valid Facebook token, so it must not be reported as rejected
+        assertThatThrownBy(() -> join(result)).hasCause(outage);
+    }
+
+    @Test
+    void countsACandidateThatThrowsAsAFailure() {
+        autoDetector = autoDetector(4, 10);
+
+        var result = autoDetector.race(List.of("google", "facebook"), type -> {
+            if (type.equals("facebook")) {
+                throw new IllegalStateException("Facebook adapter is not initialized");
+            }
+            return CompletableFuture.completedFuture(ValidationResult.INVALID_TOKEN);
+        });
+
+        assertThatThrownBy(() -> join(result)).hasMessageContaining("not initialized");
+    }
+
+    @Test
+    void failsWhenTheDispatchQueueIsFull() throws InterruptedException {
+        autoDetector = autoDetector(1, 1);
+        var blocking = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        // the first candidate holds the only thread, the second waits in the queue and the third finds no room
+        var result = autoDetector.race(List.of("google", "facebook", "oidc"), type -> {
+            if (type.equals("google")) {
+                blocking.countDown();
+                await(release);
+            }
+            return CompletableFuture.completedFuture(ValidationResult.INVALID_TOKEN);
+        });
+        assertThat(blocking.await(5, TimeUnit.SECONDS)).isTrue();
+        release.countDown();
+
+        assertThatThrownBy(() -> join(result))
+                .hasCauseInstanceOf(ValidationRejectedException.class)
+                .hasMessageContaining("Too many concurrent validations");
+    }
+
+    @Test
+    void cancelsEveryCandidateWhenTheCallerGivesUp() {
+        autoDetector = autoDetector(4, 10);
+        var attempts = new Attempts();
+
+        var result = autoDetector.race(List.of("google", "facebook"), attempts::start);
+        attempts.awaitSubscribed("google", "facebook");
+        result.cancel(true);
+
+        assertThat(attempts.get("google")).isCancelled();
+        assertThat(attempts.get("facebook")).isCancelled();
+    }
+
+    private static AutoDetector autoDetector(int threads, int queueCapacity) {
+        var settings = new AutoDetectSettings();
+        settings.setEnabled(true);
+        settings.setThreads(threads);
+        settings.setQueueCapacity(queueCapacity);
+        // ID tokens have dots, Facebook tokens do not
+        var registry = new SocialLoginAdapterRegistry(List.of(
+                new StubAdapter("google", token -> token.contains(".")),
+                new StubAdapter("oidc", token -> token.contains(".")),
+                new StubAdapter("facebook", token -> !token.contains("."))));
+        return new AutoDetector(registry, settings);
+    }
+
+    private static ValidationResult success(String principal) {
+        var authToken = new SocialLoginAuthenticationToken(principal, null);
+        authToken.setAuthenticated(true);
+        return ValidationResult.success(authToken);
+    }
+
+    private static AutoDetector.Detection join(CompletableFuture<AutoDetector.Detection> result) {
+        return result.orTimeout(5, TimeUnit.SECONDS).join();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The validations of a race, each completed by the test.
+     */
+    private static final class Attempts {
+
+        private final Map<String, CompletableFuture<ValidationResult>> attempts = new ConcurrentHashMap<>();
+        private final AtomicInteger started = new AtomicInteger();
+
+        CompletableFuture<ValidationResult> start(String type) {
+            started.incrementAndGet();
+            return get(type);
+        }
+
+        int started() {
+            return started.get();
+        }
+
+        CompletableFuture<ValidationResult> get(String type) {
+            return attempts.computeIfAbsent(type, key -> new CompletableFuture<>());
+        }
+
+        /**
+         * Waits until the race listens to these attempts, so that the order they are completed in is the order it sees.
+         */
+        void awaitSubscribed(String... types) {
+            var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            for (var type : types) {
+                while (get(type).getNumberOfDependents() == 0) {
+                    if (System.nanoTime() > deadline) {
+                        throw new AssertionError("The race never listened to " + type);
+                    }
+                    Thread.onSpinWait();
+                }
+            }
+        }
+    }
+
+    private static final class StubAdapter implements SocialLoginAdapter {
+
+        private final String type;
+        private final Predicate<String> shape;
+
+        private StubAdapter(String type, Predicate<String> shape) {
+            this.type = type;
+            this.shape = shape;
+        }
+
+        @Override
+        public Set<String> getTypes() {
+            return Set.of(type);
+        }
+
+        @Override
+        public boolean mayAccept(String type, String token) {
+            return shape.test(token);
+        }
+
+        @Override
+        public SocialLoginAuthenticationToken validateLogin(String token) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.vladcarcu.sociallogin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.vladcarcu.sociallogin.http.ProviderHttpClients;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A provider API served from the test JVM, on a loopback port of its own. Every request is answered on a thread of its own,
+ * so a handler may hold a request while others go through.
+ */
+public class FakeProvider implements Closeable {
+
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+    private final HttpServer server;
+
+    public FakeProvider() {
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        server.setExecutor(threads);
+        server.start();
+    }
+
+    /**
+     * Builds the adapter the way the application does, from <code>social.login.*</code> properties and its own conditions,
+     * along with the {@link ProviderHttpClients} it talks through.
+     */
+    public static ApplicationContextRunner adapterContext(Class<? extends SocialLoginAdapter> adapterClass) {
+        return new ApplicationContextRunner()
+                // what SpringApplication sets up, so that durations such as 5ms bind
+                .withInitializer(context -> context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance()))
+                .withUserConfiguration(ProviderHttpClients.class, adapterClass);
+    }
+
+    /**
+     * Answers the requests for the path and everything below it.
+     */
+    public FakeProvider answer(String path, HttpHandler handler) {
+        server.createContext(path, handler);
+        return this;
+    }
+
+    public String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    public String url(String path) {
+        return getUrl() + path;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        threads.shutdownNow();
+    }
+
+    public static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        try (exchange) {
+            var bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+
+    public static Map<String, String> query(HttpExchange exchange) {
+        var query = exchange.getRequestURI().getRawQuery();
+        return query != null ? decode(query) : Map.of();
+    }
+
+    /**
+     * The parameters of a form-encoded request body.
+     */
+    public static Map<String, String> form(HttpExchange exchange) throws IOException {
+        return decode(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, String> decode(String parameters) {
+        var decoded = new HashMap<String, String>();
+        for (var parameter : parameters.split("&")) {
+            var separator = parameter.indexOf('=');
+            if (separator > 0) {
+                decoded.put(parameter.substring(0, separator), URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return decoded;
+    }
+}
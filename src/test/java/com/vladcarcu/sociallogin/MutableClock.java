@@ -0,0 +1,38 @@
+package com.vladcarcu.sociallogin;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * A clock that stands still until the test moves it.
+ */
+public final class MutableClock extends Clock {
+
+    private volatile Instant instant;
+
+    public MutableClock(Instant instant) {
+        this.instant = instant;
+    }
+
+    public void advance(Duration duration) {
+        instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return this;
+    }
+
+    @Override
+    public Instant instant() {
+        return instant;
+    }
+}
@@ -0,0 +1,104 @@
+package com.vladcarcu.sociallogin;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SocialLoginAdapterRegistryTest {
+
+    @Test
+    void looksUpTheAdapterOfEveryDeclaredType() {
+        var google = new StubAdapter(Set.of("google"));
+        var oidc = new StubAdapter(Set.of("okta", "keycloak"));
+
+        var registry = new SocialLoginAdapterRegistry(List.of(google, oidc));
+
+        assertThat(registry.getAdapter("google")).isSameAs(google);
+        assertThat(registry.getAdapter("okta")).isSameAs(oidc);
+        assertThat(registry.getAdapter("keycloak")).isSameAs(oidc);
+        assertThat(registry.getTypes()).containsExactlyInAnyOrder("google", "okta", "keycloak");
+    }
+
+    @Test
+    void findsNoAdapterForAnUnknownType() {
+        var registry = new SocialLoginAdapterRegistry(List.of(new StubAdapter(Set.of("google"))));
+
+        assertThat(registry.getAdapter("facebook")).isNull();
+    }
+
+    @Test
+    void refusesATypeDeclaredTwice() {
+        var adapters = List.<SocialLoginAdapter>of(new StubAdapter(Set.of("google")), new StubAdapter(Set.of("facebook", "google")));
+
+        assertThatThrownBy(() -> new SocialLoginAdapterRegistry(adapters))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("'google'");
+    }
+
+    @Test
+    void asksTheAdaptersDeclaringNoTypeWhetherTheyApply() {
+        var google = new StubAdapter(Set.of("google"));
+        var legacy = new LegacyAdapter("github");
+
+        var registry = new SocialLoginAdapterRegistry(List.of(google, legacy));
+
+        assertThat(registry.getAdapter("github")).isSameAs(legacy);
+        assertThat(registry.getAdapter("google")).isSameAs(google);
+        assertThat(registry.getAdapter("gitlab")).isNull();
+        // left out of everything set up per type
+        assertThat(registry.getTypes()).containsExactly("google");
+    }
+
+    @Test
+    void prefersTheAdapterDeclaringTheType() {
+        var google = new StubAdapter(Set.of("google"));
+
+        var registry = new SocialLoginAdapterRegistry(List.of(new LegacyAdapter("google"), google));
+
+        assertThat(registry.getAdapter("google")).isSameAs(google);
+    }
+
+    private static final class StubAdapter implements SocialLoginAdapter {
+
+        private final Set<String> types;
+
+        private StubAdapter(Set<String> types) {
+            this.types = types;
+        }
+
+        @Override
+        public Set<String> getTypes() {
+            return types;
+        }
+
+        @Override
+        public SocialLoginAuthenticationToken validateLogin(String token) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // written before getTypes() existed
+    private static final class LegacyAdapter implements SocialLoginAdapter {
+
+        private final String type;
+
+        private LegacyAdapter(String type) {
+            this.type = type;
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public boolean isApplicable(String type) {
+            return this.type.equals(type);
+        }
+
+        @Override
+        public SocialLoginAuthenticationToken validateLogin(String token) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.vladcarcu.sociallogin;
+
+import com.vladcarcu.sociallogin.cache.CachingSocialUserResolver;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SocialLoginConfigurationTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            // what SpringApplication sets up, so that durations such as 10s bind
+            .withInitializer(context -> context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance()))
+            .withConfiguration(AutoConfigurations.of(SocialLoginConfiguration.class))
+            .withUserConfiguration(ApplicationConfiguration.class);
+
+    @Test
+    void grantsReadTheCacheInFrontOfTheApplicationsResolver() {
+        contextRunner.run(context -> {
+            var cachingResolver = context.getBean(CachingSocialUserResolver.class);
+
+            // the one the application injects to invalidate users, and the one the grants read
+            assertThat(context.getBean(SocialUserResolver.class)).isSameAs(cachingResolver);
+            assertThat(ReflectionTestUtils.getField(context.getBean(SocialLoginConfiguration.class), "userResolver")).isSameAs(cachingResolver);
+            assertThat(cachingResolver.resolve("stub", "alice-subject").getUsername()).isEqualTo("alice");
+        });
+    }
+
+    @Test
+    void grantsReadTheApplicationsResolverWhenTheCacheIsDisabled() {
+        contextRunner.withPropertyValues("social.login.user-cache.enabled=false").run(context -> {
+            assertThat(context).doesNotHaveBean(CachingSocialUserResolver.class);
+            assertThat(ReflectionTestUtils.getField(context.getBean(SocialLoginConfiguration.class), "userResolver"))
+                    .isSameAs(context.getBean("usersDatabase"));
+        });
+    }
+
+    @Test
+    void cachesNothingWithoutAResolver() {
+        new ApplicationContextRunner()
+                .withInitializer(context -> context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance()))
+                .withConfiguration(AutoConfigurations.of(SocialLoginConfiguration.class))
+                .withBean(StubAdapter.class)
+                .run(context -> {
+                    assertThat(context).hasNotFailed();
+                    assertThat(context).doesNotHaveBean(CachingSocialUserResolver.class);
+                });
+    }
+
+    @Configuration
+    static class ApplicationConfiguration {
+
+        @Bean
+        public StubAdapter stubAdapter() {
+            return new StubAdapter();
+        }
+
+        @Bean
+        public SocialUserResolver usersDatabase() {
+            return (type, subject) -> "alice-subject".equals(subject)
+                    ? User.withUsername("alice").password("").authorities("ROLE_USER").build()
+                    : null;
+        }
+    }
+
+    static class StubAdapter implements SocialLoginAdapter {
+
+        @Override
+        public Set<String> getTypes() {
+            return Set.of("stub");
+        }
+
+        @Override
+        public SocialLoginAuthenticationToken validateLogin(String token) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.vladcarcu.sociallogin;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SocialLoginWarmUpTest {
+
+    @Test
+    void warmsUpEveryAdapterOnce() {
+        var google = new StubAdapter(Set.of("google", "google-web"), () -> CompletableFuture.completedFuture(null));
+        var facebook = new StubAdapter(Set.of("facebook"), () -> CompletableFuture.completedFuture(null));
+        var warmUp = warmUp(Duration.ofSeconds(5), google, facebook);
+
+        join(warmUp.start());
+        join(warmUp.start());
+
+        assertThat(warmUp.isFinished()).isTrue();
+        // an adapter declaring several types is warmed up, and reported, once
+        assertThat(warmUp.getResults()).isEqualTo(Map.of("facebook", "done", "google,google-web", "done"));
+        assertThat(google.warmUps).hasValue(1);
+        assertThat(facebook.warmUps).hasValue(1);
+    }
+
+    @Test
+    void isNotFinishedWhileAnAdapterIsWarmingUp() {
+        var keys = new CompletableFuture<Void>();
+        var warmUp = warmUp(Duration.ofSeconds(5), new StubAdapter(Set.of("google"), () -> keys));
+
+        var finished = warmUp.start();
+
+        assertThat(warmUp.isFinished()).isFalse();
+        assertThat(warmUp.getResults()).isEqualTo(Map.of("google", "pending"));
+        keys.complete(null);
+        join(finished);
+        assertThat(warmUp.getResults()).isEqualTo(Map.of("google", "done"));
+    }
+
+    @Test
+    void reportsTheFailuresAndStillFinishes() {
+        var warmUp = warmUp(Duration.ofSeconds(5),
+                new StubAdapter(Set.of("google"), () -> CompletableFuture.failedFuture(new IllegalStateException("Status: 503"))),
+                new StubAdapter(Set.of("facebook"), () -> {
+                    throw new IllegalStateException("No app token");
+                }),
+                new StubAdapter(Set.of("linkedin"), () -> CompletableFuture.completedFuture(null)));
+
+        join(warmUp.start());
+
+        assertThat(warmUp.isFinished()).isTrue();
+        assertThat(warmUp.getResults()).isEqualTo(Map.of(
+                "facebook", "failed: No app token",
+                "google", "failed: Status: 503",
+                "linkedin", "done"));
+    }
+
+    @Test
+    void finishesAtTheTimeoutWithoutTheSlowAdapters() {
+        var warmUp = warmUp(Duration.ofMillis(50),
+                new StubAdapter(Set.of("google"), CompletableFuture::new),
+                new StubAdapter(Set.of("facebook"), () -> CompletableFuture.completedFuture(null)));
+
+        join(warmUp.start());
+
+        assertThat(warmUp.isFinished()).isTrue();
+        assertThat(warmUp.getResults()).isEqualTo(Map.of("facebook", "done", "google", "timed out"));
+    }
+
+    private static SocialLoginWarmUp warmUp(Duration timeout, SocialLoginAdapter... adapters) {
+        var settings = new WarmUpSettings();
+        settings.setEnabled(true);
+        settings.setTimeout(timeout);
+        return new SocialLoginWarmUp(new SocialLoginAdapterRegistry(List.of(adapters)), settings);
+    }
+
+    private static void join(CompletableFuture<Void> finished) {
+        finished.orTimeout(5, TimeUnit.SECONDS).join();
+    }
+
+    private static final class StubAdapter implements SocialLoginAdapter {
+
+        private final Set<String> types;
+        private final Supplier<CompletionStage<Void>> warmUp;
+        private final AtomicInteger warmUps = new AtomicInteger();
+
+        private StubAdapter(Set<String> types, Supplier<CompletionStage<Void>> warmUp) {
+            this.types = types;
+            this.warmUp = warmUp;
+        }
+
+        @Override
+        public Set<String> getTypes() {
+            return types;
+        }
+
+        @Override
+        public CompletionStage<Void> warmUp() {
+            warmUps.incrementAndGet();
+            return warmUp.get();
+        }
+
+        @Override
+        public SocialLoginAuthenticationToken validateLogin(String token) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
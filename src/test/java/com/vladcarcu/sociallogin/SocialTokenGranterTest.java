@@ -0,0 +1,246 @@
+package com.vladcarcu.sociallogin;
+
+import com.vladcarcu.sociallogin.cache.ValidationCache;
+import com.vladcarcu.sociallogin.cache.ValidationCacheSettings;
+import com.vladcarcu.sociallogin.resilience.AdapterGuards;
+import com.vladcarcu.sociallogin.resilience.BulkheadSettings;
+import com.vladcarcu.sociallogin.resilience.CircuitBreakerSettings;
+import com.vladcarcu.sociallogin.resilience.RateLimitSettings;
+import com.vladcarcu.sociallogin.resilience.RateLimiters;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.TokenRequest;
+import org.springframework.security.oauth2.provider.client.BaseClientDetails;
+import org.springframework.security.oauth2.provider.client.InMemoryClientDetailsService;
+import org.springframework.security.oauth2.provider.request.DefaultOAuth2RequestFactory;
+import org.springframework.security.oauth2.provider.token.DefaultTokenServices;
+import org.springframework.security.oauth2.provider.token.store.InMemoryTokenStore;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SocialTokenGranterTest {
+
+    private static final BaseClientDetails CLIENT = new BaseClientDetails("client", null, "read", "social", null);
+
+    @Test
+    void acceptsATokenItsAdapterValidates() {
+        var google = new StubAdapter("google", token -> true, success("google-subject"));
+
+        var authentication = authenticate(granter(google), "google", "a-token");
+
+        assertThat(authentication.getPrincipal()).isEqualTo("google-subject");
+        assertThat(authentication.getOAuth2Request().getClientId()).isEqualTo("client");
+    }
+
+    @Test
+    void rejectsATokenWithTheReasonItsAdapterGave() {
+        for (var rejection : List.of(ValidationResult.EXPIRED, ValidationResult.INVALID_SIGNATURE, ValidationResult.INVALID_CLAIMS,
+                ValidationResult.UNKNOWN_KEY, ValidationResult.invalid("revoked"))) {
+            var granter = granter(new StubAdapter("google", token -> true, rejection));
+
+            // a single exception, thrown where the grant ends rather than wrapped on the way
+            assertThatThrownBy(() -> authenticate(granter, "google", "a-token"))
+                    .hasNoCause()
+                    .isInstanceOfSatisfying(TokenRejectedException.class, e -> assertThat(e.getReason()).isEqualTo(rejection.getReason()));
+        }
+    }
+
+    @Test
+    void rejectsATokenOfTheWrongShapeWithoutValidatingIt() {
+        var google = new StubAdapter("google", token -> token.contains("."), success("google-subject"));
+
+        assertThatThrownBy(() -> authenticate(granter(google), "google", "not-a-jwt"))
+                .isInstanceOfSatisfying(TokenRejectedException.class, e -> assertThat(e.getReason()).isEqualTo("malformed"));
+        assertThat(google.validations).hasValue(0);
+    }
+
+    @Test
+    void rejectsAValidationThatDidNotAuthenticate() {
+        var google = new StubAdapter("google", token -> true, ValidationResult.success(new SocialLoginAuthenticationToken("google-subject")));
+
+        assertThatThrownBy(() -> authenticate(granter(google), "google", "a-token"))
+                .isInstanceOfSatisfying(TokenRejectedException.class, e -> assertThat(e.getReason()).isEqualTo("invalid_token"));
+    }
+
+    @Test
+    void failsRatherThanRejectsWhenTheProviderCouldNotValidate() {
+        var outage = new IllegalStateException("Google answered with status 503");
+        var google = new StubAdapter("google", token -> true, ValidationResult.upstreamError(outage));
+
+        assertThatThrownBy(() -> authenticate(granter(google), "google", "a-token")).isSameAs(outage);
+    }
+
+    @Test
+    void validatesAGrantedTokenOnlyOnce() {
+        var google = new StubAdapter("google", token -> true, success("google-subject"));
+        var granter = granter(google);
+
+        authenticate(granter, "google", "a-token");
+        authenticate(granter, "google", "a-token");
+
+        assertThat(google.validations).hasValue(1);
+    }
+
+    @Test
+    void validatesASingleUseTokenEveryTimeItIsSent() {
+        var linkedIn = new StubAdapter("linkedin", token -> true, success("linkedin-subject"), false);
+        var granter = granter(linkedIn);
+
+        authenticate(granter, "linkedin", "a-code");
+        // a replayed code must reach the provider, which turns it down, rather than get the first grant's result
+        authenticate(granter, "linkedin", "a-code");
+
+        assertThat(linkedIn.validations).hasValue(2);
+    }
+
+    @Test
+    void signsInTheUserBehindTheSubject() {
+        var expiresAt = Instant.now().plusSeconds(3600);
+        var google = new StubAdapter("google", token -> true,
+                ValidationResult.success(new SocialLoginAuthenticationToken("google-subject", expiresAt, List.of())));
+        var resolved = new ArrayList<String>();
+        SocialUserResolver userResolver = (type, subject) -> {
+            resolved.add(type + ":" + subject);
+            return User.withUsername("alice").password("").authorities("ROLE_USER").build();
+        };
+
+        var authentication = authenticate(granter(userResolver, List.of(google)), "google", "a-token");
+
+        assertThat(resolved).containsExactly("google:google-subject");
+        assertThat(authentication.getPrincipal()).isInstanceOfSatisfying(UserDetails.class, user -> assertThat(user.getUsername()).isEqualTo("alice"));
+        assertThat(authentication.getAuthorities()).extracting(GrantedAuthority::getAuthority).containsExactly("ROLE_USER");
+        assertThat(((SocialLoginAuthenticationToken) authentication.getUserAuthentication()).getExpiresAt()).isEqualTo(expiresAt);
+    }
+
+    @Test
+    void rejectsATokenOfAnUnknownUser() {
+        var google = new StubAdapter("google", token -> true, success("google-subject"));
+
+        assertThatThrownBy(() -> authenticate(granter((type, subject) -> null, List.of(google)), "google", "a-token"))
+                .isInstanceOfSatisfying(TokenRejectedException.class, e -> assertThat(e.getReason()).isEqualTo("unknown_user"));
+    }
+
+    @Test
+    void looksUpTheUserOfTheDetectedType() {
+        var google = new StubAdapter("google", token -> token.contains("."), ValidationResult.INVALID_SIGNATURE);
+        var oidc = new StubAdapter("oidc", token -> token.contains("."), success("oidc-subject"));
+        var facebook = new StubAdapter("facebook", token -> !token.contains("."), success("facebook-subject"));
+        var resolved = new ArrayList<String>();
+        SocialUserResolver userResolver = (type, subject) -> {
+            resolved.add(type + ":" + subject);
+            return User.withUsername(subject).password("").authorities("ROLE_USER").build();
+        };
+        var settings = new AutoDetectSettings();
+        settings.setEnabled(true);
+        var registry = new SocialLoginAdapterRegistry(List.of(google, oidc, facebook));
+
+        try (var autoDetector = new AutoDetector(registry, settings)) {
+            var granter = granter(userResolver, autoDetector, registry);
+
+            assertThat(authenticate(granter, "auto", "eyJhbGciOiJSUzI1NiJ9.e30.c2ln").getName()).isEqualTo("oidc-subject");
+            assertThat(facebook.validations).hasValue(0);
+            assertThat(resolved).containsExactly("oidc:oidc-subject");
+        }
+    }
+
+    private static SocialTokenGranter granter(SocialLoginAdapter... adapters) {
+        return granter(null, List.of(adapters));
+    }
+
+    private static SocialTokenGranter granter(SocialUserResolver userResolver, List<SocialLoginAdapter> adapters) {
+        return granter(userResolver, null, new SocialLoginAdapterRegistry(adapters));
+    }
+
+    private static SocialTokenGranter granter(SocialUserResolver userResolver, AutoDetector autoDetector, SocialLoginAdapterRegistry registry) {
+        var types = registry.getTypes();
+        var clientDetailsService = new InMemoryClientDetailsService();
+        clientDetailsService.setClientDetailsStore(Map.of(CLIENT.getClientId(), CLIENT));
+        var tokenServices = new DefaultTokenServices();
+        tokenServices.setTokenStore(new InMemoryTokenStore());
+        // the validations are cached, as with social.login.<type>.cache.enabled
+        var cacheSettings = new ValidationCacheSettings();
+        cacheSettings.setEnabled(true);
+        return new SocialTokenGranter(registry, new ValidationCache(types, type -> cacheSettings),
+                new AdapterGuards(types, type -> new BulkheadSettings(), type -> new CircuitBreakerSettings()),
+                new RateLimiters(types, disabled(), type -> disabled()), Duration.ofSeconds(5), new SocialLoginMetrics(types),
+                null, autoDetector, null, userResolver, tokenServices, clientDetailsService, new DefaultOAuth2RequestFactory(clientDetailsService));
+    }
+
+    private static OAuth2Authentication authenticate(SocialTokenGranter granter, String type, String token) {
+        var tokenRequest = new TokenRequest(Map.of("type", type, "token", token), CLIENT.getClientId(), Set.of(), "social");
+        return granter.getOAuth2Authentication(CLIENT, tokenRequest);
+    }
+
+    private static RateLimitSettings disabled() {
+        var settings = new RateLimitSettings();
+        settings.setEnabled(false);
+        return settings;
+    }
+
+    private static ValidationResult success(String subject) {
+        var authToken = new SocialLoginAuthenticationToken(subject, null);
+        authToken.setAuthenticated(true);
+        return ValidationResult.success(authToken);
+    }
+
+    private static final class StubAdapter implements SocialLoginAdapter {
+
+        private final String type;
+        private final Predicate<String> shape;
+        private final ValidationResult result;
+        private final boolean cacheable;
+        private final AtomicInteger validations = new AtomicInteger();
+
+        private StubAdapter(String type, Predicate<String> shape, ValidationResult result) {
+            this(type, shape, result, true);
+        }
+
+        private StubAdapter(String type, Predicate<String> shape, ValidationResult result, boolean cacheable) {
+            this.type = type;
+            this.shape = shape;
+            this.result = result;
+            this.cacheable = cacheable;
+        }
+
+        @Override
+        public Set<String> getTypes() {
+            return Set.of(type);
+        }
+
+        @Override
+        public boolean mayAccept(String type, String token) {
+            return shape.test(token);
+        }
+
+        @Override
+        public boolean isCacheable(String type) {
+            return cacheable;
+        }
+
+        @Override
+        public CompletionStage<ValidationResult> validate(String token) {
+            validations.incrementAndGet();
+            return CompletableFuture.completedFuture(result);
+        }
+
+        @Override
+        public SocialLoginAuthenticationToken validateLogin(String token) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
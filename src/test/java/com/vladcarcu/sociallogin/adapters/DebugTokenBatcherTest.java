@@ -0,0 +1,149 @@
+package com.vladcarcu.sociallogin.adapters;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.vladcarcu.sociallogin.FakeProvider;
+import com.vladcarcu.sociallogin.http.JsonFields;
+import com.vladcarcu.sociallogin.http.ProviderHttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DebugTokenBatcherTest {
+
+    private static final JsonFields DEBUG_TOKEN_FIELDS = JsonFields.of("data.is_valid", "data.user_id", "data.error.code", "error.code");
+    private static final Duration LONG_WINDOW = Duration.ofSeconds(30);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // the app token and the input tokens of every batch request the fake Graph API received
+    private final List<Map.Entry<String, List<String>>> batches = new CopyOnWriteArrayList<>();
+    private final List<String> singleCalls = new CopyOnWriteArrayList<>();
+
+    private FakeProvider graphApi;
+
+    @BeforeEach
+    void setUp() {
+        graphApi = new FakeProvider().answer("/", this::answerBatch);
+    }
+
+    @AfterEach
+    void tearDown() {
+        graphApi.close();
+    }
+
+    @Test
+    void sendsABatchAsSoonAsItIsFull() {
+        var batcher = batcher(3, LONG_WINDOW);
+        var results = List.of(batcher.debugToken("a", "app"), batcher.debugToken("b", "app"), batcher.debugToken("c", "app"));
+
+        assertThat(results).extracting(result -> join(result).get("data.user_id")).containsExactly("user-a", "user-b", "user-c");
+        assertThat(batches).containsExactly(Map.entry("app", List.of("a", "b", "c")));
+        assertThat(singleCalls).isEmpty();
+    }
+
+    @Test
+    void sendsABatchOnceTheWindowHasPassed() {
+        var batcher = batcher(50, Duration.ofMillis(50));
+        var first = batcher.debugToken("a", "app");
+        var second = batcher.debugToken("b", "app");
+
+        assertThat(join(first).get("data.user_id")).isEqualTo("user-a");
+        assertThat(join(second).get("data.user_id")).isEqualTo("user-b");
+        assertThat(batches).containsExactly(Map.entry("app", List.of("a", "b")));
+    }
+
+    @Test
+    void sendsALoneCallAsAPlainCall() {
+        var batcher = batcher(50, Duration.ofMillis(20));
+
+        assertThat(join(batcher.debugToken("a", "app")).get("data.user_id")).isEqualTo("user-a");
+        assertThat(singleCalls).containsExactly("a");
+        assertThat(batches).isEmpty();
+    }
+
+    @Test
+    void groupsTheCallsByAppToken() {
+        var batcher = batcher(4, LONG_WINDOW);
+        var results = List.of(batcher.debugToken("a", "old-app"), batcher.debugToken("b", "new-app"),
+                batcher.debugToken("c", "old-app"), batcher.debugToken("d", "new-app"));
+
+        assertThat(results).extracting(result -> join(result).get("data.user_id")).containsExactly("user-a", "user-b", "user-c", "user-d");
+        assertThat(batches).containsExactlyInAnyOrder(Map.entry("old-app", List.of("a", "c")), Map.entry("new-app", List.of("b", "d")));
+    }
+
+    @Test
+    void handsEveryCallerTheAnswerToItsOwnSubRequest() {
+        var batcher = batcher(3, LONG_WINDOW);
+        var valid = batcher.debugToken("a", "app");
+        var invalid = batcher.debugToken("invalid-b", "app");
+        var dropped = batcher.debugToken("dropped-c", "app");
+
+        assertThat(join(valid).getBoolean("data.is_valid")).isTrue();
+        assertThat(join(invalid).getBoolean("data.is_valid")).isFalse();
+        assertThat(join(invalid).get("data.error.code")).isEqualTo("190");
+        // Facebook answers null for a sub-request it did not get to in time
+        assertThatThrownBy(() -> dropped.get(5, TimeUnit.SECONDS)).hasMessageContaining("did not answer");
+    }
+
+    @Test
+    void handsEveryCallerAnErrorAboutTheWholeBatch() {
+        var batcher = batcher(2, LONG_WINDOW);
+        var first = batcher.debugToken("a", "revoked-app");
+        var second = batcher.debugToken("b", "revoked-app");
+
+        assertThat(join(first).get("error.code")).isEqualTo("190");
+        assertThat(join(second).get("error.code")).isEqualTo("190");
+    }
+
+    private DebugTokenBatcher batcher(int maxSize, Duration window) {
+        var httpClient = new ProviderHttpClients(new MockEnvironment()).forProvider("facebook");
+        return new DebugTokenBatcher(httpClient, graphApi.getUrl(), DEBUG_TOKEN_FIELDS, (token, appToken) -> {
+            singleCalls.add(token);
+            return CompletableFuture.completedFuture(DEBUG_TOKEN_FIELDS.read(debugTokenBody(token)));
+        }, maxSize, window);
+    }
+
+    private static JsonFields.Values join(CompletableFuture<JsonFields.Values> result) {
+        return result.orTimeout(5, TimeUnit.SECONDS).join();
+    }
+
+    private void answerBatch(HttpExchange exchange) throws IOException {
+        var form = FakeProvider.form(exchange);
+        if ("revoked-app".equals(form.get("access_token"))) {
+            FakeProvider.respond(exchange, 400, "{\"error\":{\"message\":\"Error validating access token\",\"type\":\"OAuthException\",\"code\":190}}");
+            return;
+        }
+        var tokens = new ArrayList<String>();
+        var answers = new ArrayList<Object>();
+        for (var request : objectMapper.readTree(form.get("batch"))) {
+            var relativeUrl = request.path("relative_url").asText();
+            var token = URLDecoder.decode(relativeUrl.substring(relativeUrl.indexOf("input_token=") + 12), StandardCharsets.UTF_8);
+            tokens.add(token);
+            answers.add(token.startsWith("dropped-") ? null : Map.of("code", 200, "body", debugTokenBody(token)));
+        }
+        batches.add(Map.entry(form.get("access_token"), tokens));
+        FakeProvider.respond(exchange, 200, objectMapper.writeValueAsString(answers));
+    }
+
+    private static String debugTokenBody(String token) {
+        if (token.startsWith("invalid-")) {
+            return "{\"data\":{\"is_valid\":false,\"error\":{\"code\":190,\"message\":\"Invalid OAuth access token.\"}}}";
+        }
+        return "{\"data\":{\"is_valid\":true,\"user_id\":\"user-" + token + "\"}}";
+    }
+}
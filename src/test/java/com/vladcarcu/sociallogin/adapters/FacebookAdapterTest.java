@@ -0,0 +1,195 @@
+package com.vladcarcu.sociallogin.adapters;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.vladcarcu.sociallogin.FakeProvider;
+import com.vladcarcu.sociallogin.MutableClock;
+import com.vladcarcu.sociallogin.ValidationResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.ApplicationContext;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FacebookAdapterTest {
+
+    private static final String USER_TOKEN = "EAAGm0PX4ZCpsBAOZC1nXyz";
+
+    // the app tokens handed out are numbered by fetch
+    private final AtomicInteger appTokenFetches = new AtomicInteger();
+    private final Set<String> revokedAppTokens = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger failingFetches = new AtomicInteger();
+    private volatile CountDownLatch appTokenFetchHeld = new CountDownLatch(0);
+    private volatile long appTokenExpiresIn = 5_184_000;
+    private final MutableClock clock = new MutableClock(Instant.parse("2020-01-01T00:00:00Z"));
+
+    private FakeProvider graphApi;
+    private ApplicationContextRunner contextRunner;
+
+    @BeforeEach
+    void setUp() {
+        graphApi = new FakeProvider()
+                .answer("/oauth/access_token", this::answerAppToken)
+                .answer("/debug_token", this::answerDebugToken);
+        contextRunner = FakeProvider.adapterContext(FacebookAdapter.class).withPropertyValues(
+                "social.login.facebook.app-id=1234567890",
+                "social.login.facebook.app-secret=secret",
+                "social.login.facebook.graph-url=" + graphApi.getUrl());
+    }
+
+    @AfterEach
+    void tearDown() {
+        graphApi.close();
+    }
+
+    @Test
+    void concurrentValidationsShareOneAppTokenFetch() {
+        var held = new CountDownLatch(1);
+        appTokenFetchHeld = held;
+
+        contextRunner.run(context -> {
+            var adapter = adapter(context);
+            var results = new ArrayList<CompletableFuture<ValidationResult>>();
+            // every validation asks for the app token before returning, while the one fetch is held
+            for (var i = 0; i < 8; i++) {
+                results.add(validate(adapter));
+            }
+            held.countDown();
+
+            assertThat(results).allSatisfy(result -> assertThat(join(result).isSuccess()).isTrue());
+            assertThat(appTokenFetches).hasValue(1);
+
+            // and the next ones reuse it
+            assertThat(join(validate(adapter)).isSuccess()).isTrue();
+            assertThat(appTokenFetches).hasValue(1);
+        });
+    }
+
+    @Test
+    void nextValidationFetchesAgainAfterAFailedFetch() {
+        failingFetches.set(1);
+
+        contextRunner.run(context -> {
+            var adapter = adapter(context);
+
+            assertThatThrownBy(() -> join(validate(adapter))).hasMessageContaining("Could not get a Facebook app access token");
+            assertThat(join(validate(adapter)).isSuccess()).isTrue();
+            assertThat(appTokenFetches).hasValue(2);
+        });
+    }
+
+    @Test
+    void fetchesAgainOnceTheAppTokenExpired() {
+        appTokenExpiresIn = 60;
+
+        contextRunner.run(context -> {
+            var adapter = adapter(context);
+
+            assertThat(join(validate(adapter)).isSuccess()).isTrue();
+            clock.advance(Duration.ofSeconds(59));
+            assertThat(join(validate(adapter)).isSuccess()).isTrue();
+            assertThat(appTokenFetches).hasValue(1);
+
+            clock.advance(Duration.ofSeconds(1));
+            assertThat(join(validate(adapter)).isSuccess()).isTrue();
+            assertThat(appTokenFetches).hasValue(2);
+        });
+    }
+
+    @Test
+    void refreshesARevokedAppTokenOnceForAllTheValidationsItFailed() {
+        contextRunner.run(context -> {
+            var adapter = adapter(context);
+            assertThat(join(validate(adapter)).isSuccess()).isTrue();
+            revokedAppTokens.add("app-token-1");
+
+            var results = new ArrayList<CompletableFuture<ValidationResult>>();
+            for (var i = 0; i < 8; i++) {
+                results.add(validate(adapter));
+            }
+
+            assertThat(results).allSatisfy(result -> assertThat(join(result).isSuccess()).isTrue());
+            assertThat(appTokenFetches).hasValue(2);
+        });
+    }
+
+    @Test
+    void retriesAValidationWithTheRefreshedAppTokenOnlyOnce() {
+        contextRunner.run(context -> {
+            var adapter = adapter(context);
+            assertThat(join(validate(adapter)).isSuccess()).isTrue();
+            // the refreshed token is turned down too, e.g. because the app itself was disabled
+            revokedAppTokens.add("app-token-1");
+            revokedAppTokens.add("app-token-2");
+
+            assertThat(join(validate(adapter)).getCause()).hasMessageContaining("Code:190");
+            assertThat(appTokenFetches).hasValue(2);
+        });
+    }
+
+    @Test
+    void sendsTheComposedAppTokenWithoutFetchingOne() {
+        contextRunner.withPropertyValues("social.login.facebook.use-composed-app-token=true").run(context -> {
+            assertThat(join(validate(adapter(context))).isSuccess()).isTrue();
+            assertThat(appTokenFetches).hasValue(0);
+        });
+    }
+
+    /**
+     * The adapter of the context, telling the time from {@link #clock}.
+     */
+    private FacebookAdapter adapter(ApplicationContext context) {
+        var adapter = context.getBean(FacebookAdapter.class);
+        adapter.setClock(clock);
+        return adapter;
+    }
+
+    private static CompletableFuture<ValidationResult> validate(FacebookAdapter adapter) {
+        return adapter.validate(USER_TOKEN).toCompletableFuture().handle((result, e) -> e != null ? ValidationResult.upstreamError(e) : result);
+    }
+
+    private static ValidationResult join(CompletableFuture<ValidationResult> result) {
+        var validationResult = result.orTimeout(5, TimeUnit.SECONDS).join();
+        if (validationResult.getStatus() == ValidationResult.Status.UPSTREAM_ERROR && validationResult.getCause().getMessage().contains("app access token")) {
+            throw new IllegalStateException(validationResult.getCause().getMessage());
+        }
+        return validationResult;
+    }
+
+    private void answerAppToken(HttpExchange exchange) throws IOException {
+        try {
+            appTokenFetchHeld.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        var fetch = appTokenFetches.incrementAndGet();
+        if (failingFetches.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+            FakeProvider.respond(exchange, 500, "{\"error\":{\"message\":\"An unexpected error has occurred.\",\"code\":2}}");
+            return;
+        }
+        FakeProvider.respond(exchange, 200, "{\"access_token\":\"app-token-" + fetch + "\",\"token_type\":\"bearer\",\"expires_in\":" + appTokenExpiresIn + "}");
+    }
+
+    private void answerDebugToken(HttpExchange exchange) throws IOException {
+        var query = FakeProvider.query(exchange);
+        if (revokedAppTokens.contains(query.get("access_token"))) {
+            FakeProvider.respond(exchange, 400, "{\"error\":{\"message\":\"Error validating access token\",\"type\":\"OAuthException\",\"code\":190}}");
+            return;
+        }
+        FakeProvider.respond(exchange, 200, "{\"data\":{\"app_id\":\"1234567890\",\"type\":\"USER\",\"is_valid\":true,\"expires_at\":0,\"user_id\":\"user-of-"
+                + query.get("input_token") + "\"}}");
+    }
+}
@@ -0,0 +1,71 @@
+package com.vladcarcu.sociallogin.adapters;
+
+import com.vladcarcu.sociallogin.FakeProvider;
+import com.vladcarcu.sociallogin.MutableClock;
+import com.vladcarcu.sociallogin.ValidationResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.ApplicationContext;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GoogleAdapterTest {
+
+    private final AtomicInteger keySetFetches = new AtomicInteger();
+    // the sample tokens are issued on the system clock
+    private final MutableClock clock = new MutableClock(Instant.now());
+
+    private FakeProvider google;
+    private ApplicationContextRunner contextRunner;
+
+    @BeforeEach
+    void setUp() {
+        google = new FakeProvider().answer("/certs", exchange -> {
+            keySetFetches.incrementAndGet();
+            FakeProvider.respond(exchange, 200, "{\"keys\":[]}");
+        });
+        contextRunner = FakeProvider.adapterContext(GoogleAdapter.class).withPropertyValues(
+                "social.login.google.client-ids=1234567890.apps.googleusercontent.com",
+                "social.login.google.jwks-uri=" + google.url("/certs"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        google.close();
+    }
+
+    @Test
+    void rejectsAnIdTokenOnceItExpiredOnTheAdaptersClock() {
+        var token = SampleTokens.idToken("https://accounts.google.com", "1234567890.apps.googleusercontent.com", "unknown", "RS256");
+
+        contextRunner.run(context -> {
+            var adapter = adapter(context);
+            // a live token gets as far as the key lookup
+            assertThat(validate(adapter, token)).isSameAs(ValidationResult.UNKNOWN_KEY);
+            assertThat(keySetFetches).hasValue(1);
+
+            // the hour it is valid for and the allowed skew
+            clock.advance(Duration.ofHours(1).plusMinutes(6));
+
+            assertThat(validate(adapter, token)).isSameAs(ValidationResult.EXPIRED);
+            assertThat(keySetFetches).hasValue(1);
+        });
+    }
+
+    private GoogleAdapter adapter(ApplicationContext context) {
+        var adapter = context.getBean(GoogleAdapter.class);
+        adapter.setClock(clock);
+        return adapter;
+    }
+
+    private static ValidationResult validate(GoogleAdapter adapter, String token) {
+        return adapter.validate(token).toCompletableFuture().orTimeout(5, TimeUnit.SECONDS).join();
+    }
+}
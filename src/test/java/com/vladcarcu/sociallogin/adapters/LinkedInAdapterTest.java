@@ -0,0 +1,297 @@
+package com.vladcarcu.sociallogin.adapters;
+
+import com.vladcarcu.sociallogin.FakeProvider;
+import com.vladcarcu.sociallogin.MutableClock;
+import com.vladcarcu.sociallogin.ValidationResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.ApplicationContext;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LinkedInAdapterTest {
+
+    private static final String CODE = "AQT1b2c3d4e5f6g7h8i9j0";
+    private static final String ACCESS_TOKEN = "AQV8a9b8c7d6e5f4g3h2i1";
+
+    private FakeProvider linkedIn;
+    private ApplicationContextRunner contextRunner;
+
+    // what the fake LinkedIn answers to the code exchange, the token introspection and the profile lookup
+    private volatile int accessTokenStatus;
+    private volatile String accessTokenBody;
+    private volatile int introspectionStatus = 200;
+    private volatile String introspectionBody;
+    private volatile int profileStatus = 200;
+    private final AtomicInteger introspections = new AtomicInteger();
+    // set to hold the introspection until the profile is asked for
+    private volatile boolean introspectionWaitsForProfile;
+    private final CountDownLatch profileRequested = new CountDownLatch(1);
+    private final MutableClock clock = new MutableClock(Instant.parse("2020-01-01T00:00:00Z"));
+
+    @BeforeEach
+    void setUp() {
+        linkedIn = new FakeProvider()
+                .answer("/oauth/v2/accessToken", exchange -> FakeProvider.respond(exchange, accessTokenStatus, accessTokenBody))
+                .answer("/oauth/v2/introspectToken", exchange -> {
+                    introspections.incrementAndGet();
+                    if (introspectionWaitsForProfile && !await(profileRequested)) {
+                        FakeProvider.respond(exchange, 503, "{\"error\":\"temporarily_unavailable\"}");
+                        return;
+                    }
+                    FakeProvider.respond(exchange, introspectionStatus, introspectionBody);
+                })
+                .answer("/v2/me", exchange -> {
+                    profileRequested.countDown();
+                    FakeProvider.respond(exchange, profileStatus, profileStatus == 200
+                            ? "{\"id\":\"profile-1\"}"
+                            : "{\"serviceErrorCode\":65601,\"message\":\"The token used in the request has been revoked by the user\",\"status\":401}");
+                });
+        contextRunner = FakeProvider.adapterContext(LinkedInAdapter.class).withPropertyValues(
+                "social.login.linkedin.client-id=client",
+                "social.login.linkedin.client-secret=secret",
+                "social.login.linkedin.redirect-uri=https://app.example.com/callback",
+                "social.login.linkedin.auth-url=" + linkedIn.getUrl(),
+                "social.login.linkedin.api-url=" + linkedIn.getUrl());
+    }
+
+    @AfterEach
+    void tearDown() {
+        linkedIn.close();
+    }
+
+    @Test
+    void acceptsACodeLinkedInExchanges() {
+        answerCodeExchange(200, "{\"access_token\":\"access\",\"expires_in\":5184000}");
+
+        contextRunner.run(context -> {
+            var result = validate(adapter(context));
+
+            assertThat(result.isSuccess()).isTrue();
+            assertThat(result.getAuthenticationToken().getPrincipal()).isEqualTo("profile-1");
+            assertThat(result.getAuthenticationToken().getExpiresAt()).isEqualTo(clock.instant().plusSeconds(5184000));
+        });
+    }
+
+    @Test
+    void neverLetsAnExchangedCodeBeTakenAsValidAgain() {
+        answerCodeExchange(200, "{\"access_token\":\"access\",\"expires_in\":5184000}");
+
+        contextRunner.run(context -> {
+            var adapter = adapter(context);
+            assertThat(validate(adapter).isSuccess()).isTrue();
+            assertThat(adapter.isCacheable("linkedin")).isFalse();
+
+            // LinkedIn turns down a code exchanged before
+            answerCodeExchange(400, "{\"error\":\"invalid_grant\",\"error_description\":\"Unable to retrieve access token: authorization code not found\"}");
+            assertThat(validate(adapter)).isSameAs(ValidationResult.INVALID_TOKEN);
+        });
+        accessTokenMode().run(context -> assertThat(adapter(context).isCacheable("linkedin")).isTrue());
+    }
+
+    @Test
+    void rejectsACodeLinkedInTurnsDown() {
+        contextRunner.run(context -> {
+            var adapter = adapter(context);
+
+            answerCodeExchange(400, "{\"error\":\"invalid_grant\",\"error_description\":\"Unable to retrieve access token\"}");
+            assertThat(validate(adapter)).isSameAs(ValidationResult.INVALID_TOKEN);
+
+            answerCodeExchange(400, "{\"error\":\"invalid_request\",\"error_description\":\"Unable to retrieve access token\"}");
+            assertThat(validate(adapter)).isSameAs(ValidationResult.INVALID_TOKEN);
+        });
+    }
+
+    @Test
+    void failsRatherThanRejectsWhenLinkedInCannotExchangeTheCode() {
+        contextRunner.run(context -> {
+            var adapter = adapter(context);
+
+            answerCodeExchange(429, "{\"error\":\"too_many_requests\"}");
+            assertThatThrownBy(() -> validate(adapter)).hasMessageContaining("Status: 429");
+
+            answerCodeExchange(401, "{\"error\":\"invalid_client\",\"error_description\":\"Client authentication failed\"}");
+            assertThatThrownBy(() -> validate(adapter)).hasMessageContaining("Status: 401");
+
+            answerCodeExchange(400, "{\"error\":\"invalid_client\",\"error_description\":\"Client authentication failed\"}");
+            assertThatThrownBy(() -> validate(adapter)).hasMessageContaining("invalid_client");
+
+            answerCodeExchange(503, "{\"error\":\"server_error\"}");
+            assertThatThrownBy(() -> validate(adapter)).hasMessageContaining("Status: 503");
+        });
+    }
+
+    @Test
+    void acceptsAnAccessTokenIssuedToThisClient() {
+        var expiresAt = clock.instant().plusSeconds(3600).getEpochSecond();
+        answerIntrospection(200, "{\"active\":true,\"client_id\":\"client\",\"status\":\"active\",\"expires_at\":" + expiresAt + "}");
+
+        accessTokenMode().run(context -> {
+            var result = validateAccessToken(adapter(context));
+
+            assertThat(result.isSuccess()).isTrue();
+            assertThat(result.getAuthenticationToken().getPrincipal()).isEqualTo("profile-1");
+            // the token's own expiry, which also bounds how long the validation is cached
+            assertThat(result.getAuthenticationToken().getExpiresAt()).isEqualTo(Instant.ofEpochSecond(expiresAt));
+        });
+    }
+
+    @Test
+    void asksForTheProfileWhileTheTokenIsIntrospected() {
+        answerIntrospection(200, "{\"active\":true,\"client_id\":\"client\",\"expires_at\":" + clock.instant().plusSeconds(3600).getEpochSecond() + "}");
+        // the introspection is only answered once the profile was asked for, which a login asking one after the other never does
+        introspectionWaitsForProfile = true;
+
+        accessTokenMode().run(context -> assertThat(validateAccessToken(adapter(context)).isSuccess()).isTrue());
+    }
+
+    @Test
+    void rejectsAnAccessTokenIssuedToAnotherClient() {
+        answerIntrospection(200, "{\"active\":true,\"client_id\":\"another-client\",\"status\":\"active\",\"expires_at\":"
+                + clock.instant().plusSeconds(3600).getEpochSecond() + "}");
+
+        accessTokenMode().run(context -> assertThat(validateAccessToken(adapter(context)))
+                .isSameAs(ValidationResult.INVALID_CLAIMS));
+    }
+
+    @Test
+    void rejectsAnAccessTokenLinkedInNoLongerAccepts() {
+        accessTokenMode().run(context -> {
+            var adapter = adapter(context);
+
+            answerIntrospection(200, "{\"active\":false}");
+            assertThat(validateAccessToken(adapter)).isSameAs(ValidationResult.INVALID_TOKEN);
+
+            // revoked between the introspection and the profile lookup
+            answerIntrospection(200, "{\"active\":true,\"client_id\":\"client\",\"expires_at\":" + clock.instant().plusSeconds(3600).getEpochSecond() + "}");
+            profileStatus = 401;
+            assertThat(validateAccessToken(adapter)).isSameAs(ValidationResult.INVALID_TOKEN);
+        });
+    }
+
+    @Test
+    void rejectsAnAccessTokenOnceItExpired() {
+        answerIntrospection(200, "{\"active\":true,\"client_id\":\"client\",\"expires_at\":" + clock.instant().plusSeconds(60).getEpochSecond() + "}");
+
+        accessTokenMode().run(context -> {
+            var adapter = adapter(context);
+
+            clock.advance(Duration.ofSeconds(59));
+            assertThat(validateAccessToken(adapter).isSuccess()).isTrue();
+            clock.advance(Duration.ofSeconds(1));
+            assertThat(validateAccessToken(adapter)).isSameAs(ValidationResult.EXPIRED);
+        });
+    }
+
+    @Test
+    void rejectsAnExpiredAccessTokenAndDoesNotKeepIt() {
+        answerIntrospection(200, "{\"active\":true,\"client_id\":\"client\",\"expires_at\":" + clock.instant().minusSeconds(1).getEpochSecond() + "}");
+
+        accessTokenMode().run(context -> {
+            var adapter = adapter(context);
+
+            assertThat(validateAccessToken(adapter)).isSameAs(ValidationResult.EXPIRED);
+            assertThat(validateAccessToken(adapter)).isSameAs(ValidationResult.EXPIRED);
+            assertThat(introspections).hasValue(2);
+        });
+    }
+
+    @Test
+    void validatesAnAccessTokenOnlyOnceUntilItExpires() {
+        answerIntrospection(200, "{\"active\":true,\"client_id\":\"client\",\"expires_at\":" + clock.instant().plusSeconds(3600).getEpochSecond() + "}");
+
+        accessTokenMode().run(context -> {
+            var adapter = adapter(context);
+
+            assertThat(validateAccessToken(adapter).isSuccess()).isTrue();
+            clock.advance(Duration.ofSeconds(3599));
+            assertThat(validateAccessToken(adapter).getAuthenticationToken().getPrincipal()).isEqualTo("profile-1");
+            assertThat(introspections).hasValue(1);
+
+            clock.advance(Duration.ofSeconds(1));
+            assertThat(validateAccessToken(adapter)).isSameAs(ValidationResult.EXPIRED);
+            assertThat(introspections).hasValue(2);
+        });
+    }
+
+    @Test
+    void failsRatherThanRejectsWhenLinkedInCannotIntrospectTheToken() {
+        answerIntrospection(401, "{\"error\":\"invalid_client\",\"error_description\":\"Client authentication failed\"}");
+
+        accessTokenMode().run(context -> assertThatThrownBy(() -> validateAccessToken(adapter(context)))
+                .hasMessageContaining("Status: 401"));
+    }
+
+    @Test
+    void needsARedirectUriOnlyToExchangeCodes() {
+        var withoutRedirectUri = FakeProvider.adapterContext(LinkedInAdapter.class).withPropertyValues(
+                "social.login.linkedin.client-id=client",
+                "social.login.linkedin.client-secret=secret");
+
+        withoutRedirectUri.withPropertyValues("social.login.linkedin.token-type=access-token")
+                .run(context -> assertThat(context).hasSingleBean(LinkedInAdapter.class));
+        withoutRedirectUri.run(context -> assertThat(context).hasFailed());
+    }
+
+    @Test
+    void isNotSetUpWithoutTheClientCredentials() {
+        FakeProvider.adapterContext(LinkedInAdapter.class)
+                .withPropertyValues("social.login.linkedin.client-id=client")
+                .run(context -> assertThat(context).doesNotHaveBean(LinkedInAdapter.class));
+    }
+
+    private ApplicationContextRunner accessTokenMode() {
+        // no redirect URI, which only the code exchange needs
+        return FakeProvider.adapterContext(LinkedInAdapter.class).withPropertyValues(
+                "social.login.linkedin.client-id=client",
+                "social.login.linkedin.client-secret=secret",
+                "social.login.linkedin.token-type=access-token",
+                "social.login.linkedin.auth-url=" + linkedIn.getUrl(),
+                "social.login.linkedin.api-url=" + linkedIn.getUrl());
+    }
+
+    /**
+     * The adapter of the context, telling the time from {@link #clock}.
+     */
+    private LinkedInAdapter adapter(ApplicationContext context) {
+        var adapter = context.getBean(LinkedInAdapter.class);
+        adapter.setClock(clock);
+        return adapter;
+    }
+
+    private static ValidationResult validate(LinkedInAdapter adapter) {
+        return adapter.validate(CODE).toCompletableFuture().orTimeout(5, TimeUnit.SECONDS).join();
+    }
+
+    private static ValidationResult validateAccessToken(LinkedInAdapter adapter) {
+        return adapter.validate(ACCESS_TOKEN).toCompletableFuture().orTimeout(5, TimeUnit.SECONDS).join();
+    }
+
+    private void answerCodeExchange(int status, String body) {
+        accessTokenStatus = status;
+        accessTokenBody = body;
+    }
+
+    private void answerIntrospection(int status, String body) {
+        introspectionStatus = status;
+        introspectionBody = body;
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
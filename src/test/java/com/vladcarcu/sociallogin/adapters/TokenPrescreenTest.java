@@ -0,0 +1,138 @@
+package com.vladcarcu.sociallogin.adapters;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenPrescreenTest {
+
+    private static final String ISSUER = "https://accounts.google.com";
+    private static final String AUDIENCE = "1234567890-app.apps.googleusercontent.com";
+    private static final String SIGNATURE = "c2lnbmF0dXJlLW9mLXRoZS10b2tlbi10aGF0LWlzLW5vdC1jaGVja2VkLWhlcmU";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void passesAWellFormedIdToken() {
+        assertThat(isIdToken(idToken(claims()))).isTrue();
+    }
+
+    @Test
+    void leavesTheClaimsToTheVerifier() {
+        // the verifier answers these as expired or invalid_claims, which a client can act on, rather than malformed
+        for (var claim : List.of("iss", "aud", "exp", "sub")) {
+            var claims = claims();
+            claims.remove(claim);
+            assertThat(isIdToken(idToken(claims))).as(claim).isTrue();
+        }
+        var expired = claims();
+        expired.put("exp", Instant.now().minusSeconds(60).getEpochSecond());
+        assertThat(isIdToken(idToken(expired))).isTrue();
+        var ofAnotherIssuer = claims();
+        ofAnotherIssuer.put("iss", "https://attacker.example.com");
+        assertThat(isIdToken(idToken(ofAnotherIssuer))).isTrue();
+    }
+
+    @Test
+    void turnsAwayIdTokenWithoutAlgorithm() {
+        assertThat(isIdToken(idToken(Map.of("kid", "key-1", "typ", "JWT"), claims()))).isFalse();
+        assertThat(isIdToken(idToken(Map.of("alg", 256, "kid", "key-1"), claims()))).isFalse();
+        // the key id is optional, a token without one is an unknown key to the verifier
+        assertThat(isIdToken(idToken(Map.of("alg", "RS256", "typ", "JWT"), claims()))).isTrue();
+    }
+
+    @Test
+    void turnsAwayIdTokenThatDoesNotDecode() {
+        var token = idToken(claims());
+        var firstDot = token.indexOf('.');
+        var secondDot = token.lastIndexOf('.');
+
+        // a single character left over at the end of a base64 segment, which no byte count encodes to
+        var leftOver = "A".repeat(Math.floorMod(1 - firstDot, 4));
+        assertThat(isIdToken(token.substring(0, firstDot) + leftOver + token.substring(firstDot))).isFalse();
+        // base64 of something that is not JSON
+        assertThat(isIdToken(encode("not json at all, just some text".getBytes()) + token.substring(firstDot))).isFalse();
+        // an empty header
+        assertThat(isIdToken(token.substring(firstDot))).isFalse();
+        // one segment short, or one too many
+        assertThat(isIdToken(token.substring(0, secondDot))).isFalse();
+        assertThat(isIdToken(token + "." + SIGNATURE)).isFalse();
+        // characters outside of base64url
+        assertThat(isIdToken(token.substring(0, secondDot) + ".c2ln+bmF0dXJl/")).isFalse();
+    }
+
+    @Test
+    void boundsTheLengthOfIdTokens() {
+        assertThat(isIdToken("eyJhbGciOiJub25lIn0.e30.")).isFalse();
+        var claims = claims();
+        claims.put("padding", "x".repeat(8192));
+        assertThat(isIdToken(idToken(claims))).isFalse();
+    }
+
+    @Test
+    void passesOpaqueTokenWithinBounds() {
+        assertThat(TokenPrescreen.isOpaqueToken("EAAGm0PX4ZCpsBAOZC1nXyz", 16, 64)).isTrue();
+        assertThat(TokenPrescreen.isOpaqueToken("a".repeat(16), 16, 64)).isTrue();
+        assertThat(TokenPrescreen.isOpaqueToken("a".repeat(64), 16, 64)).isTrue();
+        // the whole b64token alphabet, with padding at the end
+        assertThat(TokenPrescreen.isOpaqueToken("AZaz09-._~+/".replace(".", "") + "==", 10, 64)).isTrue();
+    }
+
+    @Test
+    void turnsAwayOpaqueTokenOutOfBounds() {
+        assertThat(TokenPrescreen.isOpaqueToken("a".repeat(15), 16, 64)).isFalse();
+        assertThat(TokenPrescreen.isOpaqueToken("a".repeat(65), 16, 64)).isFalse();
+        assertThat(TokenPrescreen.isOpaqueToken("", 16, 64)).isFalse();
+    }
+
+    @Test
+    void turnsAwayOpaqueTokenOutsideOfTheAlphabet() {
+        // dots are left to ID tokens
+        assertThat(TokenPrescreen.isOpaqueToken("abcdefgh.ijklmnop", 16, 64)).isFalse();
+        assertThat(TokenPrescreen.isOpaqueToken("abcdefgh ijklmnop", 16, 64)).isFalse();
+        assertThat(TokenPrescreen.isOpaqueToken("abcdefgh\"ijklmnop", 16, 64)).isFalse();
+        assertThat(TokenPrescreen.isOpaqueToken("abcdefghijklmnopé", 16, 64)).isFalse();
+        // padding only at the end, and never alone
+        assertThat(TokenPrescreen.isOpaqueToken("abcdefgh=ijklmnop", 16, 64)).isFalse();
+        assertThat(TokenPrescreen.isOpaqueToken("=abcdefghijklmnop", 16, 64)).isFalse();
+    }
+
+    private boolean isIdToken(String token) {
+        return TokenPrescreen.isIdToken(token, objectMapper);
+    }
+
+    private static Map<String, Object> claims() {
+        var claims = new HashMap<String, Object>();
+        claims.put("iss", ISSUER);
+        claims.put("aud", AUDIENCE);
+        claims.put("sub", "110169484474386276334");
+        claims.put("exp", Instant.now().plusSeconds(3600).getEpochSecond());
+        return claims;
+    }
+
+    private String idToken(Map<String, Object> claims) {
+        return idToken(Map.of("alg", "RS256", "kid", "key-1", "typ", "JWT"), claims);
+    }
+
+    private String idToken(Map<String, Object> header, Map<String, Object> claims) {
+        try {
+            return encode(objectMapper.writeValueAsBytes(header)) + "."
+                    + encode(objectMapper.writeValueAsBytes(claims)) + "." + SIGNATURE;
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
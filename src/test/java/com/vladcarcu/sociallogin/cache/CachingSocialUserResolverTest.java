@@ -0,0 +1,116 @@
+package com.vladcarcu.sociallogin.cache;
+
+import com.vladcarcu.sociallogin.SocialUserResolver;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingSocialUserResolverTest {
+
+    // the local users, by "type:subject"
+    private final Map<String, UserDetails> users = new HashMap<>(Map.of(
+            "google:alice-subject", user("alice"),
+            "google:bob-subject", user("bob"),
+            "facebook:alice-subject", user("alice-on-facebook")));
+    private final UsersDatabase database = new UsersDatabase();
+    private final CachingSocialUserResolver resolver = new CachingSocialUserResolver(database, new SocialUserCacheSettings());
+
+    @Test
+    void looksUpAReturningUserOnlyOnce() {
+        assertThat(resolver.resolve("google", "alice-subject").getUsername()).isEqualTo("alice");
+        assertThat(resolver.resolve("google", "alice-subject").getUsername()).isEqualTo("alice");
+        // the same subject of another provider is another user
+        assertThat(resolver.resolve("facebook", "alice-subject").getUsername()).isEqualTo("alice-on-facebook");
+
+        assertThat(database.lookups).containsExactly("google:alice-subject", "facebook:alice-subject");
+        assertThat(resolver.getStats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void findsAUserAsSoonAsTheirAccountIsCreated() {
+        assertThat(resolver.resolve("google", "carol-subject")).isNull();
+        users.put("google:carol-subject", user("carol"));
+
+        assertThat(resolver.resolve("google", "carol-subject").getUsername()).isEqualTo("carol");
+        assertThat(database.lookups).containsExactly("google:carol-subject", "google:carol-subject");
+    }
+
+    @Test
+    void resolvesOnlyTheSubjectsNotCachedYetInOneCall() {
+        resolver.resolve("google", "alice-subject");
+
+        var resolved = resolver.resolveAll("google", List.of("alice-subject", "bob-subject", "carol-subject"));
+
+        assertThat(resolved).containsOnlyKeys("alice-subject", "bob-subject");
+        assertThat(database.batches).containsExactly(List.of("bob-subject", "carol-subject"));
+        // and bob is cached from then on
+        resolver.resolve("google", "bob-subject");
+        assertThat(database.lookups).containsExactly("google:alice-subject");
+    }
+
+    @Test
+    void preloadsTheUsersItIsGiven() {
+        resolver.preload("google", Map.of("dave-subject", user("dave")));
+
+        assertThat(resolver.resolve("google", "dave-subject").getUsername()).isEqualTo("dave");
+        assertThat(database.lookups).isEmpty();
+    }
+
+    @Test
+    void looksUpAnInvalidatedUserAgain() {
+        resolver.resolve("google", "alice-subject");
+        resolver.resolve("google", "bob-subject");
+        users.put("google:alice-subject", user("alice-renamed"));
+
+        resolver.invalidate("google", "alice-subject");
+        assertThat(resolver.resolve("google", "alice-subject").getUsername()).isEqualTo("alice-renamed");
+        assertThat(resolver.resolve("google", "bob-subject").getUsername()).isEqualTo("bob");
+        assertThat(database.lookups).hasSize(3);
+
+        resolver.invalidateAll();
+        resolver.resolve("google", "bob-subject");
+        assertThat(database.lookups).hasSize(4);
+    }
+
+    private static UserDetails user(String username) {
+        return User.withUsername(username).password("").authorities("ROLE_USER").build();
+    }
+
+    /**
+     * Looks the users up in {@link #users}, recording every lookup.
+     */
+    private final class UsersDatabase implements SocialUserResolver {
+
+        private final List<String> lookups = new CopyOnWriteArrayList<>();
+        private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+        @Override
+        public UserDetails resolve(String type, String subject) {
+            lookups.add(type + ":" + subject);
+            return users.get(type + ":" + subject);
+        }
+
+        @Override
+        public Map<String, UserDetails> resolveAll(String type, Collection<String> subjects) {
+            batches.add(new ArrayList<>(subjects));
+            var found = new HashMap<String, UserDetails>();
+            for (var subject : Set.copyOf(subjects)) {
+                var user = users.get(type + ":" + subject);
+                if (user != null) {
+                    found.put(subject, user);
+                }
+            }
+            return found;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.vladcarcu.sociallogin.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Redis stand-in on a local port that reads commands strictly by their RESP framing and keeps every one it received.
+ * It answers <code>GET</code>, <code>SET</code> with <code>PX</code>, <code>AUTH</code>, <code>SELECT</code> and
+ * <code>PING</code> like Redis does, unless a raw reply was queued for the next command.
+ */
+class LocalRedis implements Closeable {
+
+    // a queued reply that sends half a bulk string and closes the connection
+    static final String CUT_OFF = "$10\r\nhalf";
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final List<List<String>> commands = new CopyOnWriteArrayList<>();
+    private final Queue<String> queuedReplies = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    // the time the entries expire by, in milliseconds, which only moves when the test advances it
+    private final AtomicLong now = new AtomicLong();
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        var thread = new Thread(runnable, "local-redis");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    LocalRedis() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        executor.execute(this::accept);
+    }
+
+    RedisSettings settings() {
+        var settings = new RedisSettings();
+        settings.setHost(InetAddress.getLoopbackAddress().getHostAddress());
+        settings.setPort(serverSocket.getLocalPort());
+        settings.setTimeout(Duration.ofSeconds(2));
+        return settings;
+    }
+
+    List<List<String>> commands() {
+        return commands;
+    }
+
+    int connections() {
+        return connections.get();
+    }
+
+    void queueReply(String rawReply) {
+        queuedReplies.add(rawReply);
+    }
+
+    void advance(Duration duration) {
+        now.addAndGet(duration.toMillis());
+    }
+
+    void put(String key, String value) {
+        entries.put(key, new Entry(value, Long.MAX_VALUE));
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                var socket = serverSocket.accept();
+                connections.incrementAndGet();
+                executor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            var in = new BufferedInputStream(socket.getInputStream());
+            var out = new BufferedOutputStream(socket.getOutputStream());
+            List<String> command;
+            while ((command = readCommand(in)) != null) {
+                commands.add(command);
+                var reply = queuedReplies.poll();
+                out.write((reply != null ? reply : execute(command)).getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                if (CUT_OFF.equals(reply)) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // the client went away
+        }
+    }
+
+    private String execute(List<String> command) {
+        switch (command.get(0).toUpperCase(Locale.ROOT)) {
+            case "PING":
+            case "AUTH":
+            case "SELECT":
+                return "+OK\r\n";
+            case "GET":
+                var entry = entries.get(command.get(1));
+                if (entry == null || entry.expiresAt <= now.get()) {
+                    return "$-1\r\n";
+                }
+                return "$" + entry.value.getBytes(StandardCharsets.UTF_8).length + "\r\n" + entry.value + "\r\n";
+            case "SET":
+                var expiresAt = Long.MAX_VALUE;
+                if (command.size() == 5 && "PX".equalsIgnoreCase(command.get(3))) {
+                    expiresAt = now.get() + Long.parseLong(command.get(4));
+                }
+                entries.put(command.get(1), new Entry(command.get(2), expiresAt));
+                return "+OK\r\n";
+            default:
+                return "-ERR unknown command '" + command.get(0) + "'\r\n";
+        }
+    }
+
+    private static List<String> readCommand(InputStream in) throws IOException {
+        var type = in.read();
+        if (type == -1) {
+            return null;
+        }
+        if (type != '*') {
+            throw new IOException("Expected an array of bulk strings");
+        }
+        var count = Integer.parseInt(readLine(in));
+        var command = new ArrayList<String>(count);
+        for (var i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Expected a bulk string");
+            }
+            var length = Integer.parseInt(readLine(in));
+            command.add(new String(in.readNBytes(length), StandardCharsets.UTF_8));
+            if (in.read() != '\r' || in.read() != '\n') {
+                throw new IOException("A bulk string was longer than its length");
+            }
+        }
+        return command;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        var line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b == -1) {
+                throw new IOException("Connection closed in the middle of a command");
+            }
+            line.write(b);
+        }
+        if (in.read() != '\n') {
+            throw new IOException("Expected a line feed");
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private static final class Entry {
+
+        private final String value;
+        private final long expiresAt;
+
+        private Entry(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
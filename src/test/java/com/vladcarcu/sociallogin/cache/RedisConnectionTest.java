@@ -0,0 +1,86 @@
+package com.vladcarcu.sociallogin.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RedisConnectionTest {
+
+    private LocalRedis redis;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        redis = new LocalRedis();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        redis.close();
+    }
+
+    @Test
+    void framesArgumentsByTheirLengthInBytes() throws IOException {
+        try (var connection = new RedisConnection(redis.settings())) {
+            // line breaks and multi-byte characters must travel inside the bulk strings
+            assertThat(connection.execute("SET", "key", "1\n\nJosé \r\n 😀", "PX", "1000")).isEqualTo("OK");
+            assertThat(connection.execute("GET", "key")).isEqualTo("1\n\nJosé \r\n 😀");
+        }
+        assertThat(redis.commands()).containsExactly(
+                List.of("SET", "key", "1\n\nJosé \r\n 😀", "PX", "1000"),
+                List.of("GET", "key"));
+    }
+
+    @Test
+    void authenticatesAndSelectsTheDatabaseFirst() throws IOException {
+        var settings = redis.settings();
+        settings.setPassword("secret");
+        settings.setDatabase(3);
+        try (var connection = new RedisConnection(settings)) {
+            connection.execute("PING");
+        }
+        assertThat(redis.commands()).containsExactly(List.of("AUTH", "secret"), List.of("SELECT", "3"), List.of("PING"));
+    }
+
+    @Test
+    void readsEveryKindOfReply() throws IOException {
+        try (var connection = new RedisConnection(redis.settings())) {
+            redis.queueReply("+PONG\r\n");
+            assertThat(connection.execute("PING")).isEqualTo("PONG");
+            redis.queueReply(":42\r\n");
+            assertThat(connection.execute("INCR", "counter")).isEqualTo(42L);
+            redis.queueReply("$-1\r\n");
+            assertThat(connection.execute("GET", "missing")).isNull();
+            redis.queueReply("$0\r\n\r\n");
+            assertThat(connection.execute("GET", "empty")).isEqualTo("");
+            redis.queueReply("$4\r\na\r\nb\r\n");
+            assertThat(connection.execute("GET", "lines")).isEqualTo("a\r\nb");
+        }
+    }
+
+    @Test
+    void throwsErrorRepliesAndStaysInStep() throws IOException {
+        try (var connection = new RedisConnection(redis.settings())) {
+            assertThatThrownBy(() -> connection.execute("FLUSHALL"))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("ERR unknown command 'FLUSHALL'");
+            // the error was read whole, so the next reply is the next command's
+            assertThat(connection.execute("PING")).isEqualTo("OK");
+        }
+    }
+
+    @Test
+    void throwsWhenTheConnectionIsCutOffMidReply() throws IOException {
+        try (var connection = new RedisConnection(redis.settings())) {
+            redis.queueReply(LocalRedis.CUT_OFF);
+            assertThatThrownBy(() -> connection.execute("GET", "key"))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("closed the connection");
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.vladcarcu.sociallogin.cache;
+
+import com.vladcarcu.sociallogin.SocialLoginAuthenticationToken;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RedisValidationResultStoreTest {
+
+    private static final TokenKey KEY = TokenKey.of("google", "a-token");
+
+    private LocalRedis redis;
+    private RedisValidationResultStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        redis = new LocalRedis();
+        store = new RedisValidationResultStore(redis.settings());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+        redis.close();
+    }
+
+    @Test
+    void readsBackWhatItWrote() {
+        var expiresAt = Instant.now().plus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.MILLIS);
+        join(store.put(KEY, authenticated("user\nwith a line break", expiresAt), Duration.ofMinutes(5)));
+
+        var authToken = join(store.get(KEY));
+
+        assertThat(authToken.getPrincipal()).isEqualTo("user\nwith a line break");
+        assertThat(authToken.getExpiresAt()).isEqualTo(expiresAt);
+        assertThat(authToken.isAuthenticated()).isTrue();
+    }
+
+    @Test
+    void readsBackATokenWithoutExpiry() {
+        join(store.put(KEY, authenticated("user", null), Duration.ofMinutes(5)));
+
+        var authToken = join(store.get(KEY));
+
+        assertThat(authToken.getPrincipal()).isEqualTo("user");
+        assertThat(authToken.getExpiresAt()).isNull();
+    }
+
+    @Test
+    void keysEntriesByDigestAndLetsRedisExpireThem() {
+        join(store.put(KEY, authenticated("user", null), Duration.ofMillis(200)));
+
+        assertThat(redis.commands().get(0))
+                .containsExactly("SET", "social-login:" + KEY.toHex(), "1\n\nuser", "PX", "200")
+                .noneMatch(argument -> argument.contains("a-token"));
+        redis.advance(Duration.ofMillis(199));
+        assertThat(join(store.get(KEY))).isNotNull();
+        redis.advance(Duration.ofMillis(1));
+        assertThat(join(store.get(KEY))).isNull();
+    }
+
+    @Test
+    void missesEntriesWrittenInAnotherFormat() {
+        redis.put("social-login:" + KEY.toHex(), "2\n\nuser");
+
+        assertThat(join(store.get(KEY))).isNull();
+    }
+
+    @Test
+    void reusesConnectionsButDropsOnesThatFailed() {
+        join(store.put(KEY, authenticated("user", null), Duration.ofMinutes(5)));
+        join(store.get(KEY));
+        assertThat(redis.connections()).isEqualTo(1);
+
+        redis.queueReply("-ERR out of memory\r\n");
+        assertThatThrownBy(() -> join(store.get(KEY))).hasMessageContaining("out of memory");
+
+        assertThat(join(store.get(KEY)).getPrincipal()).isEqualTo("user");
+        assertThat(redis.connections()).isEqualTo(2);
+        assertThat(redis.commands()).extracting(command -> command.get(0)).isEqualTo(List.of("SET", "GET", "GET", "GET"));
+    }
+
+    private static SocialLoginAuthenticationToken authenticated(String principal, Instant expiresAt) {
+        var authToken = new SocialLoginAuthenticationToken(principal, expiresAt);
+        authToken.setAuthenticated(true);
+        return authToken;
+    }
+
+    private static <T> T join(CompletionStage<T> stage) {
+        return stage.toCompletableFuture().orTimeout(5, TimeUnit.SECONDS).join();
+    }
+}
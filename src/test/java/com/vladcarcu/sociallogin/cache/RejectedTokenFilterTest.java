@@ -0,0 +1,126 @@
+package com.vladcarcu.sociallogin.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RejectedTokenFilterTest {
+
+    // a window of 16 seconds, so a slice is a second
+    private static final Duration WINDOW = Duration.ofSeconds(16);
+    private static final long SLICE = TimeUnit.SECONDS.toNanos(1);
+
+    private long now = 1_000;
+
+    @Test
+    void remembersARejectedTokenForTheWindow() {
+        var filter = filter(WINDOW, 1024);
+        var key = TokenKey.of("google", "a-token");
+        assertThat(filter.mightContain(key)).isFalse();
+
+        filter.add(key);
+        now += 15 * SLICE;
+        assertThat(filter.mightContain(key)).isTrue();
+        now += SLICE;
+        assertThat(filter.mightContain(key)).isFalse();
+    }
+
+    @Test
+    void remembersATokenRejectedAgainForAnotherWindow() {
+        var filter = filter(WINDOW, 1024);
+        var key = TokenKey.of("google", "a-token");
+
+        filter.add(key);
+        now += 10 * SLICE;
+        filter.add(key);
+        now += 10 * SLICE;
+
+        assertThat(filter.mightContain(key)).isTrue();
+    }
+
+    @Test
+    void keepsFreshEntriesWhenItSweeps() {
+        var filter = filter(WINDOW, 1024);
+        var stale = TokenKey.of("google", "stale-token");
+        var fresh = TokenKey.of("google", "fresh-token");
+
+        filter.add(stale);
+        now += (32_768 - 2) * SLICE;
+        filter.add(fresh);
+        // the first call of the next epoch sweeps
+        now += 4 * SLICE;
+
+        assertThat(filter.mightContain(fresh)).isTrue();
+        assertThat(filter.mightContain(stale)).isFalse();
+    }
+
+    @Test
+    void forgetsTokensOnceTheirStampsWrapAround() {
+        var filter = filter(WINDOW, 1024);
+        var key = TokenKey.of("google", "a-token");
+        var other = TokenKey.of("google", "another-token");
+        filter.add(key);
+
+        // busy: the filter is used every few thousand slices
+        var wrapped = new boolean[8];
+        for (var wraps = 0; wraps < wrapped.length; wraps++) {
+            for (var i = 0; i < 16; i++) {
+                now += 4_096 * SLICE;
+                filter.add(other);
+            }
+            wrapped[wraps] = filter.mightContain(key);
+        }
+        assertThat(wrapped).containsOnly(false);
+
+        // idle: the filter is left alone for exactly as long as the stamps take to wrap
+        var idle = filter(WINDOW, 1024);
+        idle.add(key);
+        now += 65_536 * SLICE;
+        assertThat(idle.mightContain(key)).isFalse();
+    }
+
+    @Test
+    void neverMistakesOtherTokensForRejectedOnes() {
+        var filter = filter(WINDOW, 65_536);
+        for (var i = 0; i < 65_536; i++) {
+            filter.add(TokenKey.of("google", "rejected-" + i));
+        }
+
+        var falsePositives = 0;
+        for (var i = 0; i < 1_000_000; i++) {
+            if (filter.mightContain(TokenKey.of("google", "valid-" + i))) {
+                falsePositives++;
+            }
+        }
+
+        assertThat(falsePositives).isZero();
+    }
+
+    @Test
+    void keepsNearlyAllTokensWhileFarFromFull() {
+        var filter = filter(WINDOW, 65_536);
+        for (var i = 0; i < 16_384; i++) {
+            filter.add(TokenKey.of("google", "rejected-" + i));
+        }
+
+        var remembered = 0;
+        for (var i = 0; i < 16_384; i++) {
+            if (filter.mightContain(TokenKey.of("google", "rejected-" + i))) {
+                remembered++;
+            }
+        }
+
+        assertThat(remembered).isGreaterThan(16_384 * 99 / 100);
+    }
+
+    private RejectedTokenFilter filter(Duration window, int capacity) {
+        var settings = new RejectedTokenFilterSettings();
+        settings.setEnabled(true);
+        settings.setWindow(window);
+        settings.setCapacity(capacity);
+        return new RejectedTokenFilter(settings, () -> now);
+    }
+}
@@ -0,0 +1,127 @@
+package com.vladcarcu.sociallogin.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CompletableFuture<String> flight = new CompletableFuture<>();
+
+    @Test
+    void concurrentCallersShareOneCall() throws Exception {
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            var start = new CountDownLatch(1);
+            var results = new ArrayList<Future<CompletableFuture<String>>>();
+            for (var i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return singleFlight.execute("key", this::call);
+                }));
+            }
+            start.countDown();
+            var callers = new ArrayList<CompletableFuture<String>>();
+            for (var result : results) {
+                callers.add(result.get(5, TimeUnit.SECONDS));
+            }
+
+            flight.complete("value");
+
+            assertThat(callers).allSatisfy(caller -> assertThat(caller.orTimeout(5, TimeUnit.SECONDS).join()).isEqualTo("value"));
+            assertThat(calls).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void callsAgainOnceTheCallSucceeded() {
+        var first = singleFlight.execute("key", this::call);
+        flight.complete("value");
+        assertThat(first.join()).isEqualTo("value");
+
+        singleFlight.execute("key", () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("next value");
+        });
+
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void sharesTheFailureAndCallsAgainAfterIt() {
+        var first = singleFlight.execute("key", this::call);
+        var second = singleFlight.execute("key", this::call);
+        var failure = new IllegalStateException("provider is down");
+
+        flight.completeExceptionally(failure);
+
+        assertThatThrownBy(first::join).hasCause(failure);
+        assertThatThrownBy(second::join).hasCause(failure);
+        assertThat(singleFlight.execute("key", () -> CompletableFuture.completedFuture("recovered")).join()).isEqualTo("recovered");
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void callsAgainAfterTheCallThrew() {
+        var failure = new IllegalStateException("adapter is not initialized");
+
+        var first = singleFlight.execute("key", () -> {
+            throw failure;
+        });
+
+        assertThatThrownBy(first::join).hasCause(failure);
+        assertThat(singleFlight.execute("key", () -> CompletableFuture.completedFuture("value")).join()).isEqualTo("value");
+    }
+
+    @Test
+    void callerGivingUpDoesNotCancelTheCallForTheOthers() {
+        var impatient = singleFlight.execute("key", this::call);
+        var patient = singleFlight.execute("key", this::call);
+
+        // what the granter does when a validation times out
+        impatient.cancel(true);
+        flight.complete("value");
+
+        assertThat(impatient).isCancelled();
+        assertThat(flight).isNotCancelled();
+        assertThat(patient.join()).isEqualTo("value");
+    }
+
+    @Test
+    void firstCallerGivingUpDoesNotCancelTheCallEither() {
+        var first = singleFlight.execute("key", this::call);
+        first.cancel(true);
+        var late = singleFlight.execute("key", this::call);
+
+        flight.complete("value");
+
+        assertThat(late.join()).isEqualTo("value");
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void doesNotShareCallsBetweenKeys() {
+        singleFlight.execute("key", this::call);
+        singleFlight.execute("another key", this::call);
+
+        assertThat(calls).hasValue(2);
+    }
+
+    private CompletableFuture<String> call() {
+        calls.incrementAndGet();
+        return flight;
+    }
+}
@@ -0,0 +1,238 @@
+package com.vladcarcu.sociallogin.cache;
+
+import com.vladcarcu.sociallogin.MutableClock;
+import com.vladcarcu.sociallogin.SocialLoginAuthenticationToken;
+import com.vladcarcu.sociallogin.ValidationResult;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ValidationCacheTest {
+
+    private static final TokenKey KEY = TokenKey.of("google", "a-token");
+
+    private final AtomicInteger validations = new AtomicInteger();
+    private final MutableClock clock = new MutableClock(Instant.parse("2020-01-01T00:00:00Z"));
+
+    @Test
+    void validatesACachedTokenOnlyOnce() {
+        var cache = new ValidationCache(Set.of("google"), type -> enabled());
+        var authToken = new SocialLoginAuthenticationToken("user-1", Instant.now().plusSeconds(3600));
+
+        assertThat(get(cache, "google", ValidationResult.success(authToken)).getAuthenticationToken()).isSameAs(authToken);
+        assertThat(get(cache, "google", ValidationResult.success(authToken)).getAuthenticationToken()).isSameAs(authToken);
+        assertThat(validations).hasValue(1);
+    }
+
+    @Test
+    void cachesOnlySuccessfulValidations() {
+        var cache = new ValidationCache(Set.of("google"), type -> enabled());
+
+        assertThat(get(cache, "google", ValidationResult.INVALID_TOKEN)).isSameAs(ValidationResult.INVALID_TOKEN);
+        assertThat(get(cache, "google", ValidationResult.INVALID_TOKEN)).isSameAs(ValidationResult.INVALID_TOKEN);
+        var upstreamError = ValidationResult.upstreamError(new IllegalStateException("Status: 503"));
+        assertThat(get(cache, "google", upstreamError)).isSameAs(upstreamError);
+        assertThat(get(cache, "google", upstreamError)).isSameAs(upstreamError);
+
+        assertThat(validations).hasValue(4);
+    }
+
+    @Test
+    void neverCachesATokenThatHasAlreadyExpired() {
+        var cache = new ValidationCache(Set.of("google"), type -> enabled());
+        var expired = ValidationResult.success(new SocialLoginAuthenticationToken("user-1", Instant.now().minusSeconds(1)));
+
+        get(cache, "google", expired);
+        get(cache, "google", expired);
+
+        assertThat(validations).hasValue(2);
+    }
+
+    @Test
+    void validatesATokenAgainOnceItExpired() {
+        var cache = new ValidationCache(Set.of("google"), type -> enabled(), null, null, clock);
+        var result = ValidationResult.success(new SocialLoginAuthenticationToken("user-1", clock.instant().plusSeconds(60)));
+
+        get(cache, "google", result);
+        clock.advance(Duration.ofSeconds(59));
+        get(cache, "google", result);
+        assertThat(validations).hasValue(1);
+
+        clock.advance(Duration.ofSeconds(1));
+        get(cache, "google", result);
+        assertThat(validations).hasValue(2);
+    }
+
+    @Test
+    void keepsATokenWithoutAnExpiryForTheTtl() {
+        var cache = new ValidationCache(Set.of("google"), type -> enabled());
+        var result = ValidationResult.success(new SocialLoginAuthenticationToken("user-1"));
+
+        get(cache, "google", result);
+        get(cache, "google", result);
+
+        assertThat(validations).hasValue(1);
+    }
+
+    @Test
+    void validatesEveryTimeForATypeWithCachingDisabled() {
+        var cache = new ValidationCache(Set.of("google", "facebook"), type -> "google".equals(type) ? enabled() : new ValidationCacheSettings());
+        var result = ValidationResult.success(new SocialLoginAuthenticationToken("user-1", Instant.now().plusSeconds(3600)));
+
+        get(cache, "facebook", result);
+        get(cache, "facebook", result);
+        assertThat(validations).hasValue(2);
+
+        get(cache, "google", result);
+        get(cache, "google", result);
+        assertThat(validations).hasValue(3);
+    }
+
+    @Test
+    void reportsTheStatsOfTheTypesWithCachingEnabled() {
+        var cache = new ValidationCache(Set.of("google", "facebook"), type -> "google".equals(type) ? enabled() : new ValidationCacheSettings());
+        var result = ValidationResult.success(new SocialLoginAuthenticationToken("user-1", Instant.now().plusSeconds(3600)));
+
+        get(cache, "google", result);
+        get(cache, "google", result);
+        get(cache, "google", result);
+
+        var stats = cache.getStats();
+        assertThat(stats).containsOnlyKeys("google");
+        assertThat(stats.get("google").hitCount()).isEqualTo(2);
+        assertThat(stats.get("google").missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void readsTheSharedStoreOnANearMissOnly() {
+        var store = new RecordingStore();
+        var authToken = new SocialLoginAuthenticationToken("user-1", Instant.now().plusSeconds(3600));
+        store.put(KEY, authToken, Duration.ofMinutes(5));
+        var cache = new ValidationCache(Set.of("google"), type -> enabled(), store, Duration.ofSeconds(1));
+
+        assertThat(get(cache, "google", ValidationResult.INVALID_TOKEN).getAuthenticationToken()).isSameAs(authToken);
+        assertThat(get(cache, "google", ValidationResult.INVALID_TOKEN).getAuthenticationToken()).isSameAs(authToken);
+
+        assertThat(validations).hasValue(0);
+        assertThat(store.lookups).hasValue(1);
+    }
+
+    @Test
+    void sharesAValidationForNoLongerThanTheTokenLives() {
+        var store = new RecordingStore();
+        var cache = new ValidationCache(Set.of("google"), type -> enabled(), store, Duration.ofSeconds(1), clock);
+
+        get(cache, "google", ValidationResult.success(new SocialLoginAuthenticationToken("user-1", clock.instant().plusSeconds(60))));
+        assertThat(store.lastTtl).isEqualTo(Duration.ofSeconds(60));
+
+        // without an expiry of its own, a token is shared for the cache's ttl
+        get(cache, "google", TokenKey.of("google", "another-token"), ValidationResult.success(new SocialLoginAuthenticationToken("user-2")));
+        assertThat(store.lastTtl).isEqualTo(Duration.ofMinutes(5));
+    }
+
+    @Test
+    void neverSharesATokenThatHasAlreadyExpired() {
+        var store = new RecordingStore();
+        var cache = new ValidationCache(Set.of("google"), type -> enabled(), store, Duration.ofSeconds(1));
+
+        get(cache, "google", ValidationResult.success(new SocialLoginAuthenticationToken("user-1", Instant.now().minusSeconds(1))));
+
+        assertThat(store.lastTtl).isNull();
+    }
+
+    @Test
+    void validatesWhenTheSharedStoreFails() {
+        var result = ValidationResult.success(new SocialLoginAuthenticationToken("user-1", Instant.now().plusSeconds(3600)));
+        var failing = new RecordingStore() {
+            @Override
+            public CompletionStage<SocialLoginAuthenticationToken> get(TokenKey key) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Connection refused"));
+            }
+        };
+        var throwing = new RecordingStore() {
+            @Override
+            public CompletionStage<SocialLoginAuthenticationToken> get(TokenKey key) {
+                throw new IllegalStateException("Connection refused");
+            }
+
+            @Override
+            public CompletionStage<Void> put(TokenKey key, SocialLoginAuthenticationToken authToken, Duration ttl) {
+                throw new IllegalStateException("Connection refused");
+            }
+        };
+
+        assertThat(get(new ValidationCache(Set.of("google"), type -> enabled(), failing, Duration.ofSeconds(1)), "google", result)).isSameAs(result);
+        assertThat(get(new ValidationCache(Set.of("google"), type -> enabled(), throwing, Duration.ofSeconds(1)), "google", result)).isSameAs(result);
+        assertThat(validations).hasValue(2);
+    }
+
+    @Test
+    void validatesWhenTheSharedStoreDoesNotAnswerInTime() {
+        var result = ValidationResult.success(new SocialLoginAuthenticationToken("user-1", Instant.now().plusSeconds(3600)));
+        var unanswered = new RecordingStore() {
+            @Override
+            public CompletionStage<SocialLoginAuthenticationToken> get(TokenKey key) {
+                return new CompletableFuture<>();
+            }
+        };
+        var cache = new ValidationCache(Set.of("google"), type -> enabled(), unanswered, Duration.ofMillis(50));
+
+        assertThat(get(cache, "google", result)).isSameAs(result);
+        assertThat(validations).hasValue(1);
+        // and the near tier is filled, so the next exchange waits on nothing
+        assertThat(get(cache, "google", result)).isSameAs(result);
+        assertThat(validations).hasValue(1);
+    }
+
+    private static ValidationCacheSettings enabled() {
+        var settings = new ValidationCacheSettings();
+        settings.setEnabled(true);
+        return settings;
+    }
+
+    private ValidationResult get(ValidationCache cache, String type, ValidationResult result) {
+        return get(cache, type, KEY, result);
+    }
+
+    private ValidationResult get(ValidationCache cache, String type, TokenKey key, ValidationResult result) {
+        return cache.get(type, key, () -> validate(result)).toCompletableFuture().orTimeout(5, TimeUnit.SECONDS).join();
+    }
+
+    private CompletionStage<ValidationResult> validate(ValidationResult result) {
+        validations.incrementAndGet();
+        return CompletableFuture.completedFuture(result);
+    }
+
+    /**
+     * An in-memory store counting its lookups and remembering how long it was last asked to keep a validation.
+     */
+    private static class RecordingStore extends InMemoryValidationResultStore {
+
+        private final AtomicInteger lookups = new AtomicInteger();
+        private volatile Duration lastTtl;
+
+        private RecordingStore() {
+            super(100);
+        }
+
+        @Override
+        public CompletionStage<SocialLoginAuthenticationToken> get(TokenKey key) {
+            lookups.incrementAndGet();
+            return super.get(key);
+        }
+
+        @Override
+        public CompletionStage<Void> put(TokenKey key, SocialLoginAuthenticationToken authToken, Duration ttl) {
+            lastTtl = ttl;
+            return super.put(key, authToken, ttl);
+        }
+    }
+}
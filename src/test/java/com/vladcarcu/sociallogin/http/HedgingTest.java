@@ -0,0 +1,218 @@
+package com.vladcarcu.sociallogin.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HedgingTest {
+
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private long now = 1_000;
+    private final AtomicInteger hedges = new AtomicInteger();
+    // the exchanges the hedging started, completed by the test
+    private final List<CompletableFuture<ProviderResponse>> firsts = new CopyOnWriteArrayList<>();
+    private final List<CompletableFuture<ProviderResponse>> seconds = new CopyOnWriteArrayList<>();
+    // the hedges the hedging scheduled, and after how long, fired by the test
+    private final List<Runnable> timers = new ArrayList<>();
+    private final List<Long> delays = new ArrayList<>();
+
+    @Test
+    void doesNotHedgeBeforeItHasSeenEnoughResponses() {
+        var hedging = hedging(95, Duration.ofMillis(1), 10);
+
+        var result = send(hedging);
+
+        assertThat(timers).isEmpty();
+        firsts.get(0).complete(response(200));
+        assertThat(result.join().statusCode()).isEqualTo(200);
+    }
+
+    @Test
+    void hedgesNoSoonerThanTheMinimumDelay() {
+        var hedging = hedging(95, Duration.ofMillis(300), 10);
+        warmUp(hedging, 20);
+
+        var result = send(hedging);
+        // the provider answered in no time so far, but hedging that fast would double the load for nothing
+        assertThat(delays).containsExactly(300 * MILLISECOND);
+        assertThat(hedges).hasValue(0);
+        timers.get(0).run();
+        assertThat(hedges).hasValue(1);
+
+        seconds.get(0).complete(response(200));
+        assertThat(result.join()).isSameAs(seconds.get(0).join());
+    }
+
+    @Test
+    void hedgesOnceTheFirstTakesLongerThanThePercentile() {
+        var hedging = hedging(95, Duration.ofMillis(1), 10);
+        // nineteen responses take 100ms and one takes 900ms, which the 95th percentile leaves out
+        for (var i = 0; i < 20; i++) {
+            var result = send(hedging);
+            now += (i == 0 ? 900 : 100) * MILLISECOND;
+            firsts.get(i).complete(response(200));
+            result.join();
+        }
+        assertThat(timers).isEmpty();
+
+        var result = send(hedging);
+        assertThat(delays).containsExactly(100 * MILLISECOND);
+        timers.get(0).run();
+        assertThat(hedges).hasValue(1);
+
+        seconds.get(0).complete(response(200));
+        result.join();
+    }
+
+    @Test
+    void doesNotHedgeARequestAnsweredInTime() {
+        var hedging = hedging(95, Duration.ofMillis(1), 10);
+        warmUp(hedging, 20);
+
+        var result = send(hedging);
+        firsts.get(0).complete(response(200));
+        timers.get(0).run();
+
+        assertThat(result.join()).isSameAs(firsts.get(0).join());
+        assertThat(hedges).hasValue(0);
+        assertThat(seconds).isEmpty();
+    }
+
+    @Test
+    void cancelsTheLosingExchange() {
+        var hedging = hedging(95, Duration.ofMillis(1), 10);
+        warmUp(hedging, 20);
+
+        var firstWins = send(hedging);
+        timers.get(0).run();
+        firsts.get(0).complete(response(200));
+        assertThat(firstWins.join()).isSameAs(firsts.get(0).join());
+        assertThat(seconds.get(0)).isCancelled();
+
+        var secondWins = send(hedging);
+        timers.get(1).run();
+        seconds.get(1).complete(response(200));
+        assertThat(secondWins.join()).isSameAs(seconds.get(1).join());
+        assertThat(firsts.get(1)).isCancelled();
+    }
+
+    @Test
+    void waitsForTheOtherExchangeWhenOneFails() {
+        var hedging = hedging(95, Duration.ofMillis(1), 10);
+        warmUp(hedging, 20);
+
+        var result = send(hedging);
+        timers.get(0).run();
+        firsts.get(0).completeExceptionally(new IllegalStateException("connection reset"));
+        assertThat(result).isNotDone();
+
+        seconds.get(0).completeExceptionally(new IllegalStateException("connection reset again"));
+        assertThatThrownBy(result::join).hasMessageContaining("connection reset again");
+    }
+
+    @Test
+    void doesNotHedgeAfterTheFirstFailed() {
+        var hedging = hedging(95, Duration.ofMillis(50), 10);
+        warmUp(hedging, 20);
+
+        var result = send(hedging);
+        firsts.get(0).completeExceptionally(new IllegalStateException("connection reset"));
+        timers.get(0).run();
+
+        assertThatThrownBy(result::join).hasMessageContaining("connection reset");
+        assertThat(hedges).hasValue(0);
+    }
+
+    @Test
+    void hedgesNoMoreThanTheBudgetAllows() {
+        // nothing is earned, so only the initial burst of ten may be spent
+        var hedging = hedging(95, Duration.ofMillis(1), 0);
+        warmUp(hedging, 20);
+
+        var results = new ArrayList<CompletableFuture<ProviderResponse>>();
+        for (var i = 0; i < 15; i++) {
+            results.add(send(hedging));
+        }
+        timers.forEach(Runnable::run);
+        assertThat(hedges).hasValue(10);
+        assertThat(seconds).hasSize(10);
+
+        firsts.forEach(first -> first.complete(response(200)));
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join();
+    }
+
+    @Test
+    void earnsHedgesBackWithEveryRequest() {
+        // every request earns half a hedge, and every hedge costs a whole one
+        var hedging = hedging(95, Duration.ofMillis(1), 50);
+        warmUp(hedging, 20);
+
+        // so the burst of ten runs out after nineteen hedged requests, one at a time
+        for (var i = 0; i < 19; i++) {
+            var result = send(hedging);
+            timers.get(i).run();
+            assertThat(hedges).hasValue(i + 1);
+            firsts.get(i).complete(response(200));
+            result.join();
+        }
+        var unhedged = send(hedging);
+        timers.get(19).run();
+        assertThat(hedges).hasValue(19);
+        firsts.get(19).complete(response(200));
+        unhedged.join();
+
+        // and the next request has earned enough again
+        send(hedging);
+        timers.get(20).run();
+        assertThat(hedges).hasValue(20);
+        firsts.get(20).complete(response(200));
+    }
+
+    private Hedging hedging(double percentile, Duration minDelay, int budget) {
+        var settings = new HedgingSettings();
+        settings.setEnabled(true);
+        settings.setPercentile(percentile);
+        settings.setMinDelay(minDelay);
+        settings.setBudget(budget);
+        settings.setWindowSize(100);
+        return new Hedging(settings, () -> now, (task, delayNanos) -> {
+            timers.add(task);
+            delays.add(delayNanos);
+        });
+    }
+
+    private CompletableFuture<ProviderResponse> send(Hedging hedging) {
+        return hedging.send("debug_token", () -> started(firsts), () -> started(seconds), hedges::incrementAndGet);
+    }
+
+    /**
+     * Teaches the hedging that the provider answers at once; the exchanges it needs to learn this are not hedged.
+     */
+    private void warmUp(Hedging hedging, int responses) {
+        for (var i = 0; i < responses; i++) {
+            hedging.send("debug_token", () -> CompletableFuture.completedFuture(response(200)), CompletableFuture::new, hedges::incrementAndGet);
+        }
+    }
+
+    private static CompletableFuture<ProviderResponse> started(List<CompletableFuture<ProviderResponse>> exchanges) {
+        var exchange = new CompletableFuture<ProviderResponse>();
+        exchanges.add(exchange);
+        return exchange;
+    }
+
+    private static ProviderResponse response(int statusCode) {
+        return new ProviderResponse(statusCode, HttpHeaders.of(Map.of(), (name, value) -> true), new byte[0]);
+    }
+}
@@ -0,0 +1,164 @@
+package com.vladcarcu.sociallogin.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JsonFieldsTest {
+
+    private static final JsonFields DEBUG_TOKEN_FIELDS = JsonFields.of(
+            "data.is_valid", "data.app_id", "data.user_id", "data.expires_at", "error.code", "error.message");
+
+    @Test
+    void readsNestedFieldsByTheirPath() {
+        var values = DEBUG_TOKEN_FIELDS.read("{\"data\":{\"app_id\":\"1234567890\",\"is_valid\":true,\"user_id\":\"42\",\"expires_at\":1700000000}}");
+
+        assertThat(values.getBoolean("data.is_valid")).isTrue();
+        assertThat(values.get("data.app_id")).isEqualTo("1234567890");
+        assertThat(values.get("data.user_id")).isEqualTo("42");
+        assertThat(values.getLong("data.expires_at")).isEqualTo(1700000000L);
+        assertThat(values.has("error.code")).isFalse();
+    }
+
+    @Test
+    void skipsTheFieldsThatWereNotSelected() {
+        var values = DEBUG_TOKEN_FIELDS.read("{\"data\":{\"scopes\":[\"email\",{\"user_id\":\"nested\"}],"
+                + "\"granular_scopes\":{\"user_id\":\"deeper\",\"data\":{\"user_id\":\"deepest\"}},\"user_id\":\"42\"},"
+                + "\"user_id\":\"top\",\"paging\":[[1,2],{\"data\":{\"user_id\":\"elsewhere\"}}]}");
+
+        assertThat(values.get("data.user_id")).isEqualTo("42");
+        assertThat(values.has("data.app_id")).isFalse();
+    }
+
+    @Test
+    void skipsAnObjectOrArrayWhereAValueWasSelected() {
+        var values = DEBUG_TOKEN_FIELDS.read("{\"data\":{\"user_id\":{\"id\":\"42\"},\"app_id\":[\"1234567890\"],\"is_valid\":true}}");
+
+        assertThat(values.has("data.user_id")).isFalse();
+        assertThat(values.has("data.app_id")).isFalse();
+        assertThat(values.getBoolean("data.is_valid")).isTrue();
+    }
+
+    @Test
+    void readsAJsonNullAsAnAbsentField() {
+        var values = DEBUG_TOKEN_FIELDS.read("{\"data\":{\"user_id\":null,\"expires_at\":null},\"error\":null}");
+
+        assertThat(values.get("data.user_id")).isNull();
+        assertThat(values.has("data.user_id")).isFalse();
+        assertThat(values.getLong("data.expires_at")).isZero();
+        assertThat(values.getBoolean("data.is_valid")).isFalse();
+        assertThat(values.has("error.code")).isFalse();
+    }
+
+    @Test
+    void readsNumbersWrittenWithAFractionOrAsStrings() {
+        var fields = JsonFields.of("expires_in", "expires_at", "refresh_token_expires_in");
+        var values = fields.read("{\"expires_in\":5183999.0,\"expires_at\":\"1700000000\",\"refresh_token_expires_in\":31536000}");
+
+        assertThat(values.getLong("expires_in")).isEqualTo(5183999L);
+        assertThat(values.get("expires_in")).isEqualTo("5183999.0");
+        assertThat(values.getLong("expires_at")).isEqualTo(1700000000L);
+        assertThat(values.getLong("refresh_token_expires_in")).isEqualTo(31536000L);
+    }
+
+    @Test
+    void readsAStringThatIsNotAWholeNumberWithoutFailing() {
+        var fields = JsonFields.of("expires_in", "expires_at", "refresh_token_expires_in");
+        var values = fields.read("{\"expires_in\":\"3600.0\",\"expires_at\":\"\",\"refresh_token_expires_in\":\"never\"}");
+
+        assertThat(values.getLong("expires_in")).isEqualTo(3600L);
+        // read as if the field were absent
+        assertThat(values.getLong("expires_at")).isZero();
+        assertThat(values.getLong("refresh_token_expires_in")).isZero();
+    }
+
+    @Test
+    void readsAGzipBody() {
+        var values = DEBUG_TOKEN_FIELDS.read(gzipResponse("{\"error\":{\"code\":190,\"message\":\"Invalid OAuth access token.\"}}"));
+
+        assertThat(values.getLong("error.code")).isEqualTo(190);
+        assertThat(values.get("error.message")).isEqualTo("Invalid OAuth access token.");
+    }
+
+    @Test
+    void readsAnArrayOfObjectsAndNulls() {
+        var fields = JsonFields.of("code", "body");
+        List<JsonFields.Values> elements = fields.readArray(response("[{\"code\":200,\"body\":\"{}\"},null,{\"code\":400}]"));
+
+        assertThat(elements).hasSize(3);
+        assertThat(elements.get(0).getLong("code")).isEqualTo(200);
+        assertThat(elements.get(0).get("body")).isEqualTo("{}");
+        assertThat(elements.get(1)).isNull();
+        assertThat(elements.get(2).getLong("code")).isEqualTo(400);
+        assertThat(elements.get(2).has("body")).isFalse();
+    }
+
+    @Test
+    void readsAGzipArray() {
+        var elements = JsonFields.of("code").readArray(gzipResponse("[{\"code\":200},null]"));
+
+        assertThat(elements).hasSize(2);
+        assertThat(elements.get(0).getLong("code")).isEqualTo(200);
+        assertThat(elements.get(1)).isNull();
+    }
+
+    @Test
+    void failsOnABodyThatIsNotAnObject() {
+        assertThatThrownBy(() -> DEBUG_TOKEN_FIELDS.read("[{\"data\":{}}]")).isInstanceOf(UncheckedIOException.class);
+        assertThatThrownBy(() -> DEBUG_TOKEN_FIELDS.read("\"data\"")).isInstanceOf(UncheckedIOException.class);
+        assertThatThrownBy(() -> DEBUG_TOKEN_FIELDS.read("")).isInstanceOf(UncheckedIOException.class);
+        assertThatThrownBy(() -> DEBUG_TOKEN_FIELDS.read(response("<html>Bad Gateway</html>")))
+                .isInstanceOf(UncheckedIOException.class)
+                .hasMessageContaining("status 200");
+    }
+
+    @Test
+    void failsOnABodyThatIsNotAnArrayOfObjects() {
+        var fields = JsonFields.of("code");
+
+        assertThatThrownBy(() -> fields.readArray(response("{\"code\":200}"))).isInstanceOf(UncheckedIOException.class);
+        assertThatThrownBy(() -> fields.readArray(response("[{\"code\":200},200]"))).isInstanceOf(UncheckedIOException.class);
+    }
+
+    @Test
+    void keepsTheBodyOutOfTheError() {
+        assertThatThrownBy(() -> DEBUG_TOKEN_FIELDS.read(response("{\"access_token\":\"EAAB-secret\",")))
+                .isInstanceOf(UncheckedIOException.class)
+                .satisfies(e -> {
+                    assertThat(e.getMessage()).doesNotContain("EAAB-secret");
+                    assertThat(e.getCause().getMessage()).doesNotContain("EAAB-secret");
+                });
+    }
+
+    @Test
+    void refusesAFieldThatWasNotSelected() {
+        var values = DEBUG_TOKEN_FIELDS.read("{\"data\":{\"scopes\":[\"email\"]}}");
+
+        assertThatThrownBy(() -> values.get("data.scopes")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static ProviderResponse response(String body) {
+        return new ProviderResponse(200, HttpHeaders.of(Map.of(), (name, value) -> true), body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ProviderResponse gzipResponse(String body) {
+        var compressed = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        var headers = HttpHeaders.of(Map.of("Content-Encoding", List.of("gzip")), (name, value) -> true);
+        return new ProviderResponse(200, headers, compressed.toByteArray());
+    }
+}
@@ -0,0 +1,82 @@
+package com.vladcarcu.sociallogin.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyWindowTest {
+
+    @Test
+    void hasNoPercentileUntilThereAreEnoughSamples() {
+        var window = new LatencyWindow(200, 95);
+        for (var i = 1; i < 20; i++) {
+            window.record(millis(i));
+        }
+        assertThat(window.getPercentileNanos()).isEqualTo(-1);
+
+        window.record(millis(20));
+        assertThat(window.getPercentileNanos()).isEqualTo(millis(19));
+    }
+
+    @Test
+    void takesThePercentileOfTheSamples() {
+        var window = new LatencyWindow(100, 95);
+        // recorded out of order
+        for (var i = 100; i >= 1; i--) {
+            window.record(millis(i));
+        }
+        assertThat(window.getPercentileNanos()).isEqualTo(millis(95));
+
+        var median = new LatencyWindow(100, 50);
+        for (var i = 1; i <= 100; i++) {
+            median.record(millis(i));
+        }
+        assertThat(median.getPercentileNanos()).isEqualTo(millis(50));
+    }
+
+    @Test
+    void forgetsSamplesOlderThanTheWindow() {
+        var window = new LatencyWindow(100, 95);
+        for (var i = 0; i < 100; i++) {
+            window.record(millis(500));
+        }
+        assertThat(window.getPercentileNanos()).isEqualTo(millis(500));
+
+        // the provider got faster
+        for (var i = 0; i < 100; i++) {
+            window.record(millis(20));
+        }
+        assertThat(window.getPercentileNanos()).isEqualTo(millis(20));
+    }
+
+    @Test
+    void refreshesEveryTenthOfTheWindow() {
+        var window = new LatencyWindow(100, 100);
+        for (var i = 0; i < 100; i++) {
+            window.record(millis(10));
+        }
+        window.record(millis(900));
+        // not seen until the next refresh
+        assertThat(window.getPercentileNanos()).isEqualTo(millis(10));
+
+        for (var i = 0; i < 9; i++) {
+            window.record(millis(10));
+        }
+        assertThat(window.getPercentileNanos()).isEqualTo(millis(900));
+    }
+
+    @Test
+    void makesDoWithAWindowSmallerThanTheMinimumSamples() {
+        var window = new LatencyWindow(5, 100);
+        for (var i = 1; i <= 5; i++) {
+            window.record(millis(i));
+        }
+        assertThat(window.getPercentileNanos()).isEqualTo(millis(5));
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
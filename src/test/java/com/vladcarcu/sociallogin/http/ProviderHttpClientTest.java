@@ -0,0 +1,257 @@
+package com.vladcarcu.sociallogin.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.vladcarcu.sociallogin.FakeProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProviderHttpClientTest {
+
+    // the requests that reached the stub, by path, and how many of them it is answering at once
+    private final List<String> arrivals = new CopyOnWriteArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    // a permit for every request that reached the stub
+    private final Semaphore arrived = new Semaphore(0);
+    // every request is held until the test lets it be answered
+    private final Semaphore answers = new Semaphore(0);
+
+    private FakeProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        provider = new FakeProvider().answer("/", this::answer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        answers.release(1000);
+        provider.close();
+    }
+
+    @Test
+    void queuesRequestsBeyondMaxConnectionsAndRunsThemAsSlotsFree() throws Exception {
+        var client = client(2, "10s");
+        var responses = new ArrayList<CompletableFuture<ProviderResponse>>();
+        for (var i = 0; i < 5; i++) {
+            responses.add(client.send("call", client.newRequest(url("/" + i)).build()));
+        }
+
+        awaitArrivals(2);
+        assertThat(client.getActiveRequests()).isEqualTo(2);
+        assertThat(client.getQueuedRequests()).isEqualTo(3);
+
+        // every answer lets one more queued request through
+        for (var i = 0; i < 3; i++) {
+            answers.release();
+            awaitArrivals(1);
+        }
+        answers.release(2);
+
+        for (var response : responses) {
+            assertThat(response.get(5, TimeUnit.SECONDS).statusCode()).isEqualTo(200);
+        }
+        assertThat(maxInFlight).hasValue(2);
+        // the first two race each other, the queued ones go in turn
+        assertThat(arrivals.subList(0, 2)).containsExactlyInAnyOrder("/0", "/1");
+        assertThat(arrivals.subList(2, 5)).containsExactly("/2", "/3", "/4");
+        assertThat(client.getActiveRequests()).isZero();
+        assertThat(client.getQueuedRequests()).isZero();
+    }
+
+    @Test
+    void cancelledRequestKeepsItsSlotUntilTheExchangeIsOver() throws Exception {
+        var client = client(1, "10s");
+        var held = client.send("call", client.newRequest(url("/held")).build());
+        awaitArrivals(1);
+        var queued = client.send("call", client.newRequest(url("/queued")).build());
+
+        // the caller gives up while the stub still holds the first request, which keeps its connection busy
+        held.cancel(true);
+        assertNoArrival();
+        assertThat(client.getActiveRequests()).isEqualTo(1);
+
+        answers.release();
+        awaitArrivals(1);
+        answers.release();
+        assertThat(queued.get(5, TimeUnit.SECONDS).statusCode()).isEqualTo(200);
+        assertThat(arrivals).containsExactly("/held", "/queued");
+    }
+
+    @Test
+    void timedOutRequestKeepsItsSlotUntilTheExchangeIsOver() throws Exception {
+        var client = client(1, "1s");
+        var held = client.send("call", client.newRequest(url("/held")).build());
+        awaitArrivals(1);
+
+        assertThatThrownBy(() -> held.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(TimeoutException.class);
+        var next = client.send("call", client.newRequest(url("/next")).build());
+        assertNoArrival();
+
+        // the slot is free again once the stub answers the first request
+        answers.release();
+        awaitArrivals(1);
+        answers.release();
+        assertThat(next.get(5, TimeUnit.SECONDS).statusCode()).isEqualTo(200);
+        assertThat(arrivals).containsExactly("/held", "/next");
+    }
+
+    @Test
+    void failsAResponseLargerThanTheLimitAndReleasesItsSlot() throws Exception {
+        var client = client(environment(1, "10s").withProperty("social.login.stub.http.max-response-size", "1B"));
+        answers.release();
+
+        var response = client.send("call", client.newRequest(url("/large")).build());
+
+        assertThatThrownBy(() -> response.get(5, TimeUnit.SECONDS)).hasRootCauseInstanceOf(IOException.class);
+        assertThat(client.getActiveRequests()).isZero();
+    }
+
+    @Test
+    void skipsRequestsWhoseCallersStoppedWaitingInTheQueue() throws Exception {
+        var client = client(1, "10s");
+        var held = client.send("call", client.newRequest(url("/held")).build());
+        awaitArrivals(1);
+        var abandoned = new ArrayList<CompletableFuture<ProviderResponse>>();
+        for (var i = 0; i < 3; i++) {
+            abandoned.add(client.send("call", client.newRequest(url("/abandoned")).build()));
+        }
+        var queued = client.send("call", client.newRequest(url("/queued")).build());
+        abandoned.forEach(response -> response.cancel(true));
+
+        answers.release(2);
+
+        assertThat(held.get(5, TimeUnit.SECONDS).statusCode()).isEqualTo(200);
+        assertThat(queued.get(5, TimeUnit.SECONDS).statusCode()).isEqualTo(200);
+        assertThat(arrivals).containsExactly("/held", "/queued");
+        assertThat(client.getQueuedRequests()).isZero();
+    }
+
+    @Test
+    void requestTheClientRefusesReleasesItsSlot() throws Exception {
+        var client = client(1, "10s");
+        var refused = client.send("call", connect(client.newRequest(url("/refused")).build()));
+
+        assertThatThrownBy(() -> refused.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThat(client.getActiveRequests()).isZero();
+
+        answers.release();
+        assertThat(client.send("call", client.newRequest(url("/next")).build()).get(5, TimeUnit.SECONDS).statusCode()).isEqualTo(200);
+        assertThat(arrivals).containsExactly("/next");
+    }
+
+    private ProviderHttpClient client(int maxConnections, String totalTimeout) {
+        return client(environment(maxConnections, totalTimeout));
+    }
+
+    private ProviderHttpClient client(MockEnvironment environment) {
+        return new ProviderHttpClients(environment).forProvider("stub");
+    }
+
+    private static MockEnvironment environment(int maxConnections, String totalTimeout) {
+        return new MockEnvironment()
+                .withProperty("social.login.stub.http.max-connections", Integer.toString(maxConnections))
+                .withProperty("social.login.stub.http.total-timeout", totalTimeout)
+                .withProperty("social.login.stub.http.read-timeout", "10s")
+                .withProperty("social.login.stub.http.http2", "false");
+    }
+
+    private String url(String path) {
+        return provider.url(path);
+    }
+
+    /**
+     * The same request with the CONNECT method, which the builder rejects but {@link java.net.http.HttpClient#sendAsync}
+     * only refuses when it is called.
+     */
+    private static HttpRequest connect(HttpRequest request) {
+        return new HttpRequest() {
+            @Override
+            public Optional<BodyPublisher> bodyPublisher() {
+                return request.bodyPublisher();
+            }
+
+            @Override
+            public String method() {
+                return "CONNECT";
+            }
+
+            @Override
+            public Optional<Duration> timeout() {
+                return request.timeout();
+            }
+
+            @Override
+            public boolean expectContinue() {
+                return request.expectContinue();
+            }
+
+            @Override
+            public URI uri() {
+                return request.uri();
+            }
+
+            @Override
+            public Optional<HttpClient.Version> version() {
+                return request.version();
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return request.headers();
+            }
+        };
+    }
+
+    private void answer(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            arrivals.add(exchange.getRequestURI().getPath());
+            arrived.release();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                answers.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            var body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    /**
+     * Waits for that many more requests to reach the stub.
+     */
+    private void awaitArrivals(int count) throws InterruptedException {
+        assertThat(arrived.tryAcquire(count, 5, TimeUnit.SECONDS)).as("%d more requests reached the stub", count).isTrue();
+    }
+
+    private void assertNoArrival() throws InterruptedException {
+        assertThat(arrived.tryAcquire(200, TimeUnit.MILLISECONDS)).as("a request reached the stub").isFalse();
+    }
+}
@@ -0,0 +1,252 @@
+package com.vladcarcu.sociallogin.jwt;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vladcarcu.sociallogin.MutableClock;
+import com.vladcarcu.sociallogin.ValidationResult;
+import com.vladcarcu.sociallogin.http.ProviderHttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtVerifierTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private LocalIssuer issuer;
+    private MutableClock clock;
+    private JwksKeyStore keyStore;
+    private JwtVerifier verifier;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2020-01-01T00:00:00Z"));
+        issuer = new LocalIssuer(clock);
+        issuer.publishRsaKey("rsa");
+        issuer.publishEcKey("ec", "secp256r1");
+        var httpClient = new ProviderHttpClients(new MockEnvironment()).forProvider("test");
+        keyStore = new JwksKeyStore(issuer.getJwksUri(), httpClient, objectMapper, clock);
+        verifier = new JwtVerifier(LocalIssuer.ISSUER, Set.of(LocalIssuer.AUDIENCE), Set.of("RS256", "ES256", "ES384"),
+                Duration.ofSeconds(30), keyStore, objectMapper, clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        keyStore.close();
+        issuer.close();
+    }
+
+    @Test
+    void acceptsRs256Token() {
+        var claims = issuer.validClaims();
+        var result = verify(issuer.token("rsa", "RS256", claims));
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getAuthenticationToken().getPrincipal()).isEqualTo(LocalIssuer.SUBJECT);
+        assertThat(result.getAuthenticationToken().getExpiresAt()).isEqualTo(Instant.ofEpochSecond((Long) claims.get("exp")));
+    }
+
+    @Test
+    void acceptsEs256Token() {
+        var result = verify(issuer.token("ec", "ES256", issuer.validClaims()));
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getAuthenticationToken().getPrincipal()).isEqualTo(LocalIssuer.SUBJECT);
+    }
+
+    @Test
+    void rejectsTokenOfAnotherIssuer() {
+        var claims = issuer.validClaims();
+        claims.put("iss", "https://attacker.example.com");
+
+        assertThat(verify(issuer.token("rsa", "RS256", claims))).isSameAs(ValidationResult.INVALID_CLAIMS);
+    }
+
+    @Test
+    void rejectsTokenForAnotherAudience() {
+        var claims = issuer.validClaims();
+        claims.put("aud", "another-client");
+
+        assertThat(verify(issuer.token("rsa", "RS256", claims))).isSameAs(ValidationResult.INVALID_CLAIMS);
+    }
+
+    @Test
+    void rejectsExpiredToken() {
+        var claims = issuer.validClaims();
+        claims.put("exp", clock.instant().minusSeconds(60).getEpochSecond());
+
+        assertThat(verify(issuer.token("rsa", "RS256", claims))).isSameAs(ValidationResult.EXPIRED);
+    }
+
+    @Test
+    void rejectsTokenOnceItExpiredPastTheClockSkew() {
+        var token = issuer.token("rsa", "RS256", issuer.validClaims());
+        assertThat(verify(token).isSuccess()).isTrue();
+
+        // still accepted within the skew
+        clock.advance(Duration.ofHours(1).plusSeconds(29));
+        assertThat(verify(token).isSuccess()).isTrue();
+
+        clock.advance(Duration.ofSeconds(1));
+        assertThat(verify(token)).isSameAs(ValidationResult.EXPIRED);
+    }
+
+    @Test
+    void rejectsTokenNotValidYet() {
+        var claims = issuer.validClaims();
+        claims.put("nbf", clock.instant().plusSeconds(300).getEpochSecond());
+
+        assertThat(verify(issuer.token("rsa", "RS256", claims))).isSameAs(ValidationResult.INVALID_CLAIMS);
+    }
+
+    @Test
+    void rejectsTokenWithoutSubject() {
+        var claims = issuer.validClaims();
+        claims.remove("sub");
+
+        assertThat(verify(issuer.token("rsa", "RS256", claims))).isSameAs(ValidationResult.INVALID_CLAIMS);
+    }
+
+    @Test
+    void rejectsTokenWithBlankSubject() {
+        var claims = issuer.validClaims();
+        claims.put("sub", " ");
+
+        assertThat(verify(issuer.token("rsa", "RS256", claims))).isSameAs(ValidationResult.INVALID_CLAIMS);
+    }
+
+    @Test
+    void rejectsTokenWithAnotherTokensSignature() {
+        var token = issuer.token("rsa", "RS256", issuer.validClaims());
+        var claims = issuer.validClaims();
+        claims.put("sub", "someone-else");
+        var other = issuer.token("rsa", "RS256", claims);
+        var tampered = token.substring(0, token.lastIndexOf('.')) + other.substring(other.lastIndexOf('.'));
+
+        assertThat(verify(tampered)).isSameAs(ValidationResult.INVALID_SIGNATURE);
+    }
+
+    @Test
+    void rejectsAlgorithmNotMeantForTheKeyType() {
+        assertThat(verify(issuer.token("rsa", "ES256", issuer.validClaims()))).isSameAs(ValidationResult.INVALID_SIGNATURE);
+        assertThat(verify(issuer.token("ec", "RS256", issuer.validClaims()))).isSameAs(ValidationResult.INVALID_SIGNATURE);
+    }
+
+    @Test
+    void rejectsAlgorithmOfAnotherCurve() {
+        // signed with SHA-384 by a P-256 key, which ES384 does not allow
+        assertThat(verify(issuer.token("ec", "ES384", issuer.validClaims()))).isSameAs(ValidationResult.INVALID_SIGNATURE);
+    }
+
+    @Test
+    void rejectsAlgorithmNotAllowed() {
+        issuer.publishEcKey("p521", "secp521r1");
+
+        assertThat(verify(issuer.token("p521", "ES512", issuer.validClaims()))).isSameAs(ValidationResult.INVALID_SIGNATURE);
+    }
+
+    @Test
+    void rejectsTokenWithoutAlgorithm() {
+        var token = unsigned(Map.of("kid", "rsa", "typ", "JWT"), issuer.validClaims());
+
+        assertThat(verify(token)).isSameAs(ValidationResult.INVALID_SIGNATURE);
+    }
+
+    @Test
+    void rejectsUnsignedToken() {
+        var token = unsigned(Map.of("alg", "none", "kid", "rsa", "typ", "JWT"), issuer.validClaims());
+
+        assertThat(verify(token)).isSameAs(ValidationResult.INVALID_SIGNATURE);
+    }
+
+    @Test
+    void rejectsTokenWithoutKeyIdWithoutFetchingAgain() {
+        assertThat(verify(issuer.token("rsa", "RS256", issuer.validClaims())).isSuccess()).isTrue();
+        clock.advance(Duration.ofSeconds(31));
+        var token = issuer.token("rsa", "RS256", issuer.validClaims());
+        var withoutKeyId = unsigned(Map.of("alg", "RS256", "typ", "JWT"), issuer.validClaims()) + token.substring(token.lastIndexOf('.') + 1);
+
+        assertThat(verify(withoutKeyId)).isSameAs(ValidationResult.UNKNOWN_KEY);
+        assertThat(issuer.getFetches()).isEqualTo(1);
+    }
+
+    @Test
+    void refetchesKeySetForUnknownKeyId() {
+        assertThat(verify(issuer.token("rsa", "RS256", issuer.validClaims())).isSuccess()).isTrue();
+        assertThat(issuer.getFetches()).isEqualTo(1);
+
+        issuer.publishRsaKey("rotated");
+        var token = issuer.token("rotated", "RS256", issuer.validClaims());
+        // the key set was fetched too recently to fetch it again for a kid anyone can make up
+        assertThat(verify(token)).isSameAs(ValidationResult.UNKNOWN_KEY);
+        assertThat(issuer.getFetches()).isEqualTo(1);
+
+        clock.advance(Duration.ofSeconds(31));
+        assertThat(verify(token).isSuccess()).isTrue();
+        assertThat(issuer.getFetches()).isEqualTo(2);
+    }
+
+    @Test
+    void keepsServingTheLastKeySetWhileTheIssuerIsDown() {
+        assertThat(verify(issuer.token("rsa", "RS256", issuer.validClaims())).isSuccess()).isTrue();
+        issuer.setAvailable(false);
+        clock.advance(Duration.ofHours(2));
+
+        // the expired key set is fetched once, and kept when that fails
+        assertThat(verify(issuer.token("rsa", "RS256", issuer.validClaims())).isSuccess()).isTrue();
+        assertThat(issuer.getFetches()).isEqualTo(2);
+        // the next lookups, even of unknown keys, leave the issuer alone until the scheduled retry
+        assertThat(verify(issuer.token("ec", "ES256", issuer.validClaims())).isSuccess()).isTrue();
+        issuer.publishRsaKey("rotated");
+        assertThat(verify(issuer.token("rotated", "RS256", issuer.validClaims()))).isSameAs(ValidationResult.UNKNOWN_KEY);
+        assertThat(issuer.getFetches()).isEqualTo(2);
+
+        issuer.setAvailable(true);
+        keyStore.refresh().join();
+        assertThat(verify(issuer.token("rotated", "RS256", issuer.validClaims())).isSuccess()).isTrue();
+        assertThat(issuer.getFetches()).isEqualTo(3);
+    }
+
+    @Test
+    void failsLookupsRatherThanHoldingThemWhenTheKeySetCannotBeRequested() {
+        var httpClient = new ProviderHttpClients(new MockEnvironment()).forProvider("test");
+        // not a URI, so the request cannot even be built
+        try (var unreachable = new JwksKeyStore("http://issuer.example.com/not a uri", httpClient, objectMapper, clock)) {
+            assertThatThrownBy(() -> unreachable.getKeyAsync("rsa").get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> unreachable.getKeyAsync("rsa").get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class);
+        }
+    }
+
+    private ValidationResult verify(String token) {
+        return verifier.verify(token).join();
+    }
+
+    /**
+     * A token with the given header and claims and an empty signature.
+     */
+    private String unsigned(Map<String, Object> header, Map<String, Object> claims) {
+        try {
+            var encoder = Base64.getUrlEncoder().withoutPadding();
+            return encoder.encodeToString(objectMapper.writeValueAsBytes(header)) + "."
+                    + encoder.encodeToString(objectMapper.writeValueAsBytes(claims)) + ".";
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.vladcarcu.sociallogin.jwt;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vladcarcu.sociallogin.FakeProvider;
+
+import java.io.Closeable;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An OpenID Connect issuer served from the test JVM: it publishes its keys at a JWKS endpoint, counting the fetches,
+ * and signs tokens with them. Keys can be published at any time, as an issuer rotating its keys would.
+ */
+class LocalIssuer implements Closeable {
+
+    static final String ISSUER = "https://issuer.example.com";
+    static final String AUDIENCE = "test-client";
+    static final String SUBJECT = "248289761001";
+
+    private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Map<String, String> SIGNATURE_ALGORITHMS = Map.of(
+            "RS256", "SHA256withRSA",
+            "ES256", "SHA256withECDSAinP1363Format",
+            "ES384", "SHA384withECDSAinP1363Format",
+            "ES512", "SHA512withECDSAinP1363Format");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, KeyPair> keys = new ConcurrentHashMap<>();
+    private final AtomicInteger fetches = new AtomicInteger();
+    private volatile boolean available = true;
+    private final FakeProvider provider;
+    private final Clock clock;
+
+    LocalIssuer(Clock clock) {
+        this.clock = clock;
+        provider = new FakeProvider().answer("/jwks", exchange -> {
+            fetches.incrementAndGet();
+            if (!available) {
+                FakeProvider.respond(exchange, 503, "{}");
+                return;
+            }
+            exchange.getResponseHeaders().set("Cache-Control", "public, max-age=3600");
+            FakeProvider.respond(exchange, 200, jwks());
+        });
+    }
+
+    String getJwksUri() {
+        return provider.url("/jwks");
+    }
+
+    int getFetches() {
+        return fetches.get();
+    }
+
+    /**
+     * Whether the JWKS endpoint answers; an unavailable one still counts the fetches it turns away.
+     */
+    void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    void publishRsaKey(String keyId) {
+        publish(keyId, "RSA", null);
+    }
+
+    /**
+     * @param curve the JCA name of the curve, e.g. <code>secp256r1</code>
+     */
+    void publishEcKey(String keyId, String curve) {
+        publish(keyId, "EC", new ECGenParameterSpec(curve));
+    }
+
+    /**
+     * Claims that pass every check: the right issuer and audience, a subject, issued now on the issuer's clock and valid for an hour.
+     */
+    Map<String, Object> validClaims() {
+        var now = clock.instant().getEpochSecond();
+        var claims = new LinkedHashMap<String, Object>();
+        claims.put("iss", ISSUER);
+        claims.put("aud", AUDIENCE);
+        claims.put("sub", SUBJECT);
+        claims.put("iat", now);
+        claims.put("exp", now + 3600);
+        return claims;
+    }
+
+    /**
+     * Signs the claims with the key, naming the given algorithm in the header. When the algorithm does not suit the key,
+     * the key signs with its own, as a token claiming another algorithm than its key's would be.
+     */
+    String token(String keyId, String algorithm, Map<String, Object> claims) {
+        var privateKey = keys.get(keyId).getPrivate();
+        try {
+            var header = objectMapper.writeValueAsBytes(Map.of("alg", algorithm, "kid", keyId, "typ", "JWT"));
+            var signingInput = encode(header) + "." + encode(objectMapper.writeValueAsBytes(claims));
+            var signature = Signature.getInstance(signatureAlgorithm(algorithm, privateKey));
+            signature.initSign(privateKey);
+            signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+            return signingInput + "." + encode(signature.sign());
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        provider.close();
+    }
+
+    private void publish(String keyId, String type, ECGenParameterSpec curve) {
+        try {
+            var generator = KeyPairGenerator.getInstance(type);
+            if (curve != null) {
+                generator.initialize(curve);
+            } else {
+                generator.initialize(2048);
+            }
+            keys.put(keyId, generator.generateKeyPair());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String signatureAlgorithm(String algorithm, PrivateKey privateKey) {
+        if (algorithm.startsWith("RS") == privateKey instanceof RSAPrivateKey) {
+            return SIGNATURE_ALGORITHMS.get(algorithm);
+        }
+        return privateKey instanceof RSAPrivateKey ? "SHA256withRSA" : "SHA256withECDSAinP1363Format";
+    }
+
+    private String jwks() {
+        var jwks = new StringBuilder("{\"keys\":[");
+        keys.forEach((keyId, keyPair) -> {
+            if (jwks.length() > 9) {
+                jwks.append(',');
+            }
+            jwks.append("{\"kid\":\"").append(keyId).append("\",\"use\":\"sig\",");
+            if (keyPair.getPublic() instanceof RSAPublicKey) {
+                var publicKey = (RSAPublicKey) keyPair.getPublic();
+                jwks.append("\"kty\":\"RSA\",\"n\":\"").append(encode(publicKey.getModulus(), 0))
+                        .append("\",\"e\":\"").append(encode(publicKey.getPublicExponent(), 0)).append("\"}");
+            } else {
+                var publicKey = (ECPublicKey) keyPair.getPublic();
+                var size = publicKey.getParams().getCurve().getField().getFieldSize();
+                var length = (size + 7) / 8;
+                jwks.append("\"kty\":\"EC\",\"crv\":\"P-").append(size)
+                        .append("\",\"x\":\"").append(encode(publicKey.getW().getAffineX(), length))
+                        .append("\",\"y\":\"").append(encode(publicKey.getW().getAffineY(), length)).append("\"}");
+            }
+        });
+        return jwks.append("]}").toString();
+    }
+
+    private static String encode(BigInteger value, int length) {
+        var bytes = value.toByteArray();
+        // BigInteger adds a leading zero byte when the highest bit is set, and JWK coordinates have a fixed length
+        var start = bytes.length > 1 && bytes[0] == 0 ? 1 : 0;
+        var unsigned = new byte[Math.max(length, bytes.length - start)];
+        System.arraycopy(bytes, start, unsigned, unsigned.length - (bytes.length - start), bytes.length - start);
+        return encode(unsigned);
+    }
+
+    private static String encode(byte[] bytes) {
+        return BASE64.encodeToString(bytes);
+    }
+}
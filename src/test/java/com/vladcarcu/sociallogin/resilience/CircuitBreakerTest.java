@@ -0,0 +1,163 @@
+package com.vladcarcu.sociallogin.resilience;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private static final long FAST = Duration.ofMillis(10).toNanos();
+    private static final long SLOW = Duration.ofSeconds(2).toNanos();
+
+    private CircuitBreakerSettings settings;
+    private long now = 1_000;
+
+    @BeforeEach
+    void setUp() {
+        settings = new CircuitBreakerSettings();
+        settings.setWindowSize(4);
+        settings.setMinimumCalls(4);
+        settings.setFailureRateThreshold(50);
+        settings.setSlowCallDuration(Duration.ofSeconds(1));
+        settings.setSlowCallRateThreshold(75);
+        settings.setWaitDurationInOpenState(Duration.ofMillis(50));
+        settings.setPermittedCallsInHalfOpenState(2);
+    }
+
+    @Test
+    void staysClosedUntilTheMinimumNumberOfCalls() {
+        var breaker = breaker();
+        for (var i = 0; i < 3; i++) {
+            breaker.onResult(FAST, true);
+        }
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+
+        breaker.onResult(FAST, true);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void opensAtTheFailureRateThreshold() {
+        var breaker = breaker();
+        breaker.onResult(FAST, false);
+        breaker.onResult(FAST, false);
+        breaker.onResult(FAST, true);
+        breaker.onResult(FAST, true);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void opensAtTheSlowCallRateThreshold() {
+        var breaker = breaker();
+        breaker.onResult(FAST, false);
+        breaker.onResult(SLOW, false);
+        breaker.onResult(SLOW, false);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        breaker.onResult(SLOW, false);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void forgetsOutcomesThatLeftTheWindow() {
+        var breaker = breaker();
+        breaker.onResult(FAST, true);
+        breaker.onResult(FAST, false);
+        breaker.onResult(FAST, false);
+        breaker.onResult(FAST, false);
+        // pushes the first failure out of the window
+        breaker.onResult(FAST, false);
+        breaker.onResult(FAST, true);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void letsProbesThroughOnceTheWaitIsOver() {
+        var breaker = opened();
+        now += settings.getWaitDurationInOpenState().toNanos() - 1;
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        now += 1;
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isTrue();
+        // no more than the permitted probes at once
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        breaker.release();
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void closesWhenTheProbesSucceed() {
+        var breaker = halfOpened();
+        breaker.onResult(FAST, false);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        breaker.onResult(FAST, false);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        // the failures from before it opened are gone
+        breaker.onResult(FAST, true);
+        breaker.onResult(FAST, true);
+        breaker.onResult(FAST, false);
+        breaker.onResult(FAST, false);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void reopensWhenAProbeFails() {
+        var breaker = halfOpened();
+        breaker.onResult(FAST, false);
+        breaker.onResult(FAST, true);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void reopensWhenAProbeIsSlow() {
+        var breaker = halfOpened();
+        breaker.onResult(SLOW, false);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void ignoresCallsThatStartedBeforeItOpened() {
+        var breaker = opened();
+        for (var i = 0; i < 10; i++) {
+            breaker.onResult(FAST, false);
+        }
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private CircuitBreaker opened() {
+        var breaker = breaker();
+        for (var i = 0; i < settings.getMinimumCalls(); i++) {
+            breaker.onResult(FAST, true);
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        return breaker;
+    }
+
+    private CircuitBreaker breaker() {
+        return new CircuitBreaker(settings, () -> now);
+    }
+
+    private CircuitBreaker halfOpened() {
+        var breaker = opened();
+        now += settings.getWaitDurationInOpenState().toNanos();
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isTrue();
+        return breaker;
+    }
+}
@@ -0,0 +1,97 @@
+package com.vladcarcu.sociallogin.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private long now = 1_000;
+
+    @Test
+    void letsTheBurstThroughAtOnce() {
+        var bucket = bucket(settings(1, 5));
+        var admitted = 0;
+        while (bucket.tryAcquire() && admitted < 10) {
+            admitted++;
+        }
+
+        assertThat(admitted).isEqualTo(5);
+    }
+
+    @Test
+    void earnsTokensAtTheRate() {
+        var bucket = bucket(settings(5, 2));
+        assertThat(new boolean[]{bucket.tryAcquire(), bucket.tryAcquire(), bucket.tryAcquire()}).containsExactly(true, true, false);
+
+        // one token every 200ms
+        now += 199 * MILLISECOND;
+        assertThat(bucket.tryAcquire()).isFalse();
+        now += MILLISECOND;
+        assertThat(new boolean[]{bucket.tryAcquire(), bucket.tryAcquire()}).containsExactly(true, false);
+    }
+
+    @Test
+    void neverSavesUpMoreThanTheBurst() {
+        var bucket = bucket(settings(20, 3));
+        bucket.tryAcquire();
+
+        // enough time to earn eight tokens
+        now += 400 * MILLISECOND;
+        var admitted = new boolean[]{bucket.tryAcquire(), bucket.tryAcquire(), bucket.tryAcquire(), bucket.tryAcquire()};
+
+        assertThat(admitted).containsExactly(true, true, true, false);
+    }
+
+    @Test
+    void admitsExactlyTheBurstUnderContention() throws Exception {
+        var bucket = new TokenBucket(settings(0.01, 100));
+        var executor = Executors.newFixedThreadPool(8);
+        var start = new CountDownLatch(1);
+        try {
+            var workers = new ArrayList<Future<Integer>>();
+            for (var thread = 0; thread < 8; thread++) {
+                workers.add(executor.submit((Callable<Integer>) () -> {
+                    start.await();
+                    var admitted = 0;
+                    for (var i = 0; i < 1000; i++) {
+                        if (bucket.tryAcquire()) {
+                            admitted++;
+                        }
+                    }
+                    return admitted;
+                }));
+            }
+            start.countDown();
+            var admitted = 0;
+            for (var worker : workers) {
+                admitted += worker.get();
+            }
+
+            assertThat(admitted).isEqualTo(100);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private TokenBucket bucket(RateLimitSettings settings) {
+        return new TokenBucket(settings, () -> now);
+    }
+
+    private static RateLimitSettings settings(double rate, int burst) {
+        var settings = new RateLimitSettings();
+        settings.setEnabled(true);
+        settings.setRate(rate);
+        settings.setBurst(burst);
+        return settings;
+    }
+}
@@ -0,0 +1,122 @@
+package com.vladcarcu.sociallogin.trace;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FlightRecorderTest {
+
+    @Test
+    void keepsTheLatestGrantsNewestFirst() {
+        var recorder = recorder(3, 2);
+        var traces = new ArrayList<GrantTrace>();
+        for (var i = 0; i < 5; i++) {
+            var trace = recorder.start("google", "client-" + i, "token-" + i);
+            recorder.record(trace, "success");
+            traces.add(trace);
+        }
+
+        // the ring went round, overwriting the two oldest
+        assertThat(recorder.getRecent()).containsExactly(traces.get(4), traces.get(3), traces.get(2));
+    }
+
+    @Test
+    void keepsTheSlowestGrantsSlowestFirst() {
+        var recorder = recorder(10, 2);
+        // started in this order and finished in the reverse one, so each grant recorded is slower than the one before
+        var traces = start(recorder, 4);
+
+        recorder.record(traces.get(3), "success");
+        recorder.record(traces.get(2), "success");
+        assertThat(recorder.getSlowest()).containsExactly(traces.get(2), traces.get(3));
+
+        // every slower grant replaces the fastest of the slowest
+        recorder.record(traces.get(1), "timeout");
+        assertThat(recorder.getSlowest()).containsExactly(traces.get(1), traces.get(2));
+        recorder.record(traces.get(0), "upstream_error");
+        assertThat(recorder.getSlowest()).containsExactly(traces.get(0), traces.get(1));
+    }
+
+    @Test
+    void dropsAFastGrantOnceSlowerOnesComeIn() {
+        var recorder = recorder(10, 2);
+        var slow = start(recorder, 2);
+        // started after the slow grants and recorded before them, so faster than both
+        var fast = recorder.start("google", "client", "token");
+        recorder.record(fast, "success");
+        assertThat(recorder.getSlowest()).containsExactly(fast);
+
+        recorder.record(slow.get(1), "success");
+        recorder.record(slow.get(0), "success");
+
+        assertThat(recorder.getSlowest()).containsExactly(slow.get(0), slow.get(1));
+        assertThat(recorder.getRecent()).contains(fast);
+    }
+
+    @Test
+    void dropsTheStagesAddedOnceTheGrantIsRecorded() {
+        var recorder = recorder(10, 2);
+        var trace = recorder.start("google", "client", "token");
+        trace.addStage("validation", System.nanoTime());
+
+        recorder.record(trace, "success");
+        // a hedge that lost, still running after the grant was answered
+        trace.addStage("hedge", System.nanoTime());
+
+        assertThat(trace.getStages()).extracting(GrantTrace.Stage::getName).containsExactly("validation");
+    }
+
+    @Test
+    void startsOverOnceTheSlowestAreReset() {
+        var recorder = recorder(10, 2);
+        var slow = start(recorder, 2);
+        recorder.record(slow.get(1), "success");
+        recorder.record(slow.get(0), "success");
+
+        recorder.resetSlowest();
+        assertThat(recorder.getSlowest()).isEmpty();
+
+        var fast = recorder.start("google", "client", "token");
+        recorder.record(fast, "success");
+        assertThat(recorder.getSlowest()).containsExactly(fast);
+    }
+
+    @Test
+    void keepsOnlyAFingerprintOfTheToken() {
+        var trace = recorder(10, 2).start("google", "client", "eyJhbGciOiJSUzI1NiJ9.e30.c2ln");
+
+        assertThat(trace.getToken()).matches("sha256:[0-9a-f]{12}");
+        assertThat(trace.getToken()).isEqualTo(recorder(10, 2).start("google", "another-client", "eyJhbGciOiJSUzI1NiJ9.e30.c2ln").getToken());
+        assertThat(trace.getToken()).isNotEqualTo(recorder(10, 2).start("oidc", "client", "eyJhbGciOiJSUzI1NiJ9.e30.c2ln").getToken());
+    }
+
+    @Test
+    void keepsNoRecentGrantsWhenThereIsNoRoomForThem() {
+        var recorder = recorder(0, 2);
+        var trace = recorder.start("google", "client", "token");
+
+        recorder.record(trace, "success");
+
+        assertThat(recorder.getRecent()).isEmpty();
+        assertThat(recorder.getSlowest()).containsExactly(trace);
+    }
+
+    private static FlightRecorder recorder(int recent, int slowest) {
+        var settings = new FlightRecorderSettings();
+        settings.setEnabled(true);
+        settings.setRecent(recent);
+        settings.setSlowest(slowest);
+        return new FlightRecorder(settings);
+    }
+
+    private static List<GrantTrace> start(FlightRecorder recorder, int count) {
+        var traces = new ArrayList<GrantTrace>();
+        for (var i = 0; i < count; i++) {
+            traces.add(recorder.start("google", "client-" + i, "token-" + i));
+        }
+        return traces;
+    }
+}